@@ -0,0 +1,111 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single app release as listed in the corpus CSV (e.g. dataset/analyzed_apps.csv).
+ *
+ * The CSV consists of a header line followed by lines of the form "name,release_number".
+ * The sources of a release are expected in the directory &lt;apps&gt;/&lt;name&gt;/&lt;release_number&gt;.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public final class AppRelease {
+
+    private final String name;
+    private final String releaseNumber;
+
+    public AppRelease(@NonNull String name, @NonNull String releaseNumber) {
+        this.name = name;
+        this.releaseNumber = releaseNumber;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @NonNull
+    public String getReleaseNumber() {
+        return releaseNumber;
+    }
+
+    @NonNull
+    public File getProjectDirectory(@NonNull File appsRoot) {
+        return new File(new File(appsRoot, name), releaseNumber);
+    }
+
+    // name used for all per-app output files, e.g. "at.bitfire.davdroid-201"
+    @NonNull
+    public String getReportName() {
+        return name + "-" + releaseNumber;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof AppRelease))
+            return false;
+        AppRelease release = (AppRelease) other;
+        return name.equals(release.name) && releaseNumber.equals(release.releaseNumber);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + releaseNumber.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + releaseNumber;
+    }
+
+    /**
+     * Reads all releases of the given corpus CSV in their listed order.
+     *
+     * @param csv the CSV file with the header "name,release_number"
+     * @return the listed releases; blank lines are skipped
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    @NonNull
+    public static List<AppRelease> readCsv(@NonNull File csv) throws IOException {
+        List<AppRelease> releases = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8))) {
+            // skip the header, it may start with a byte order mark
+            String line = reader.readLine();
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+                releases.add(parseLine(line, csv, lineNumber));
+            }
+        }
+        return releases;
+    }
+
+    @NonNull
+    private static AppRelease parseLine(@NonNull String line, @NonNull File csv, int lineNumber) throws IOException {
+        String[] columns = line.split(",");
+        if (columns.length != 2 || columns[0].trim().isEmpty() || columns[1].trim().isEmpty())
+            throw new IOException(csv + ":" + lineNumber + ": expected \"name,release_number\" but found \"" + line + "\"");
+        return new AppRelease(columns[0].trim(), columns[1].trim());
+    }
+}
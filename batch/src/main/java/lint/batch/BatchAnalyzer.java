@@ -0,0 +1,309 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.LintCliFlags;
+import com.android.tools.lint.XmlReporter;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lint.AndroidLintSecurityRegistry;
+
+/**
+ * Batch driver that analyzes all app releases of a corpus CSV (e.g. dataset/analyzed_apps.csv)
+ * with the issues of the AndroidLintSecurityRegistry only.
+ *
+ * Every release is analyzed by its own lint client on a work-stealing pool sized to the
+ * available processors, so a corpus sweep is no longer a serial job. Each release results
+ * in one XML report named &lt;name&gt;-&lt;release_number&gt;.xml in the output directory.
+ *
+ * The findings of every completed release are kept in a ResultStore. Releases which are
+ * already in the store are skipped, so a crashed or interrupted sweep can simply be restarted.
+ *
+ * In incremental mode (see IncrementalAnalysis) the releases of an app are analyzed one after
+ * the other in their listed order and only the sources that changed since the previous release
+ * are checked again. No XML reports are written in this mode.
+ *
+ * With a SARIF file the findings of all releases, including the stored ones, are streamed into
+ * a single SARIF log while the releases are analyzed, instead of writing XML reports.
+ *
+ * With module threads, releases with several modules (see Modules) are split up and every
+ * module is analyzed by its own lint client on a separate pool of module workers. The modules
+ * are independent lint projects, so the project-scoped detectors, e.g. the ones for unrevoked
+ * URI permissions and path permissions, see the same files as in a run on the whole release.
+ * The findings of the modules are reduced into the order of a run on the whole release,
+ * independent of the order in which the workers finish. Each module gets its own XML report.
+ *
+ * With a table directory the stored findings of all releases are written into a FindingsTable
+ * at the end of the run, which answers queries over the whole corpus.
+ *
+ * With a diff file the findings introduced and fixed between consecutive releases of every app
+ * are written at the end of the run (see ReleaseDiff). The releases are analyzed in incremental
+ * mode, so unchanged sources are neither checked nor outlined again.
+ *
+ * With a metrics file lint runs with an instrumented copy of the registry whose detectors are
+ * InstrumentedDetector wrappers, and their timings are written to the file at the end of the run.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public class BatchAnalyzer {
+
+    private final BatchOptions options;
+    private final IssueRegistry registry = new AndroidLintSecurityRegistry();
+    private final Set<String> issueIds = new HashSet<>();
+    private final ResultStore store;
+    @Nullable
+    private final IncrementalAnalysis incrementalAnalysis;
+    @Nullable
+    private final DetectorMetrics metrics;
+    // the registry the lint runs use, instrumented if there are metrics
+    private final IssueRegistry lintRegistry;
+    @Nullable
+    private SarifWriter sarif;
+    @Nullable
+    private ExecutorService modulePool;
+    private final AtomicInteger completed = new AtomicInteger();
+
+    BatchAnalyzer(@NonNull BatchOptions options) {
+        this.options = options;
+        for (Issue issue : registry.getIssues())
+            issueIds.add(issue.getId());
+        this.store = new ResultStore(options.storeDirectory, registry);
+        this.incrementalAnalysis = options.incrementalDirectory != null
+                ? new IncrementalAnalysis(options.incrementalDirectory, registry) : null;
+        this.metrics = options.metricsFile != null ? new DetectorMetrics() : null;
+        this.lintRegistry = metrics != null ? Instrumentation.instrument(registry, metrics) : registry;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        BatchOptions options;
+        try {
+            options = BatchOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(BatchOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        List<AppRelease> releases = AppRelease.readCsv(options.csv);
+        int failures = new BatchAnalyzer(options).run(releases);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Analyzes all given releases and blocks until every release is done.
+     *
+     * @return the number of releases that could not be analyzed
+     */
+    int run(@NonNull List<AppRelease> releases) throws InterruptedException, IOException {
+        if (!options.outputDirectory.isDirectory() && !options.outputDirectory.mkdirs())
+            throw new IllegalStateException("Cannot create " + options.outputDirectory);
+
+        if (options.sarifFile != null)
+            sarif = new SarifWriter(options.sarifFile, registry, options.appsRoot);
+        if (options.moduleThreads > 0)
+            modulePool = Executors.newFixedThreadPool(options.moduleThreads);
+        int failures;
+        try {
+            failures = analyzeAll(releases);
+        } finally {
+            if (modulePool != null)
+                modulePool.shutdownNow();
+            if (sarif != null)
+                sarif.close();
+        }
+        if (metrics != null)
+            metrics.write(options.metricsFile, registry);
+        if (options.tableDirectory != null)
+            FindingsTable.build(store, releases, options.tableDirectory);
+        if (options.diffFile != null)
+            ReleaseDiff.write(store, releases, options.appsRoot, options.diffFile);
+        return failures;
+    }
+
+    private int analyzeAll(@NonNull List<AppRelease> releases) throws InterruptedException {
+        ExecutorService pool = Executors.newWorkStealingPool(options.threads);
+        List<Future<Integer>> results = new ArrayList<>(releases.size());
+        for (List<AppRelease> sequence : sequences(releases))
+            results.add(pool.submit(() -> analyze(sequence, releases.size())));
+        pool.shutdown();
+
+        int failures = 0;
+        for (Future<Integer> result : results) {
+            try {
+                failures += result.get();
+            } catch (ExecutionException e) {
+                failures++;
+            }
+        }
+        System.out.println("Analyzed " + (releases.size() - failures) + " of " + releases.size() + " releases");
+        return failures;
+    }
+
+    // Splits the releases into sequences that have to be analyzed one after the other. In
+    // incremental mode all releases of an app form one sequence, otherwise every release is
+    // analyzed on its own.
+    @NonNull
+    private List<List<AppRelease>> sequences(@NonNull List<AppRelease> releases) {
+        List<List<AppRelease>> sequences = new ArrayList<>();
+        if (incrementalAnalysis == null) {
+            for (AppRelease release : releases)
+                sequences.add(Collections.singletonList(release));
+            return sequences;
+        }
+        Map<String, List<AppRelease>> releasesByApp = new LinkedHashMap<>();
+        for (AppRelease release : releases)
+            releasesByApp.computeIfAbsent(release.getName(), name -> new ArrayList<>()).add(release);
+        sequences.addAll(releasesByApp.values());
+        return sequences;
+    }
+
+    // returns the number of failed releases
+    private int analyze(@NonNull List<AppRelease> sequence, int total) {
+        int failures = 0;
+        for (AppRelease release : sequence) {
+            if (!analyze(release, total))
+                failures++;
+        }
+        return failures;
+    }
+
+    private boolean analyze(@NonNull AppRelease release, int total) {
+        File projectDirectory = release.getProjectDirectory(options.appsRoot);
+        boolean success = false;
+        try {
+            List<Finding> stored = store.read(release);
+            if (stored != null) {
+                if (sarif != null) {
+                    sarif.write(release, stored);
+                    sarif.flush();
+                }
+                log(release, total, "already analyzed");
+                return true;
+            }
+            if (!projectDirectory.isDirectory()) {
+                log(release, total, "skipped, " + projectDirectory + " does not exist");
+                return false;
+            }
+            List<Finding> findings;
+            if (incrementalAnalysis != null) {
+                // the findings are only final after merging them with the cached ones
+                findings = incrementalAnalysis.analyze(release, projectDirectory,
+                        (inputs, ids) -> lint(projectDirectory, inputs, ids, null, null));
+                if (sarif != null)
+                    sarif.write(release, findings);
+            } else {
+                // the SARIF log replaces the XML reports, which keep all warnings in memory
+                File report = sarif == null ? new File(options.outputDirectory, release.getReportName() + ".xml") : null;
+                findings = lint(projectDirectory, Collections.singletonList(projectDirectory), issueIds, report,
+                        sarif != null ? finding -> sarif.write(release, finding) : null);
+            }
+            if (sarif != null)
+                sarif.flush();
+            store.write(release, findings);
+            success = true;
+            log(release, total, findings.size() + " findings");
+        } catch (IOException | RuntimeException e) {
+            log(release, total, "failed: " + e);
+        }
+        return success;
+    }
+
+    @NonNull
+    private List<Finding> lint(@NonNull File projectDirectory, @NonNull List<File> inputs,
+                               @NonNull Set<String> checkedIds, @Nullable File xmlReport,
+                               @Nullable BatchLintClient.FindingListener listener) throws IOException {
+        if (modulePool != null && inputs.equals(Collections.singletonList(projectDirectory))) {
+            List<File> modules = Modules.find(projectDirectory);
+            if (modules.size() > 1)
+                return lintModules(projectDirectory, modules, checkedIds, xmlReport, listener);
+        }
+        return lintProject(projectDirectory, inputs, checkedIds, xmlReport, listener);
+    }
+
+    // Runs lint on every module on the module workers and reduces their findings in a ReportSink,
+    // which orders them like the findings of a single run. The listener receives the findings of
+    // every module while it is analyzed, like in a single run.
+    @NonNull
+    private List<Finding> lintModules(@NonNull File projectDirectory, @NonNull List<File> modules,
+                                      @NonNull Set<String> checkedIds, @Nullable File xmlReport,
+                                      @Nullable BatchLintClient.FindingListener listener) throws IOException {
+        List<Future<List<Finding>>> results = new ArrayList<>(modules.size());
+        for (File module : modules) {
+            File report = xmlReport != null ? moduleReport(xmlReport, projectDirectory, module) : null;
+            results.add(modulePool.submit(() ->
+                    lintProject(projectDirectory, Collections.singletonList(module), checkedIds, report, listener)));
+        }
+        ReportSink sink = new ReportSink();
+        try {
+            for (Future<List<Finding>> result : results) {
+                for (Finding finding : result.get())
+                    sink.add(finding);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while analyzing the modules of " + projectDirectory);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } finally {
+            for (Future<List<Finding>> result : results)
+                result.cancel(true);
+        }
+        return sink.drain();
+    }
+
+    // <report>-<module path with '_' as separator>.xml
+    @NonNull
+    private static File moduleReport(@NonNull File xmlReport, @NonNull File projectDirectory, @NonNull File module) {
+        String name = xmlReport.getName().substring(0, xmlReport.getName().length() - ".xml".length());
+        String modulePath = projectDirectory.toPath().relativize(module.toPath()).toString();
+        return new File(xmlReport.getParentFile(), name + "-" + modulePath.replace(File.separatorChar, '_') + ".xml");
+    }
+
+    // Runs lint with its own client; lint clients are never shared between workers.
+    @NonNull
+    private List<Finding> lintProject(@NonNull File projectDirectory, @NonNull List<File> inputs,
+                                      @NonNull Set<String> checkedIds, @Nullable File xmlReport,
+                                      @Nullable BatchLintClient.FindingListener listener) throws IOException {
+        LintCliFlags flags = new LintCliFlags();
+        flags.setQuiet(true);
+        flags.setExactCheckedIds(checkedIds);
+        BatchLintClient client = new BatchLintClient(flags, projectDirectory, metrics, listener);
+        if (xmlReport != null)
+            flags.getReporters().add(new XmlReporter(client, xmlReport));
+        client.run(lintRegistry, inputs);
+        return client.getFindings();
+    }
+
+    private void log(@NonNull AppRelease release, int total, @NonNull String message) {
+        System.out.println("[" + completed.incrementAndGet() + "/" + total + "] " + release + ": " + message);
+    }
+}
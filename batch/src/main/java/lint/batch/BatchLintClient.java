@@ -0,0 +1,123 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.LintCliClient;
+import com.android.tools.lint.LintCliFlags;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Context;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.LintFix;
+import com.android.tools.lint.detector.api.Location;
+import com.android.tools.lint.detector.api.Position;
+import com.android.tools.lint.detector.api.Severity;
+import com.android.tools.lint.detector.api.TextFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import lint.Fingerprint;
+
+/**
+ * Lint client of a single app release that records every report as a Finding and passes it to
+ * an optional listener as soon as it is reported.
+ *
+ * Reports are collected in a ReportSink, so detectors may report from several threads; the
+ * findings of a run are deduplicated and sorted before getFindings sees them. The listener is
+ * called from the reporting threads instead, in the order lint reports and with any duplicate
+ * reports, so a SARIF log is written while the run goes on rather than after it. Only
+ * getFindings, and thus the result store and the diffs, has the order of a serial run. The
+ * reports are only buffered by LintCliClient if a reporter was added to the flags, so runs
+ * without XML report do not keep the lint warnings in memory.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+class BatchLintClient extends LintCliClient {
+
+    /**
+     * Receives the findings of a lint run while it is running, possibly from several threads.
+     */
+    interface FindingListener {
+        void found(@NonNull Finding finding) throws IOException;
+    }
+
+    private static final String CLIENT_NAME = "batch";
+
+    private final File projectDirectory;
+    @Nullable
+    private final DetectorMetrics metrics;
+    @Nullable
+    private final FindingListener listener;
+    private final ReportSink sink = new ReportSink();
+    private List<Finding> findings = new ArrayList<>();
+    private final AtomicReference<IOException> listenerFailure = new AtomicReference<>();
+
+    BatchLintClient(@NonNull LintCliFlags flags, @NonNull File projectDirectory, @Nullable DetectorMetrics metrics,
+                    @Nullable FindingListener listener) {
+        super(flags, CLIENT_NAME);
+        this.projectDirectory = projectDirectory;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    @Override
+    public void report(@NonNull Context context, @NonNull Issue issue, @NonNull Severity severity,
+                       @NonNull Location location, @NonNull String message, @NonNull TextFormat format,
+                       @Nullable LintFix fix) {
+        if (!getFlags().getReporters().isEmpty())
+            super.report(context, issue, severity, location, message, format, fix);
+        if (metrics != null)
+            metrics.recordReport(issue.getId());
+        Position start = location.getStart();
+        String fingerprint = Fingerprint.of(location);
+        Finding finding = new Finding(issue.getId(), severity.name(), relativePath(location.getFile()),
+                start != null ? start.getLine() + 1 : 0,
+                start != null ? start.getColumn() + 1 : 0,
+                format.convertTo(message, TextFormat.TEXT), fingerprint != null ? fingerprint : "");
+        sink.add(finding);
+        if (listener != null) {
+            try {
+                listener.found(finding);
+            } catch (IOException e) {
+                // lint would report an exception thrown here as a detector crash
+                listenerFailure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    @Override
+    public int run(@NonNull IssueRegistry registry, @NonNull List<File> files) throws IOException {
+        int exitCode = super.run(registry, files);
+        // all reporting threads of the run are done
+        findings = sink.drain();
+        IOException failure = listenerFailure.getAndSet(null);
+        if (failure != null)
+            throw failure;
+        return exitCode;
+    }
+
+    /**
+     * Returns the findings of the last run, sorted and without duplicates.
+     */
+    @NonNull
+    List<Finding> getFindings() {
+        return new ArrayList<>(findings);
+    }
+
+    @NonNull
+    private String relativePath(@NonNull File file) {
+        String path = projectDirectory.toPath().toAbsolutePath().normalize()
+                .relativize(file.toPath().toAbsolutePath().normalize()).toString();
+        return path.replace(File.separatorChar, '/');
+    }
+}
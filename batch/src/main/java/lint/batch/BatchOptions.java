@@ -0,0 +1,119 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+
+import java.io.File;
+
+/**
+ * Command line options of the batch analyzer.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class BatchOptions {
+
+    static final String USAGE =
+            "Usage: BatchAnalyzer --csv <analyzed_apps.csv> --apps <dir> --out <dir> [options]\n" +
+            "  --csv <file>         corpus CSV with the columns name,release_number\n" +
+            "  --apps <dir>         directory containing the sources as <dir>/<name>/<release_number>\n" +
+            "  --out <dir>          directory receiving one XML report per analyzed app\n" +
+            "  --store <dir>        result store used to resume interrupted runs (default: <out>/results)\n" +
+            "  --incremental <dir>  only check sources changed since the previous release of an app\n" +
+            "  --threads <n>        number of worker threads (default: available processors)\n" +
+            "  --module-threads <n> analyze the modules of multi-module releases on n extra workers\n" +
+            "  --metrics <file>     write wall time, calls and allocations per detector as JSON\n" +
+            "  --sarif <file>       stream all findings into a SARIF 2.1.0 log instead of XML reports\n" +
+            "  --table <dir>        write the findings of all releases into a columnar table for queries\n" +
+            "  --diff <file>        write the findings introduced and fixed by every release of an app as JSON\n" +
+            "                       (analyzes incrementally, in <out>/incremental unless --incremental is given)\n";
+
+    File csv;
+    File appsRoot;
+    File outputDirectory;
+    File storeDirectory;
+    File incrementalDirectory;
+    File metricsFile;
+    File sarifFile;
+    File tableDirectory;
+    File diffFile;
+    int threads = Runtime.getRuntime().availableProcessors();
+    // 0 analyzes every release as a whole
+    int moduleThreads;
+
+    @NonNull
+    static BatchOptions parse(@NonNull String[] args) {
+        BatchOptions options = new BatchOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--csv":
+                    options.csv = new File(value(args, ++i, arg));
+                    break;
+                case "--apps":
+                    options.appsRoot = new File(value(args, ++i, arg));
+                    break;
+                case "--out":
+                    options.outputDirectory = new File(value(args, ++i, arg));
+                    break;
+                case "--store":
+                    options.storeDirectory = new File(value(args, ++i, arg));
+                    break;
+                case "--incremental":
+                    options.incrementalDirectory = new File(value(args, ++i, arg));
+                    break;
+                case "--metrics":
+                    options.metricsFile = new File(value(args, ++i, arg));
+                    break;
+                case "--sarif":
+                    options.sarifFile = new File(value(args, ++i, arg));
+                    break;
+                case "--table":
+                    options.tableDirectory = new File(value(args, ++i, arg));
+                    break;
+                case "--diff":
+                    options.diffFile = new File(value(args, ++i, arg));
+                    break;
+                case "--threads":
+                    options.threads = positiveInt(value(args, ++i, arg), arg);
+                    break;
+                case "--module-threads":
+                    options.moduleThreads = positiveInt(value(args, ++i, arg), arg);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (options.csv == null || options.appsRoot == null || options.outputDirectory == null)
+            throw new IllegalArgumentException("--csv, --apps and --out are required");
+        if (options.storeDirectory == null)
+            options.storeDirectory = new File(options.outputDirectory, "results");
+        // consecutive releases mostly share their sources, so only the changed ones are checked
+        if (options.diffFile != null && options.incrementalDirectory == null)
+            options.incrementalDirectory = new File(options.outputDirectory, "incremental");
+        return options;
+    }
+
+    @NonNull
+    private static String value(@NonNull String[] args, int index, @NonNull String option) {
+        if (index >= args.length)
+            throw new IllegalArgumentException("Missing value for " + option);
+        return args[index];
+    }
+
+    private static int positiveInt(@NonNull String value, @NonNull String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0)
+                return number;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException(option + " expects a positive number but was " + value);
+    }
+}
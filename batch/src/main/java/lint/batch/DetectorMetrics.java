@@ -0,0 +1,177 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wall time, call counts and allocated bytes of every detector callback, collected by the
+ * InstrumentedDetector wrappers of all lint runs of a batch run, together with the number of
+ * reports per issue.
+ *
+ * The allocated bytes are the bytes allocated by the calling thread during a callback as
+ * reported by the HotSpot ThreadMXBean; they are reported as -1 on JVMs without support.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class DetectorMetrics {
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    /**
+     * Totals of a single callback of a single detector.
+     */
+    static final class Counter {
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        private void add(@NonNull Counter other) {
+            calls.add(other.calls.sum());
+            nanos.add(other.nanos.sum());
+            bytes.add(other.bytes.sum());
+        }
+    }
+
+    // detector class name -> callback name -> totals
+    private final ConcurrentMap<String, ConcurrentMap<String, Counter>> callbacks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> reports = new ConcurrentHashMap<>();
+
+    static boolean isAllocationTrackingSupported() {
+        return ALLOCATION_BEAN != null;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, or 0 if this is not supported.
+     */
+    static long allocatedBytes() {
+        return ALLOCATION_BEAN != null ? ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    void record(@NonNull String detector, @NonNull String callback, long nanos, long bytes) {
+        Counter counter = callbacks.computeIfAbsent(detector, name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(callback, name -> new Counter());
+        counter.calls.increment();
+        counter.nanos.add(nanos);
+        counter.bytes.add(bytes);
+    }
+
+    void recordReport(@NonNull String issueId) {
+        reports.computeIfAbsent(issueId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * Writes the collected metrics as JSON. The detectors are ordered by their total wall time.
+     * The costs of a detector reporting several issues are attributed to each of its issues.
+     */
+    void write(@NonNull File file, @NonNull IssueRegistry registry) throws IOException {
+        Map<String, List<String>> issuesByDetector = new TreeMap<>();
+        for (Issue issue : registry.getIssues()) {
+            List<String> ids = issuesByDetector.computeIfAbsent(
+                    issue.getImplementation().getDetectorClass().getSimpleName(), name -> new ArrayList<>());
+            if (!ids.contains(issue.getId()))
+                ids.add(issue.getId());
+        }
+        Map<String, Counter> totals = new LinkedHashMap<>();
+        for (String detector : issuesByDetector.keySet())
+            totals.put(detector, total(detector));
+        List<String> detectors = new ArrayList<>(issuesByDetector.keySet());
+        detectors.sort(Comparator.comparingLong((String detector) -> totals.get(detector).nanos.sum()).reversed());
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Cannot create " + parent);
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.name("allocationTracking").value(isAllocationTrackingSupported());
+            json.name("detectors").beginArray();
+            for (String detector : detectors) {
+                json.beginObject();
+                json.name("detector").value(detector);
+                json.name("issues").beginArray();
+                for (String id : issuesByDetector.get(detector))
+                    json.value(id);
+                json.endArray();
+                writeCounter(json, totals.get(detector));
+                json.name("callbacks").beginArray();
+                Map<String, Counter> detectorCallbacks = callbacks.get(detector);
+                if (detectorCallbacks != null) {
+                    for (Map.Entry<String, Counter> entry : new TreeMap<>(detectorCallbacks).entrySet()) {
+                        json.beginObject();
+                        json.name("callback").value(entry.getKey());
+                        writeCounter(json, entry.getValue());
+                        json.endObject();
+                    }
+                }
+                json.endArray();
+                json.endObject();
+            }
+            json.endArray();
+            json.name("issues").beginArray();
+            for (String detector : detectors) {
+                for (String id : issuesByDetector.get(detector)) {
+                    LongAdder count = reports.get(id);
+                    json.beginObject();
+                    json.name("id").value(id);
+                    json.name("detector").value(detector);
+                    json.name("reports").value(count != null ? count.sum() : 0);
+                    writeCounter(json, totals.get(detector));
+                    json.endObject();
+                }
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    @NonNull
+    private Counter total(@NonNull String detector) {
+        Counter total = new Counter();
+        Map<String, Counter> detectorCallbacks = callbacks.get(detector);
+        if (detectorCallbacks != null) {
+            for (Counter counter : detectorCallbacks.values())
+                total.add(counter);
+        }
+        return total;
+    }
+
+    private static void writeCounter(@NonNull JsonWriter json, @NonNull Counter counter) throws IOException {
+        json.name("calls").value(counter.calls.sum());
+        json.name("wallTimeNanos").value(counter.nanos.sum());
+        json.name("allocatedBytes").value(isAllocationTrackingSupported() ? counter.bytes.sum() : -1);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        if (!allocationBean.isThreadAllocatedMemorySupported())
+            return null;
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+}
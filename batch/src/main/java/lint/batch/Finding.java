@@ -0,0 +1,169 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+
+/**
+ * A single issue reported for an app release.
+ *
+ * Findings are stored as one tab separated line; tabs, line breaks and backslashes within
+ * the message and the path are escaped. The fingerprint is only stored if the reporting
+ * detector computed one (see lint.Fingerprint), so lines without it are still read.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public final class Finding {
+
+    private static final int FIELD_COUNT = 6;
+    private static final int FIELD_COUNT_WITH_FINGERPRINT = 7;
+
+    private final String issueId;
+    private final String severity;
+    private final String path;
+    private final int line;
+    private final int column;
+    private final String message;
+    private final String fingerprint;
+
+    public Finding(@NonNull String issueId, @NonNull String severity, @NonNull String path,
+                   int line, int column, @NonNull String message) {
+        this(issueId, severity, path, line, column, message, "");
+    }
+
+    /**
+     * @param issueId the id of the reported issue
+     * @param severity the name of the reported severity
+     * @param path the file path relative to the analyzed project, using '/' as separator
+     * @param line the 1-based line or 0 if the finding has no position
+     * @param column the 1-based column or 0 if the finding has no position
+     * @param message the message in plain text
+     * @param fingerprint the line independent identity of the finding or an empty string if the
+     *                    detector does not compute one
+     */
+    public Finding(@NonNull String issueId, @NonNull String severity, @NonNull String path,
+                   int line, int column, @NonNull String message, @NonNull String fingerprint) {
+        this.issueId = issueId;
+        this.severity = severity;
+        this.path = path;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+        this.fingerprint = fingerprint;
+    }
+
+    @NonNull
+    public String getIssueId() {
+        return issueId;
+    }
+
+    @NonNull
+    public String getSeverity() {
+        return severity;
+    }
+
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    @NonNull
+    public String getMessage() {
+        return message;
+    }
+
+    @NonNull
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @NonNull
+    String toLine() {
+        String fields = escape(issueId) + '\t' + escape(severity) + '\t' + escape(path) + '\t' +
+                line + '\t' + column + '\t' + escape(message);
+        return fingerprint.isEmpty() ? fields : fields + '\t' + fingerprint;
+    }
+
+    @NonNull
+    static Finding fromLine(@NonNull String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != FIELD_COUNT && fields.length != FIELD_COUNT_WITH_FINGERPRINT)
+            throw new IllegalArgumentException("Malformed finding: " + line);
+        return new Finding(unescape(fields[0]), unescape(fields[1]), unescape(fields[2]),
+                Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), unescape(fields[5]),
+                fields.length == FIELD_COUNT_WITH_FINGERPRINT ? fields[6] : "");
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Finding))
+            return false;
+        Finding finding = (Finding) other;
+        return line == finding.line && column == finding.column && issueId.equals(finding.issueId) &&
+                severity.equals(finding.severity) && path.equals(finding.path) && message.equals(finding.message) &&
+                fingerprint.equals(finding.fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = issueId.hashCode();
+        result = 31 * result + path.hashCode();
+        result = 31 * result + line;
+        result = 31 * result + column;
+        return 31 * result + message.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path + ":" + line + ": " + issueId + ": " + message;
+    }
+
+    @NonNull
+    private static String escape(@NonNull String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    @NonNull
+    private static String unescape(@NonNull String value) {
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                unescaped.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch (next) {
+                case 't': unescaped.append('\t'); break;
+                case 'n': unescaped.append('\n'); break;
+                case 'r': unescaped.append('\r'); break;
+                default: unescaped.append(next);
+            }
+        }
+        return unescaped.toString();
+    }
+}
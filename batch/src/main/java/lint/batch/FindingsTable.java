@@ -0,0 +1,427 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store of the findings of a whole corpus for queries like "releases with the issues
+ * A and B but not C".
+ *
+ * Every finding is a row of seven int columns: release, issue, path, line, column, message and
+ * severity. Strings are dictionary encoded, with releases referring to their app, so a finding
+ * takes 28 bytes no matter how long its path and message are. Rows are grouped by release and
+ * an offset column points to the first row of every release. Each column is a file of big endian
+ * ints in the table directory which is memory-mapped when the table is opened, so queries over
+ * tens of millions of findings scan the page cache instead of the heap. The header is written
+ * last, by Writer.commit, so an interrupted or failed write leaves no readable table.
+ *
+ * Only the dictionaries are kept on the heap, by the writer while it builds the table and by
+ * the table once it is opened. They grow with the distinct strings of the corpus rather than
+ * with its findings, mostly paths and messages, and must fit into the heap of both; a corpus
+ * with more distinct strings needs a larger -Xmx.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public final class FindingsTable {
+
+    private static final int MAGIC = 0x4c465431; // "LFT1"
+    private static final String HEADER = "header.bin";
+    private static final String DICTIONARIES = "dictionaries.bin";
+    private static final String OFFSETS = "offsets.i32";
+    private static final String[] COLUMNS = {"release.i32", "issue.i32", "path.i32", "line.i32", "column.i32",
+            "message.i32", "severity.i32"};
+    private static final int RELEASE = 0;
+    private static final int ISSUE = 1;
+    private static final int PATH = 2;
+    private static final int LINE = 3;
+    private static final int COLUMN = 4;
+    private static final int MESSAGE = 5;
+    private static final int SEVERITY = 6;
+
+    private final int rowCount;
+    private final String[] apps;
+    private final int[] releaseApps;
+    private final String[] releaseNumbers;
+    private final String[] issues;
+    private final String[] paths;
+    private final String[] messages;
+    private final String[] severities;
+    private final Map<String, Integer> issueCodes = new HashMap<>();
+    private final IntBuffer offsets;
+    private final IntBuffer[] columns = new IntBuffer[COLUMNS.length];
+
+    private FindingsTable(@NonNull File directory) throws IOException {
+        try (DataInputStream header = input(new File(directory, HEADER))) {
+            if (header.readInt() != MAGIC)
+                throw new IOException("Not a findings table: " + directory);
+            rowCount = header.readInt();
+        }
+        try (DataInputStream dictionaries = input(new File(directory, DICTIONARIES))) {
+            apps = readStrings(dictionaries);
+            releaseApps = new int[dictionaries.readInt()];
+            releaseNumbers = new String[releaseApps.length];
+            for (int release = 0; release < releaseApps.length; release++) {
+                releaseApps[release] = dictionaries.readInt();
+                releaseNumbers[release] = dictionaries.readUTF();
+            }
+            issues = readStrings(dictionaries);
+            paths = readStrings(dictionaries);
+            messages = readStrings(dictionaries);
+            severities = readStrings(dictionaries);
+        }
+        for (int issue = 0; issue < issues.length; issue++)
+            issueCodes.put(issues[issue], issue);
+        offsets = map(new File(directory, OFFSETS));
+        for (int column = 0; column < COLUMNS.length; column++)
+            columns[column] = map(new File(directory, COLUMNS[column]));
+        if (offsets.limit() != releaseApps.length + 1 || columns[RELEASE].limit() != rowCount)
+            throw new IOException("Incomplete findings table: " + directory);
+    }
+
+    /**
+     * Opens the table written to the given directory by a Writer.
+     */
+    @NonNull
+    public static FindingsTable open(@NonNull File directory) throws IOException {
+        return new FindingsTable(directory);
+    }
+
+    /**
+     * Writes the stored findings of the given releases into a table in the given directory.
+     * Releases without stored findings are left out.
+     */
+    public static void build(@NonNull ResultStore store, @NonNull List<AppRelease> releases,
+                             @NonNull File directory) throws IOException {
+        try (Writer writer = new Writer(directory)) {
+            for (AppRelease release : releases) {
+                List<Finding> findings = store.read(release);
+                if (findings != null)
+                    writer.append(release, findings);
+            }
+            writer.commit();
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getReleaseCount() {
+        return releaseApps.length;
+    }
+
+    @NonNull
+    public AppRelease getRelease(int release) {
+        return new AppRelease(apps[releaseApps[release]], releaseNumbers[release]);
+    }
+
+    /**
+     * Returns the rows of the given release, from getFirstRow(release) until getFirstRow(release + 1).
+     */
+    public int getFirstRow(int release) {
+        return offsets.get(release);
+    }
+
+    public int getReleaseOfRow(int row) {
+        return columns[RELEASE].get(row);
+    }
+
+    @NonNull
+    public Finding getFinding(int row) {
+        return new Finding(issues[columns[ISSUE].get(row)], severities[columns[SEVERITY].get(row)],
+                paths[columns[PATH].get(row)], columns[LINE].get(row), columns[COLUMN].get(row),
+                messages[columns[MESSAGE].get(row)]);
+    }
+
+    @NonNull
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Selects the releases whose findings include all required and none of the excluded issues.
+     */
+    public final class Query {
+        private final List<String> required = new ArrayList<>();
+        private final List<String> excluded = new ArrayList<>();
+
+        private Query() {
+        }
+
+        @NonNull
+        public Query with(@NonNull String issueId) {
+            required.add(issueId);
+            return this;
+        }
+
+        @NonNull
+        public Query without(@NonNull String issueId) {
+            excluded.add(issueId);
+            return this;
+        }
+
+        /**
+         * Returns the matching releases in the order they were written.
+         */
+        @NonNull
+        public List<AppRelease> releases() {
+            List<AppRelease> releases = new ArrayList<>();
+            BitSet matches = matches();
+            for (int release = matches.nextSetBit(0); release >= 0; release = matches.nextSetBit(release + 1))
+                releases.add(getRelease(release));
+            return releases;
+        }
+
+        /**
+         * Returns the apps with at least one matching release, in the order they were written.
+         */
+        @NonNull
+        public List<String> apps() {
+            BitSet apps = new BitSet(FindingsTable.this.apps.length);
+            BitSet matches = matches();
+            for (int release = matches.nextSetBit(0); release >= 0; release = matches.nextSetBit(release + 1))
+                apps.set(releaseApps[release]);
+            List<String> names = new ArrayList<>();
+            for (int app = apps.nextSetBit(0); app >= 0; app = apps.nextSetBit(app + 1))
+                names.add(FindingsTable.this.apps[app]);
+            return names;
+        }
+
+        // one scan of the issue column marks the releases of every issue in the query
+        @NonNull
+        private BitSet matches() {
+            int releaseCount = releaseApps.length;
+            BitSet[] releasesByIssue = new BitSet[issues.length];
+            boolean scan = false;
+            for (String issueId : required)
+                scan |= track(issueId, releasesByIssue);
+            for (String issueId : excluded)
+                scan |= track(issueId, releasesByIssue);
+            if (scan) {
+                IntBuffer issueColumn = columns[ISSUE];
+                IntBuffer releaseColumn = columns[RELEASE];
+                for (int row = 0; row < rowCount; row++) {
+                    BitSet releases = releasesByIssue[issueColumn.get(row)];
+                    if (releases != null)
+                        releases.set(releaseColumn.get(row));
+                }
+            }
+            BitSet matches = new BitSet(releaseCount);
+            matches.set(0, releaseCount);
+            for (String issueId : required)
+                matches.and(releases(issueId, releasesByIssue));
+            for (String issueId : excluded)
+                matches.andNot(releases(issueId, releasesByIssue));
+            return matches;
+        }
+
+        // issues which are not part of the table are never found
+        private boolean track(@NonNull String issueId, @NonNull BitSet[] releasesByIssue) {
+            Integer issue = issueCodes.get(issueId);
+            if (issue == null)
+                return false;
+            if (releasesByIssue[issue] == null)
+                releasesByIssue[issue] = new BitSet(releaseApps.length);
+            return true;
+        }
+
+        @NonNull
+        private BitSet releases(@NonNull String issueId, @NonNull BitSet[] releasesByIssue) {
+            Integer issue = issueCodes.get(issueId);
+            return issue != null ? releasesByIssue[issue] : new BitSet();
+        }
+    }
+
+    /**
+     * Appends the findings of releases to a new table. The table can only be opened after it was
+     * committed; closing the writer without a commit leaves no readable table.
+     */
+    public static final class Writer implements Closeable {
+        private final File directory;
+        private final DataOutputStream[] columns = new DataOutputStream[COLUMNS.length];
+        private final DataOutputStream offsets;
+        private final Map<String, Integer> apps = new HashMap<>();
+        private final List<Integer> releaseApps = new ArrayList<>();
+        private final List<String> releaseNumbers = new ArrayList<>();
+        private final Map<String, Integer> issues = new HashMap<>();
+        private final Map<String, Integer> paths = new HashMap<>();
+        private final Map<String, Integer> messages = new HashMap<>();
+        private final Map<String, Integer> severities = new HashMap<>();
+        private int rowCount;
+        private boolean committed;
+
+        public Writer(@NonNull File directory) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Cannot create " + directory);
+            this.directory = directory;
+            // an old header would make the partially rewritten table readable
+            File header = new File(directory, HEADER);
+            if (header.exists() && !header.delete())
+                throw new IOException("Cannot delete " + header);
+            for (int column = 0; column < COLUMNS.length; column++)
+                columns[column] = create(new File(directory, COLUMNS[column]));
+            offsets = create(new File(directory, OFFSETS));
+        }
+
+        public void append(@NonNull AppRelease release, @NonNull List<Finding> findings) throws IOException {
+            int releaseCode = releaseApps.size();
+            releaseApps.add(code(apps, release.getName()));
+            releaseNumbers.add(release.getReleaseNumber());
+            offsets.writeInt(rowCount);
+            for (Finding finding : findings) {
+                columns[RELEASE].writeInt(releaseCode);
+                columns[ISSUE].writeInt(code(issues, finding.getIssueId()));
+                columns[PATH].writeInt(code(paths, finding.getPath()));
+                columns[LINE].writeInt(finding.getLine());
+                columns[COLUMN].writeInt(finding.getColumn());
+                columns[MESSAGE].writeInt(code(messages, finding.getMessage()));
+                columns[SEVERITY].writeInt(code(severities, finding.getSeverity()));
+                rowCount++;
+            }
+        }
+
+        /**
+         * Completes the table by writing the dictionaries and, last, the header.
+         */
+        public void commit() throws IOException {
+            if (committed)
+                throw new IllegalStateException("The table was already committed: " + directory);
+            offsets.writeInt(rowCount);
+            closeColumns();
+            try (DataOutputStream dictionaries = create(new File(directory, DICTIONARIES))) {
+                writeStrings(dictionaries, apps);
+                dictionaries.writeInt(releaseApps.size());
+                for (int release = 0; release < releaseApps.size(); release++) {
+                    dictionaries.writeInt(releaseApps.get(release));
+                    dictionaries.writeUTF(releaseNumbers.get(release));
+                }
+                writeStrings(dictionaries, issues);
+                writeStrings(dictionaries, paths);
+                writeStrings(dictionaries, messages);
+                writeStrings(dictionaries, severities);
+            }
+            try (DataOutputStream header = create(new File(directory, HEADER))) {
+                header.writeInt(MAGIC);
+                header.writeInt(rowCount);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed)
+                closeColumns();
+        }
+
+        private void closeColumns() throws IOException {
+            offsets.close();
+            for (DataOutputStream column : columns)
+                column.close();
+        }
+
+        private static int code(@NonNull Map<String, Integer> dictionary, @NonNull String value) {
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.put(value, code);
+            }
+            return code;
+        }
+
+        private static void writeStrings(@NonNull DataOutputStream output, @NonNull Map<String, Integer> dictionary)
+                throws IOException {
+            String[] values = new String[dictionary.size()];
+            for (Map.Entry<String, Integer> entry : dictionary.entrySet())
+                values[entry.getValue()] = entry.getKey();
+            output.writeInt(values.length);
+            for (String value : values)
+                output.writeUTF(value);
+        }
+
+        @NonNull
+        private static DataOutputStream create(@NonNull File file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+    }
+
+    /**
+     * Prints the releases of a table that match the given issues, e.g.
+     * --table out/table --with UnauthorizedIntent --without StickyBroadcast [--apps]
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = null;
+        boolean printApps = false;
+        List<String> required = new ArrayList<>();
+        List<String> excluded = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--apps")) {
+                printApps = true;
+            } else if (i + 1 < args.length && arg.equals("--table")) {
+                directory = new File(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("--with")) {
+                required.add(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("--without")) {
+                excluded.add(args[++i]);
+            } else {
+                directory = null;
+                break;
+            }
+        }
+        if (directory == null) {
+            System.err.println("Usage: FindingsTable --table <dir> [--with <issue id>]... [--without <issue id>]... [--apps]");
+            System.exit(2);
+            return;
+        }
+        Query query = open(directory).query();
+        required.forEach(query::with);
+        excluded.forEach(query::without);
+        for (Object match : printApps ? query.apps() : query.releases())
+            System.out.println(match);
+    }
+
+    @NonNull
+    private static String[] readStrings(@NonNull DataInputStream input) throws IOException {
+        String[] values = new String[input.readInt()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = input.readUTF();
+        return values;
+    }
+
+    @NonNull
+    private static DataInputStream input(@NonNull File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    // the mapping stays valid after the channel is closed
+    @NonNull
+    private static IntBuffer map(@NonNull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import lint.CallingOrSelfPermissionCheckDetector;
+import lint.StickyBroadcastDetector;
+import lint.UnsafeDynamicBroadcastReceiverDetector;
+
+/**
+ * Incremental analysis of consecutive releases of the same app.
+ *
+ * The issues are split into two groups:
+ * - file-local issues, i.e. the issues listed in FILE_LOCAL_ISSUE_IDS, whose findings in a
+ *   source only depend on that source and on library classes, and
+ * - project issues, i.e. all others. Their findings may depend on other sources, e.g. through
+ *   resolved constants, project superclasses or summaries of called methods, or on the manifest.
+ *
+ * The file-local issues are an explicit list rather than derived from the scope of the issues,
+ * because a detector with Scope.JAVA_FILE_SCOPE may still look into other files of the project.
+ * An issue must only be added after checking that its detector resolves nothing but the calls
+ * and classes of the Android framework and of libraries.
+ *
+ * For every app the content hashes of all Java and Kotlin sources are kept together with the
+ * file-local findings of each source. The file-local issues are only checked on the sources
+ * whose hash changed since the last analyzed release; the findings of unchanged sources are
+ * taken from the cache. The project issues are always checked on the complete project, so
+ * their results stay correct. The cached state is only replaced once both runs succeeded.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class IncrementalAnalysis {
+
+    /**
+     * Runs lint with the given issues on the given files or project directories.
+     */
+    interface LintRunner {
+        @NonNull
+        List<Finding> run(@NonNull List<File> inputs, @NonNull Set<String> issueIds) throws IOException;
+    }
+
+    private static final String HASHES_FILE = "hashes.tsv";
+    private static final String FINDINGS_FILE = "findings.tsv";
+    private static final String BUILD_DIRECTORY = "build";
+
+    static final Set<String> FILE_LOCAL_ISSUE_IDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            StickyBroadcastDetector.ISSUE.getId(),
+            CallingOrSelfPermissionCheckDetector.ISSUE.getId(),
+            UnsafeDynamicBroadcastReceiverDetector.ISSUE.getId())));
+
+    private final File namespaceDirectory;
+    private final Set<String> fileLocalIssueIds = new HashSet<>();
+    private final Set<String> projectIssueIds = new HashSet<>();
+
+    IncrementalAnalysis(@NonNull File cacheRoot, @NonNull IssueRegistry registry) {
+        this(new File(cacheRoot, ResultStore.registryVersion(registry) + "-" + ResultStore.detectorSetHash(registry)),
+                issueIds(registry));
+    }
+
+    IncrementalAnalysis(@NonNull File namespaceDirectory, @NonNull Set<String> issueIds) {
+        this.namespaceDirectory = namespaceDirectory;
+        for (String issueId : issueIds) {
+            if (FILE_LOCAL_ISSUE_IDS.contains(issueId))
+                fileLocalIssueIds.add(issueId);
+            else
+                projectIssueIds.add(issueId);
+        }
+    }
+
+    /**
+     * Analyzes the given release and updates the cached state of its app.
+     *
+     * @return the findings of all issues for the complete release
+     */
+    @NonNull
+    List<Finding> analyze(@NonNull AppRelease release, @NonNull File projectDirectory,
+                          @NonNull LintRunner lint) throws IOException {
+        File stateDirectory = new File(namespaceDirectory, release.getName());
+        Map<String, String> previousHashes = readHashes(new File(stateDirectory, HASHES_FILE));
+        Map<String, String> hashes = new TreeMap<>();
+        hashSources(projectDirectory, "", hashes);
+
+        List<Finding> fileLocalFindings = new ArrayList<>();
+        for (Finding finding : readFindings(new File(stateDirectory, FINDINGS_FILE))) {
+            String hash = hashes.get(finding.getPath());
+            if (hash != null && hash.equals(previousHashes.get(finding.getPath())))
+                fileLocalFindings.add(finding);
+        }
+
+        Set<String> changedPaths = new HashSet<>();
+        List<File> changedFiles = new ArrayList<>();
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            if (!entry.getValue().equals(previousHashes.get(entry.getKey()))) {
+                changedPaths.add(entry.getKey());
+                changedFiles.add(new File(projectDirectory, entry.getKey()));
+            }
+        }
+        if (!changedFiles.isEmpty() && !fileLocalIssueIds.isEmpty()) {
+            List<File> inputs = changedFiles.size() == hashes.size()
+                    ? Collections.singletonList(projectDirectory) : changedFiles;
+            for (Finding finding : lint.run(inputs, fileLocalIssueIds)) {
+                if (changedPaths.contains(finding.getPath()))
+                    fileLocalFindings.add(finding);
+            }
+        }
+
+        List<Finding> findings = new ArrayList<>(fileLocalFindings);
+        if (!projectIssueIds.isEmpty())
+            findings.addAll(lint.run(Collections.singletonList(projectDirectory), projectIssueIds));
+        // a failed run leaves the previous state, so its changes are checked again next time
+        writeState(stateDirectory, hashes, fileLocalFindings);
+        return findings;
+    }
+
+    @NonNull
+    Set<String> getFileLocalIssueIds() {
+        return Collections.unmodifiableSet(fileLocalIssueIds);
+    }
+
+    @NonNull
+    private static Set<String> issueIds(@NonNull IssueRegistry registry) {
+        Set<String> issueIds = new HashSet<>();
+        for (Issue issue : registry.getIssues())
+            issueIds.add(issue.getId());
+        return issueIds;
+    }
+
+    private static void hashSources(@NonNull File directory, @NonNull String relativePath,
+                                    @NonNull Map<String, String> hashes) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            String path = relativePath.isEmpty() ? file.getName() : relativePath + "/" + file.getName();
+            if (file.isDirectory()) {
+                if (!file.getName().startsWith(".") && !file.getName().equals(BUILD_DIRECTORY))
+                    hashSources(file, path, hashes);
+            } else if (file.getName().endsWith(".java") || file.getName().endsWith(".kt")) {
+                hashes.put(path, hash(file));
+            }
+        }
+    }
+
+    @NonNull
+    private static String hash(@NonNull File file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            try (InputStream input = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = input.read(buffer)) != -1)
+                    digest.update(buffer, 0, read);
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest())
+                hash.append(String.format("%02x", b));
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NonNull
+    private static Map<String, String> readHashes(@NonNull File file) throws IOException {
+        Map<String, String> hashes = new TreeMap<>();
+        if (!file.isFile())
+            return hashes;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.lastIndexOf('\t');
+                if (separator > 0)
+                    hashes.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        }
+        return hashes;
+    }
+
+    @NonNull
+    private static List<Finding> readFindings(@NonNull File file) throws IOException {
+        List<Finding> findings = new ArrayList<>();
+        if (!file.isFile())
+            return findings;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty())
+                    findings.add(Finding.fromLine(line));
+            }
+        }
+        return findings;
+    }
+
+    // The findings are written before the hashes, so an interrupted write never pairs new
+    // hashes with outdated findings.
+    private static void writeState(@NonNull File stateDirectory, @NonNull Map<String, String> hashes,
+                                   @NonNull List<Finding> findings) throws IOException {
+        if (!stateDirectory.isDirectory() && !stateDirectory.mkdirs())
+            throw new IOException("Cannot create " + stateDirectory);
+        Files.deleteIfExists(new File(stateDirectory, HASHES_FILE).toPath());
+        try (BufferedWriter writer = Files.newBufferedWriter(new File(stateDirectory, FINDINGS_FILE).toPath(),
+                StandardCharsets.UTF_8)) {
+            for (Finding finding : findings) {
+                writer.write(finding.toLine());
+                writer.newLine();
+            }
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(new File(stateDirectory, HASHES_FILE).toPath(),
+                StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.client.api.UElementHandler;
+import com.android.tools.lint.detector.api.Detector;
+import com.android.tools.lint.detector.api.Implementation;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.TextFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds instrumented copies of issue registries whose detectors are InstrumentedDetector
+ * wrappers of the original detectors.
+ *
+ * Lint creates one detector per detector class of the registry issues, so every detector class
+ * needs a wrapper class of its own. The wrappers are copies of the InstrumentedDetector class,
+ * each defined by its own class loader which knows the wrapped detector class and the metrics;
+ * no wrapper has to be written by hand and detectors of other registries are instrumented as
+ * well. The instrumented registry returns copies of the issues with the wrapper classes, so the
+ * shared issue constants are never changed and runs with and without instrumentation may
+ * happen in the same JVM.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public final class Instrumentation {
+
+    private static final String TEMPLATE_NAME = InstrumentedDetector.class.getName();
+    private static final byte[] TEMPLATE = readTemplate();
+
+    /**
+     * The wrapped detector class and the metrics of the wrappers of one detector class. The
+     * wrappers are defined by other class loaders than this class, so they can only use its
+     * public members.
+     */
+    public static final class Probe {
+        private final Class<? extends Detector> detectorClass;
+        private final String name;
+        private final DetectorMetrics metrics;
+
+        private Probe(@NonNull Class<? extends Detector> detectorClass, @NonNull DetectorMetrics metrics) {
+            this.detectorClass = detectorClass;
+            this.name = detectorClass.getSimpleName();
+            this.metrics = metrics;
+        }
+
+        /**
+         * Creates the detector wrapped by a new wrapper.
+         */
+        @NonNull
+        public Detector createDetector() {
+            try {
+                return detectorClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create " + detectorClass.getName(), e);
+            }
+        }
+
+        /**
+         * Runs the given callback of the wrapped detector and records its wall time and
+         * allocated bytes.
+         */
+        public void measure(@NonNull String callback, @NonNull Runnable call) {
+            long bytes = DetectorMetrics.allocatedBytes();
+            long start = System.nanoTime();
+            try {
+                call.run();
+            } finally {
+                long nanos = System.nanoTime() - start;
+                metrics.record(name, callback, nanos, DetectorMetrics.allocatedBytes() - bytes);
+            }
+        }
+
+        /**
+         * Returns a handler that measures every callback of the given UAST handler.
+         */
+        @NonNull
+        public UElementHandler wrap(@NonNull UElementHandler handler) {
+            return new InstrumentedUastHandler(handler, this);
+        }
+    }
+
+    // defines the wrapper class of a single detector class
+    private static final class WrapperLoader extends ClassLoader {
+        private final Probe probe;
+
+        private WrapperLoader(@NonNull ClassLoader parent, @NonNull Probe probe) {
+            super(parent);
+            this.probe = probe;
+        }
+
+        @NonNull
+        private Class<? extends Detector> defineWrapper() {
+            return defineClass(TEMPLATE_NAME, TEMPLATE, 0, TEMPLATE.length).asSubclass(Detector.class);
+        }
+    }
+
+    private Instrumentation() {
+    }
+
+    /**
+     * Returns a registry with copies of the issues of the given registry whose detectors record
+     * their callbacks in the given metrics. The given registry and its issues are not changed.
+     */
+    @NonNull
+    static IssueRegistry instrument(@NonNull IssueRegistry registry, @NonNull DetectorMetrics metrics) {
+        Map<Class<? extends Detector>, Class<? extends Detector>> wrappers = new HashMap<>();
+        List<Issue> issues = new ArrayList<>();
+        for (Issue issue : registry.getIssues()) {
+            Implementation implementation = issue.getImplementation();
+            Class<? extends Detector> wrapper = wrappers.computeIfAbsent(implementation.getDetectorClass(),
+                    detectorClass -> new WrapperLoader(InstrumentedDetector.class.getClassLoader(),
+                            new Probe(detectorClass, metrics)).defineWrapper());
+            issues.add(copy(issue, new Implementation(wrapper, implementation.getScope(),
+                    implementation.getAnalysisScopes())));
+        }
+        List<Issue> instrumented = Collections.unmodifiableList(issues);
+        return new IssueRegistry() {
+            @NonNull
+            @Override
+            public List<Issue> getIssues() {
+                return instrumented;
+            }
+        };
+    }
+
+    /**
+     * Returns the probe of the given wrapper class.
+     *
+     * @throws IllegalStateException if the class was not defined by instrument
+     */
+    @NonNull
+    public static Probe probe(@NonNull Class<?> wrapper) {
+        if (!(wrapper.getClassLoader() instanceof WrapperLoader))
+            throw new IllegalStateException(wrapper.getName() + " is only created by instrumented registries");
+        return ((WrapperLoader) wrapper.getClassLoader()).probe;
+    }
+
+    @NonNull
+    private static Issue copy(@NonNull Issue issue, @NonNull Implementation implementation) {
+        Issue copy = Issue.create(issue.getId(), issue.getBriefDescription(TextFormat.RAW),
+                issue.getExplanation(TextFormat.RAW), issue.getCategory(), issue.getPriority(),
+                issue.getDefaultSeverity(), implementation);
+        copy.setEnabledByDefault(issue.isEnabledByDefault());
+        for (String url : issue.getMoreInfo())
+            copy.addMoreInfo(url);
+        return copy;
+    }
+
+    @NonNull
+    private static byte[] readTemplate() {
+        String resource = TEMPLATE_NAME.substring(TEMPLATE_NAME.lastIndexOf('.') + 1) + ".class";
+        try (InputStream in = InstrumentedDetector.class.getResourceAsStream(resource)) {
+            if (in == null)
+                throw new IllegalStateException("Cannot find " + resource);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) > 0; )
+                bytes.write(buffer, 0, read);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
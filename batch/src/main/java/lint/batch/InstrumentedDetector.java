@@ -0,0 +1,184 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.resources.ResourceType;
+import com.android.tools.lint.client.api.UElementHandler;
+import com.android.tools.lint.detector.api.Context;
+import com.android.tools.lint.detector.api.Detector;
+import com.android.tools.lint.detector.api.JavaContext;
+import com.android.tools.lint.detector.api.XmlContext;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+
+import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UClass;
+import org.jetbrains.uast.UElement;
+import org.jetbrains.uast.ULambdaExpression;
+import org.jetbrains.uast.UReferenceExpression;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Detector that forwards every lint callback to a wrapped detector and records the wall time,
+ * call count and allocated bytes of each callback in the DetectorMetrics of the current run.
+ *
+ * This class is the template of the wrapper classes that Instrumentation defines for every
+ * detector class of an instrumented registry; each copy finds the detector it wraps through
+ * the Probe of its class loader. The copies live in other class loaders, so this class must
+ * only use public members of this package. The handlers returned by createUastHandler are
+ * wrapped as well, so the time of every UAST callback is measured. Lint only calls the scanner
+ * interfaces a detector implements, so the wrapped detectors must be UAST or XML scanners.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public class InstrumentedDetector extends Detector implements Detector.UastScanner, Detector.XmlScanner {
+
+    private final Instrumentation.Probe probe;
+    private final Detector delegate;
+
+    public InstrumentedDetector() {
+        this.probe = Instrumentation.probe(getClass());
+        this.delegate = probe.createDetector();
+    }
+
+    @Override
+    public void beforeCheckProject(@NonNull Context context) {
+        probe.measure("beforeCheckProject", () -> delegate.beforeCheckProject(context));
+    }
+
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        probe.measure("afterCheckProject", () -> delegate.afterCheckProject(context));
+    }
+
+    @Override
+    public void beforeCheckLibraryProject(@NonNull Context context) {
+        probe.measure("beforeCheckLibraryProject", () -> delegate.beforeCheckLibraryProject(context));
+    }
+
+    @Override
+    public void afterCheckLibraryProject(@NonNull Context context) {
+        probe.measure("afterCheckLibraryProject", () -> delegate.afterCheckLibraryProject(context));
+    }
+
+    @Override
+    public void beforeCheckFile(@NonNull Context context) {
+        probe.measure("beforeCheckFile", () -> delegate.beforeCheckFile(context));
+    }
+
+    @Override
+    public void afterCheckFile(@NonNull Context context) {
+        probe.measure("afterCheckFile", () -> delegate.afterCheckFile(context));
+    }
+
+    @Override
+    public List<Class<? extends UElement>> getApplicableUastTypes() {
+        return delegate.getApplicableUastTypes();
+    }
+
+    @Override
+    public UElementHandler createUastHandler(@NonNull JavaContext context) {
+        UElementHandler handler = delegate.createUastHandler(context);
+        return handler != null ? probe.wrap(handler) : null;
+    }
+
+    @Override
+    public List<String> getApplicableMethodNames() {
+        return delegate.getApplicableMethodNames();
+    }
+
+    @Override
+    public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call, @NonNull PsiMethod method) {
+        probe.measure("visitMethod", () -> delegate.visitMethod(context, call, method));
+    }
+
+    @Override
+    public List<String> getApplicableConstructorTypes() {
+        return delegate.getApplicableConstructorTypes();
+    }
+
+    @Override
+    public void visitConstructor(@NonNull JavaContext context, @NonNull UCallExpression call,
+                                 @NonNull PsiMethod constructor) {
+        probe.measure("visitConstructor", () -> delegate.visitConstructor(context, call, constructor));
+    }
+
+    @Override
+    public List<String> getApplicableReferenceNames() {
+        return delegate.getApplicableReferenceNames();
+    }
+
+    @Override
+    public void visitReference(@NonNull JavaContext context, @NonNull UReferenceExpression reference,
+                               @NonNull PsiElement referenced) {
+        probe.measure("visitReference", () -> delegate.visitReference(context, reference, referenced));
+    }
+
+    @Override
+    public boolean appliesToResourceRefs() {
+        return delegate.appliesToResourceRefs();
+    }
+
+    @Override
+    public void visitResourceReference(@NonNull JavaContext context, @NonNull UElement node,
+                                       @NonNull ResourceType type, @NonNull String name, boolean isFramework) {
+        probe.measure("visitResourceReference",
+                () -> delegate.visitResourceReference(context, node, type, name, isFramework));
+    }
+
+    @Override
+    public List<String> applicableSuperClasses() {
+        return delegate.applicableSuperClasses();
+    }
+
+    @Override
+    public void visitClass(@NonNull JavaContext context, @NonNull UClass declaration) {
+        probe.measure("visitClass", () -> delegate.visitClass(context, declaration));
+    }
+
+    @Override
+    public void visitClass(@NonNull JavaContext context, @NonNull ULambdaExpression lambda) {
+        probe.measure("visitClass", () -> delegate.visitClass(context, lambda));
+    }
+
+    @Override
+    public Collection<String> getApplicableElements() {
+        return delegate.getApplicableElements();
+    }
+
+    @Override
+    public Collection<String> getApplicableAttributes() {
+        return delegate.getApplicableAttributes();
+    }
+
+    @Override
+    public void visitDocument(@NonNull XmlContext context, @NonNull Document document) {
+        probe.measure("visitDocument", () -> delegate.visitDocument(context, document));
+    }
+
+    @Override
+    public void visitElement(@NonNull XmlContext context, @NonNull Element element) {
+        probe.measure("visitElement", () -> delegate.visitElement(context, element));
+    }
+
+    @Override
+    public void visitElementAfter(@NonNull XmlContext context, @NonNull Element element) {
+        probe.measure("visitElementAfter", () -> delegate.visitElementAfter(context, element));
+    }
+
+    @Override
+    public void visitAttribute(@NonNull XmlContext context, @NonNull Attr attribute) {
+        probe.measure("visitAttribute", () -> delegate.visitAttribute(context, attribute));
+    }
+}
@@ -0,0 +1,318 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.client.api.UElementHandler;
+
+import org.jetbrains.uast.UAnnotation;
+import org.jetbrains.uast.UArrayAccessExpression;
+import org.jetbrains.uast.UBinaryExpression;
+import org.jetbrains.uast.UBinaryExpressionWithType;
+import org.jetbrains.uast.UBlockExpression;
+import org.jetbrains.uast.UBreakExpression;
+import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UCallableReferenceExpression;
+import org.jetbrains.uast.UCatchClause;
+import org.jetbrains.uast.UClass;
+import org.jetbrains.uast.UClassInitializer;
+import org.jetbrains.uast.UClassLiteralExpression;
+import org.jetbrains.uast.UContinueExpression;
+import org.jetbrains.uast.UDeclarationsExpression;
+import org.jetbrains.uast.UDoWhileExpression;
+import org.jetbrains.uast.UElement;
+import org.jetbrains.uast.UEnumConstant;
+import org.jetbrains.uast.UExpressionList;
+import org.jetbrains.uast.UField;
+import org.jetbrains.uast.UFile;
+import org.jetbrains.uast.UForEachExpression;
+import org.jetbrains.uast.UForExpression;
+import org.jetbrains.uast.UIfExpression;
+import org.jetbrains.uast.UImportStatement;
+import org.jetbrains.uast.ULabeledExpression;
+import org.jetbrains.uast.ULambdaExpression;
+import org.jetbrains.uast.ULiteralExpression;
+import org.jetbrains.uast.ULocalVariable;
+import org.jetbrains.uast.UMethod;
+import org.jetbrains.uast.UObjectLiteralExpression;
+import org.jetbrains.uast.UParameter;
+import org.jetbrains.uast.UParenthesizedExpression;
+import org.jetbrains.uast.UPolyadicExpression;
+import org.jetbrains.uast.UPostfixExpression;
+import org.jetbrains.uast.UPrefixExpression;
+import org.jetbrains.uast.UQualifiedReferenceExpression;
+import org.jetbrains.uast.UReturnExpression;
+import org.jetbrains.uast.USimpleNameReferenceExpression;
+import org.jetbrains.uast.USuperExpression;
+import org.jetbrains.uast.USwitchClauseExpression;
+import org.jetbrains.uast.USwitchExpression;
+import org.jetbrains.uast.UThisExpression;
+import org.jetbrains.uast.UThrowExpression;
+import org.jetbrains.uast.UTryExpression;
+import org.jetbrains.uast.UTypeReferenceExpression;
+import org.jetbrains.uast.UUnaryExpression;
+import org.jetbrains.uast.UVariable;
+import org.jetbrains.uast.UWhileExpression;
+
+/**
+ * UAST handler that forwards every callback to the handler of a wrapped detector and measures
+ * it with the Probe of the detector. Lint only calls the callbacks of the types the detector
+ * asked for, so forwarding all of them does not change which nodes the detector sees.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class InstrumentedUastHandler extends UElementHandler {
+
+    private final UElementHandler handler;
+    private final Instrumentation.Probe probe;
+
+    InstrumentedUastHandler(@NonNull UElementHandler handler, @NonNull Instrumentation.Probe probe) {
+        this.handler = handler;
+        this.probe = probe;
+    }
+
+    @Override
+    public void visitAnnotation(@NonNull UAnnotation node) {
+        probe.measure("handler.visitAnnotation", () -> handler.visitAnnotation(node));
+    }
+
+    @Override
+    public void visitArrayAccessExpression(@NonNull UArrayAccessExpression node) {
+        probe.measure("handler.visitArrayAccessExpression", () -> handler.visitArrayAccessExpression(node));
+    }
+
+    @Override
+    public void visitBinaryExpression(@NonNull UBinaryExpression node) {
+        probe.measure("handler.visitBinaryExpression", () -> handler.visitBinaryExpression(node));
+    }
+
+    @Override
+    public void visitBinaryExpressionWithType(@NonNull UBinaryExpressionWithType node) {
+        probe.measure("handler.visitBinaryExpressionWithType", () -> handler.visitBinaryExpressionWithType(node));
+    }
+
+    @Override
+    public void visitBlockExpression(@NonNull UBlockExpression node) {
+        probe.measure("handler.visitBlockExpression", () -> handler.visitBlockExpression(node));
+    }
+
+    @Override
+    public void visitBreakExpression(@NonNull UBreakExpression node) {
+        probe.measure("handler.visitBreakExpression", () -> handler.visitBreakExpression(node));
+    }
+
+    @Override
+    public void visitCallExpression(@NonNull UCallExpression node) {
+        probe.measure("handler.visitCallExpression", () -> handler.visitCallExpression(node));
+    }
+
+    @Override
+    public void visitCallableReferenceExpression(@NonNull UCallableReferenceExpression node) {
+        probe.measure("handler.visitCallableReferenceExpression", () -> handler.visitCallableReferenceExpression(node));
+    }
+
+    @Override
+    public void visitCatchClause(@NonNull UCatchClause node) {
+        probe.measure("handler.visitCatchClause", () -> handler.visitCatchClause(node));
+    }
+
+    @Override
+    public void visitClass(@NonNull UClass node) {
+        probe.measure("handler.visitClass", () -> handler.visitClass(node));
+    }
+
+    @Override
+    public void visitClassLiteralExpression(@NonNull UClassLiteralExpression node) {
+        probe.measure("handler.visitClassLiteralExpression", () -> handler.visitClassLiteralExpression(node));
+    }
+
+    @Override
+    public void visitContinueExpression(@NonNull UContinueExpression node) {
+        probe.measure("handler.visitContinueExpression", () -> handler.visitContinueExpression(node));
+    }
+
+    @Override
+    public void visitDeclarationsExpression(@NonNull UDeclarationsExpression node) {
+        probe.measure("handler.visitDeclarationsExpression", () -> handler.visitDeclarationsExpression(node));
+    }
+
+    @Override
+    public void visitDoWhileExpression(@NonNull UDoWhileExpression node) {
+        probe.measure("handler.visitDoWhileExpression", () -> handler.visitDoWhileExpression(node));
+    }
+
+    @Override
+    public void visitElement(@NonNull UElement node) {
+        probe.measure("handler.visitElement", () -> handler.visitElement(node));
+    }
+
+    @Override
+    public void visitEnumConstant(@NonNull UEnumConstant node) {
+        probe.measure("handler.visitEnumConstant", () -> handler.visitEnumConstant(node));
+    }
+
+    @Override
+    public void visitExpressionList(@NonNull UExpressionList node) {
+        probe.measure("handler.visitExpressionList", () -> handler.visitExpressionList(node));
+    }
+
+    @Override
+    public void visitField(@NonNull UField node) {
+        probe.measure("handler.visitField", () -> handler.visitField(node));
+    }
+
+    @Override
+    public void visitFile(@NonNull UFile node) {
+        probe.measure("handler.visitFile", () -> handler.visitFile(node));
+    }
+
+    @Override
+    public void visitForEachExpression(@NonNull UForEachExpression node) {
+        probe.measure("handler.visitForEachExpression", () -> handler.visitForEachExpression(node));
+    }
+
+    @Override
+    public void visitForExpression(@NonNull UForExpression node) {
+        probe.measure("handler.visitForExpression", () -> handler.visitForExpression(node));
+    }
+
+    @Override
+    public void visitIfExpression(@NonNull UIfExpression node) {
+        probe.measure("handler.visitIfExpression", () -> handler.visitIfExpression(node));
+    }
+
+    @Override
+    public void visitImportStatement(@NonNull UImportStatement node) {
+        probe.measure("handler.visitImportStatement", () -> handler.visitImportStatement(node));
+    }
+
+    @Override
+    public void visitInitializer(@NonNull UClassInitializer node) {
+        probe.measure("handler.visitInitializer", () -> handler.visitInitializer(node));
+    }
+
+    @Override
+    public void visitLabeledExpression(@NonNull ULabeledExpression node) {
+        probe.measure("handler.visitLabeledExpression", () -> handler.visitLabeledExpression(node));
+    }
+
+    @Override
+    public void visitLambdaExpression(@NonNull ULambdaExpression node) {
+        probe.measure("handler.visitLambdaExpression", () -> handler.visitLambdaExpression(node));
+    }
+
+    @Override
+    public void visitLiteralExpression(@NonNull ULiteralExpression node) {
+        probe.measure("handler.visitLiteralExpression", () -> handler.visitLiteralExpression(node));
+    }
+
+    @Override
+    public void visitLocalVariable(@NonNull ULocalVariable node) {
+        probe.measure("handler.visitLocalVariable", () -> handler.visitLocalVariable(node));
+    }
+
+    @Override
+    public void visitMethod(@NonNull UMethod node) {
+        probe.measure("handler.visitMethod", () -> handler.visitMethod(node));
+    }
+
+    @Override
+    public void visitObjectLiteralExpression(@NonNull UObjectLiteralExpression node) {
+        probe.measure("handler.visitObjectLiteralExpression", () -> handler.visitObjectLiteralExpression(node));
+    }
+
+    @Override
+    public void visitParameter(@NonNull UParameter node) {
+        probe.measure("handler.visitParameter", () -> handler.visitParameter(node));
+    }
+
+    @Override
+    public void visitParenthesizedExpression(@NonNull UParenthesizedExpression node) {
+        probe.measure("handler.visitParenthesizedExpression", () -> handler.visitParenthesizedExpression(node));
+    }
+
+    @Override
+    public void visitPolyadicExpression(@NonNull UPolyadicExpression node) {
+        probe.measure("handler.visitPolyadicExpression", () -> handler.visitPolyadicExpression(node));
+    }
+
+    @Override
+    public void visitPostfixExpression(@NonNull UPostfixExpression node) {
+        probe.measure("handler.visitPostfixExpression", () -> handler.visitPostfixExpression(node));
+    }
+
+    @Override
+    public void visitPrefixExpression(@NonNull UPrefixExpression node) {
+        probe.measure("handler.visitPrefixExpression", () -> handler.visitPrefixExpression(node));
+    }
+
+    @Override
+    public void visitQualifiedReferenceExpression(@NonNull UQualifiedReferenceExpression node) {
+        probe.measure("handler.visitQualifiedReferenceExpression", () -> handler.visitQualifiedReferenceExpression(node));
+    }
+
+    @Override
+    public void visitReturnExpression(@NonNull UReturnExpression node) {
+        probe.measure("handler.visitReturnExpression", () -> handler.visitReturnExpression(node));
+    }
+
+    @Override
+    public void visitSimpleNameReferenceExpression(@NonNull USimpleNameReferenceExpression node) {
+        probe.measure("handler.visitSimpleNameReferenceExpression", () -> handler.visitSimpleNameReferenceExpression(node));
+    }
+
+    @Override
+    public void visitSuperExpression(@NonNull USuperExpression node) {
+        probe.measure("handler.visitSuperExpression", () -> handler.visitSuperExpression(node));
+    }
+
+    @Override
+    public void visitSwitchClauseExpression(@NonNull USwitchClauseExpression node) {
+        probe.measure("handler.visitSwitchClauseExpression", () -> handler.visitSwitchClauseExpression(node));
+    }
+
+    @Override
+    public void visitSwitchExpression(@NonNull USwitchExpression node) {
+        probe.measure("handler.visitSwitchExpression", () -> handler.visitSwitchExpression(node));
+    }
+
+    @Override
+    public void visitThisExpression(@NonNull UThisExpression node) {
+        probe.measure("handler.visitThisExpression", () -> handler.visitThisExpression(node));
+    }
+
+    @Override
+    public void visitThrowExpression(@NonNull UThrowExpression node) {
+        probe.measure("handler.visitThrowExpression", () -> handler.visitThrowExpression(node));
+    }
+
+    @Override
+    public void visitTryExpression(@NonNull UTryExpression node) {
+        probe.measure("handler.visitTryExpression", () -> handler.visitTryExpression(node));
+    }
+
+    @Override
+    public void visitTypeReferenceExpression(@NonNull UTypeReferenceExpression node) {
+        probe.measure("handler.visitTypeReferenceExpression", () -> handler.visitTypeReferenceExpression(node));
+    }
+
+    @Override
+    public void visitUnaryExpression(@NonNull UUnaryExpression node) {
+        probe.measure("handler.visitUnaryExpression", () -> handler.visitUnaryExpression(node));
+    }
+
+    @Override
+    public void visitVariable(@NonNull UVariable node) {
+        probe.measure("handler.visitVariable", () -> handler.visitVariable(node));
+    }
+
+    @Override
+    public void visitWhileExpression(@NonNull UWhileExpression node) {
+        probe.measure("handler.visitWhileExpression", () -> handler.visitWhileExpression(node));
+    }
+}
@@ -0,0 +1,142 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming JSON writer. Values are written as soon as they are passed, so arbitrarily
+ * large documents can be produced without keeping them in memory.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class JsonWriter implements Closeable, Flushable {
+
+    private final Writer out;
+    // true for every open object or array that already contains an element
+    private final Deque<Boolean> hasElements = new ArrayDeque<>();
+    private boolean afterName = false;
+
+    JsonWriter(@NonNull Writer out) {
+        this.out = out;
+    }
+
+    @NonNull
+    JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.write('{');
+        hasElements.push(false);
+        return this;
+    }
+
+    @NonNull
+    JsonWriter endObject() throws IOException {
+        hasElements.pop();
+        out.write('}');
+        return this;
+    }
+
+    @NonNull
+    JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.write('[');
+        hasElements.push(false);
+        return this;
+    }
+
+    @NonNull
+    JsonWriter endArray() throws IOException {
+        hasElements.pop();
+        out.write(']');
+        return this;
+    }
+
+    @NonNull
+    JsonWriter name(@NonNull String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    @NonNull
+    JsonWriter value(@Nullable String value) throws IOException {
+        beforeValue();
+        if (value == null)
+            out.write("null");
+        else
+            writeString(value);
+        return this;
+    }
+
+    @NonNull
+    JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    @NonNull
+    JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // writes the separator in front of a name or of a value within an array
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasElements.isEmpty())
+            return;
+        if (hasElements.pop())
+            out.write(',');
+        hasElements.push(true);
+    }
+
+    private void writeString(@NonNull String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        out.write(String.format("\\u%04x", (int) c));
+                    else
+                        out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,64 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.android.SdkConstants.ANDROID_MANIFEST_XML;
+
+/**
+ * Finds the modules of an app release, i.e. the directories lint checks as separate projects.
+ *
+ * A module is a directory with an AndroidManifest.xml, either directly (Eclipse layout) or in
+ * src/main (Gradle layout). Directories below a module, build outputs and hidden directories
+ * are not searched.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class Modules {
+
+    private static final int MAX_DEPTH = 4;
+    private static final String BUILD_DIRECTORY = "build";
+    private static final String GRADLE_MANIFEST = "src" + File.separator + "main" + File.separator + ANDROID_MANIFEST_XML;
+
+    private Modules() {
+    }
+
+    /**
+     * Returns the module directories of the given project, ordered by their path.
+     */
+    @NonNull
+    static List<File> find(@NonNull File projectDirectory) {
+        List<File> modules = new ArrayList<>();
+        collect(projectDirectory, 0, modules);
+        return modules;
+    }
+
+    private static void collect(@NonNull File directory, int depth, @NonNull List<File> modules) {
+        if (new File(directory, ANDROID_MANIFEST_XML).isFile() || new File(directory, GRADLE_MANIFEST).isFile()) {
+            modules.add(directory);
+            return;
+        }
+        if (depth == MAX_DEPTH)
+            return;
+        File[] children = directory.listFiles(File::isDirectory);
+        if (children == null)
+            return;
+        Arrays.sort(children);
+        for (File child : children) {
+            String name = child.getName();
+            if (!name.startsWith(".") && !name.equals(BUILD_DIRECTORY))
+                collect(child, depth + 1, modules);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Longitudinal diff of the findings of consecutive releases of the same app.
+ *
+ * Findings are matched by the fingerprint their detector computed while visiting the reported
+ * node (see lint.Fingerprint), so findings keep their identity when unrelated edits shift their
+ * lines or when their file is moved. Findings stored without fingerprint get one over the issue
+ * id, the enclosing class and method from the SourceOutline and the reported line of code
+ * without comments and whitespace; files other than Java and Kotlin sources, e.g. manifests,
+ * are identified by their path instead of a class. Equal fingerprints are matched by count, so
+ * a release that duplicates a smelly call introduces exactly one finding.
+ *
+ * The outline of a source is only computed once per content and only for findings without
+ * fingerprint, so a release that changed a few files costs at most the outlines of these
+ * files. Together with the incremental analysis, which only checks the changed sources again,
+ * diffing many releases of an app costs about one full scan plus the changes.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class ReleaseDiff {
+
+    private final File appsRoot;
+    // outlines of the sources of the current app by the hash of their content
+    private final Map<String, SourceOutline> outlines = new HashMap<>();
+
+    /**
+     * The findings of a release together with their fingerprints.
+     */
+    static final class Fingerprints {
+        final AppRelease release;
+        final List<Finding> findings;
+        final List<String> fingerprints;
+
+        Fingerprints(@NonNull AppRelease release, @NonNull List<Finding> findings, @NonNull List<String> fingerprints) {
+            this.release = release;
+            this.findings = findings;
+            this.fingerprints = fingerprints;
+        }
+    }
+
+    ReleaseDiff(@NonNull File appsRoot) {
+        this.appsRoot = appsRoot;
+    }
+
+    // numeric release numbers by value, before others, which are compared as strings
+    private static final Comparator<AppRelease> RELEASE_ORDER = (a, b) -> {
+        String first = stripLeadingZeros(a.getReleaseNumber());
+        String second = stripLeadingZeros(b.getReleaseNumber());
+        boolean firstNumeric = isNumber(first);
+        boolean secondNumeric = isNumber(second);
+        if (firstNumeric != secondNumeric)
+            return firstNumeric ? -1 : 1;
+        if (firstNumeric && first.length() != second.length())
+            return Integer.compare(first.length(), second.length());
+        return first.compareTo(second);
+    };
+
+    /**
+     * Writes the findings introduced and fixed between every two consecutive releases of an
+     * app to the given JSON file. The releases of an app are diffed in the order of their
+     * release numbers, wherever the app is listed; releases without stored findings or
+     * sources are left out.
+     */
+    static void write(@NonNull ResultStore store, @NonNull List<AppRelease> releases, @NonNull File appsRoot,
+                      @NonNull File file) throws IOException {
+        ReleaseDiff diff = new ReleaseDiff(appsRoot);
+        try (JsonWriter json = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.name("diffs").beginArray();
+            Fingerprints previous = null;
+            for (AppRelease release : inReleaseOrder(releases)) {
+                List<Finding> findings = store.read(release);
+                if (findings == null || !release.getProjectDirectory(appsRoot).isDirectory())
+                    continue;
+                if (previous != null && !previous.release.getName().equals(release.getName())) {
+                    diff.outlines.clear();
+                    previous = null;
+                }
+                Fingerprints next = diff.fingerprint(release, findings);
+                if (previous != null)
+                    write(json, previous, next);
+                previous = next;
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    /**
+     * Returns the given releases grouped by app, in the order the apps are first listed, with
+     * the releases of every app sorted by release number.
+     */
+    @NonNull
+    static List<AppRelease> inReleaseOrder(@NonNull List<AppRelease> releases) {
+        Map<String, List<AppRelease>> releasesByApp = new LinkedHashMap<>();
+        for (AppRelease release : releases)
+            releasesByApp.computeIfAbsent(release.getName(), name -> new ArrayList<>()).add(release);
+        List<AppRelease> ordered = new ArrayList<>(releases.size());
+        for (List<AppRelease> appReleases : releasesByApp.values()) {
+            appReleases.sort(RELEASE_ORDER);
+            ordered.addAll(appReleases);
+        }
+        return ordered;
+    }
+
+    /**
+     * Computes the fingerprints of the given findings of a release.
+     */
+    @NonNull
+    Fingerprints fingerprint(@NonNull AppRelease release, @NonNull List<Finding> findings) throws IOException {
+        File projectDirectory = release.getProjectDirectory(appsRoot);
+        Map<String, SourceOutline> outlinesByPath = new HashMap<>();
+        List<String> fingerprints = new ArrayList<>(findings.size());
+        for (Finding finding : findings) {
+            if (!finding.getFingerprint().isEmpty()) {
+                fingerprints.add(finding.getFingerprint());
+                continue;
+            }
+            String path = finding.getPath();
+            SourceOutline outline = outlinesByPath.get(path);
+            if (outline == null && !outlinesByPath.containsKey(path)) {
+                outline = outline(new File(projectDirectory, path));
+                outlinesByPath.put(path, outline);
+            }
+            fingerprints.add(outline != null ? fingerprint(finding, outline) : fingerprint(finding, projectDirectory));
+        }
+        return new Fingerprints(release, findings, fingerprints);
+    }
+
+    /**
+     * Returns the findings of the first release whose fingerprints occur less often in the second
+     * release, i.e. the findings introduced by the first release when diffing from the second
+     * and the findings fixed by the second release when diffing from the first.
+     */
+    @NonNull
+    static Fingerprints subtract(@NonNull Fingerprints from, @NonNull Fingerprints other) {
+        Map<String, Integer> remaining = new HashMap<>();
+        for (String fingerprint : other.fingerprints)
+            remaining.merge(fingerprint, 1, Integer::sum);
+        List<Finding> findings = new ArrayList<>();
+        List<String> fingerprints = new ArrayList<>();
+        for (int i = 0; i < from.findings.size(); i++) {
+            String fingerprint = from.fingerprints.get(i);
+            Integer count = remaining.get(fingerprint);
+            if (count != null && count > 0) {
+                remaining.put(fingerprint, count - 1);
+            } else {
+                findings.add(from.findings.get(i));
+                fingerprints.add(fingerprint);
+            }
+        }
+        return new Fingerprints(from.release, findings, fingerprints);
+    }
+
+    private static void write(@NonNull JsonWriter json, @NonNull Fingerprints previous, @NonNull Fingerprints next)
+            throws IOException {
+        json.beginObject();
+        json.name("app").value(next.release.getName());
+        json.name("from").value(previous.release.getReleaseNumber());
+        json.name("to").value(next.release.getReleaseNumber());
+        json.name("introduced");
+        write(json, subtract(next, previous));
+        json.name("fixed");
+        write(json, subtract(previous, next));
+        json.endObject();
+        json.flush();
+    }
+
+    private static void write(@NonNull JsonWriter json, @NonNull Fingerprints fingerprints) throws IOException {
+        json.beginArray();
+        for (int i = 0; i < fingerprints.findings.size(); i++) {
+            Finding finding = fingerprints.findings.get(i);
+            json.beginObject();
+            json.name("fingerprint").value(fingerprints.fingerprints.get(i));
+            json.name("issue").value(finding.getIssueId());
+            json.name("severity").value(finding.getSeverity());
+            json.name("path").value(finding.getPath());
+            json.name("line").value(finding.getLine());
+            json.name("column").value(finding.getColumn());
+            json.name("message").value(finding.getMessage());
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    // null for files which are not Java or Kotlin sources or which do not exist
+    @Nullable
+    private SourceOutline outline(@NonNull File file) throws IOException {
+        String name = file.getName();
+        if (!(name.endsWith(".java") || name.endsWith(".kt")) || !file.isFile())
+            return null;
+        byte[] content = Files.readAllBytes(file.toPath());
+        return outlines.computeIfAbsent(hash(content),
+                hash -> SourceOutline.parse(new String(content, StandardCharsets.UTF_8)));
+    }
+
+    @NonNull
+    private static String fingerprint(@NonNull Finding finding, @NonNull SourceOutline outline) {
+        int line = finding.getLine();
+        String code = outline.getCode(line);
+        return hash(finding.getIssueId(), outline.getEnclosingClass(line), outline.getEnclosingMethod(line),
+                code.isEmpty() ? finding.getMessage() : code);
+    }
+
+    // other files are identified by their path and the reported line without whitespace
+    @NonNull
+    private static String fingerprint(@NonNull Finding finding, @NonNull File projectDirectory) throws IOException {
+        String snippet = finding.getMessage();
+        File file = new File(projectDirectory, finding.getPath());
+        if (finding.getLine() > 0 && file.isFile()) {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1);
+            if (finding.getLine() <= lines.size())
+                snippet = lines.get(finding.getLine() - 1).replaceAll("\\s+", "");
+        }
+        return hash(finding.getIssueId(), finding.getPath(), "", snippet);
+    }
+
+    private static boolean isNumber(@NonNull String releaseNumber) {
+        if (releaseNumber.isEmpty())
+            return false;
+        for (int i = 0; i < releaseNumber.length(); i++) {
+            if (!Character.isDigit(releaseNumber.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    // keeps a single zero, so "0" and "00" stay numbers
+    @NonNull
+    private static String stripLeadingZeros(@NonNull String releaseNumber) {
+        int start = 0;
+        while (start < releaseNumber.length() - 1 && releaseNumber.charAt(start) == '0')
+            start++;
+        return releaseNumber.substring(start);
+    }
+
+    @NonNull
+    private static String hash(@NonNull String... parts) {
+        MessageDigest digest = sha256();
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return hex(digest.digest(), 8);
+    }
+
+    @NonNull
+    private static String hash(@NonNull byte[] content) {
+        byte[] bytes = sha256().digest(content);
+        return hex(bytes, bytes.length);
+    }
+
+    @NonNull
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NonNull
+    private static String hex(@NonNull byte[] bytes, int length) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < length; i++)
+            hex.append(String.format("%02x", bytes[i]));
+        return hex.toString();
+    }
+}
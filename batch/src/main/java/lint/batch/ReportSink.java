@@ -0,0 +1,88 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collects the findings of a lint run from any number of threads without locks and returns
+ * them deduplicated and in a deterministic order.
+ *
+ * Findings are pushed onto one of STRIPES lock-free stacks chosen by the id of the reporting
+ * thread, so threads only compete for a compare-and-set when they share a stripe. Draining
+ * sorts all findings by path, line, column, issue id, message and severity and keeps only the
+ * first finding per issue id and location, so a run that reports from several threads yields
+ * exactly the findings, in exactly the order, of a serial run.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class ReportSink {
+
+    // power of two, so the stripe of a thread is a mask of its id
+    private static final int STRIPES = 16;
+
+    private static final Comparator<Finding> ORDER = Comparator.comparing(Finding::getPath)
+            .thenComparingInt(Finding::getLine)
+            .thenComparingInt(Finding::getColumn)
+            .thenComparing(Finding::getIssueId)
+            .thenComparing(Finding::getMessage)
+            .thenComparing(Finding::getSeverity)
+            .thenComparing(Finding::getFingerprint);
+
+    private final AtomicReferenceArray<Node> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    private static final class Node {
+        private final Finding finding;
+        private final Node next;
+
+        private Node(@NonNull Finding finding, Node next) {
+            this.finding = finding;
+            this.next = next;
+        }
+    }
+
+    void add(@NonNull Finding finding) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        Node head;
+        do {
+            head = stripes.get(stripe);
+        } while (!stripes.compareAndSet(stripe, head, new Node(finding, head)));
+    }
+
+    /**
+     * Removes all findings added so far and returns them sorted and without duplicates. Findings
+     * which are added concurrently are either part of the result or of the next drain.
+     */
+    @NonNull
+    List<Finding> drain() {
+        List<Finding> findings = new ArrayList<>();
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (Node node = stripes.getAndSet(stripe, null); node != null; node = node.next)
+                findings.add(node.finding);
+        }
+        findings.sort(ORDER);
+        List<Finding> unique = new ArrayList<>(findings.size());
+        Finding previous = null;
+        for (Finding finding : findings) {
+            if (previous == null || !sameLocation(previous, finding))
+                unique.add(finding);
+            previous = finding;
+        }
+        return unique;
+    }
+
+    private static boolean sameLocation(@NonNull Finding first, @NonNull Finding second) {
+        return first.getLine() == second.getLine() && first.getColumn() == second.getColumn()
+                && first.getIssueId().equals(second.getIssueId()) && first.getPath().equals(second.getPath());
+    }
+}
@@ -0,0 +1,132 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Persistent store of the findings of every analyzed app release.
+ *
+ * Results are keyed by (app name, release number, registry version, detector set hash) and
+ * laid out as &lt;root&gt;/&lt;registry version&gt;-&lt;detector set hash&gt;/&lt;name&gt;/&lt;release&gt;.tsv.
+ * A result file only exists once the release was analyzed completely, because it is written
+ * to a temporary file first and then moved into place. A restarted batch run therefore only
+ * analyzes the releases without a result file.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public class ResultStore {
+
+    private static final String RESULT_EXTENSION = ".tsv";
+    private static final String UNKNOWN_VERSION = "dev";
+
+    private final File namespaceDirectory;
+
+    public ResultStore(@NonNull File root, @NonNull IssueRegistry registry) {
+        this(root, registryVersion(registry), detectorSetHash(registry));
+    }
+
+    ResultStore(@NonNull File root, @NonNull String registryVersion, @NonNull String detectorSetHash) {
+        this.namespaceDirectory = new File(root, registryVersion + "-" + detectorSetHash);
+    }
+
+    public boolean contains(@NonNull AppRelease release) {
+        return resultFile(release).isFile();
+    }
+
+    /**
+     * Returns the stored findings of the given release, or null if the release was not analyzed yet.
+     */
+    @Nullable
+    public List<Finding> read(@NonNull AppRelease release) throws IOException {
+        File file = resultFile(release);
+        if (!file.isFile())
+            return null;
+        List<Finding> findings = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty())
+                    findings.add(Finding.fromLine(line));
+            }
+        }
+        return findings;
+    }
+
+    public void write(@NonNull AppRelease release, @NonNull List<Finding> findings) throws IOException {
+        File file = resultFile(release);
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        File temporary = File.createTempFile(release.getReleaseNumber() + "-", ".tmp", directory);
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+                for (Finding finding : findings) {
+                    writer.write(finding.toLine());
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    @NonNull
+    private File resultFile(@NonNull AppRelease release) {
+        return new File(new File(namespaceDirectory, release.getName()), release.getReleaseNumber() + RESULT_EXTENSION);
+    }
+
+    // the implementation version of the jar containing the registry, e.g. "1.0"
+    @NonNull
+    static String registryVersion(@NonNull IssueRegistry registry) {
+        Package registryPackage = registry.getClass().getPackage();
+        String version = registryPackage != null ? registryPackage.getImplementationVersion() : null;
+        return version != null ? version : UNKNOWN_VERSION;
+    }
+
+    // a short hash over all issues and their detectors, so that results of a different
+    // detector set are never mixed up even if the version was not increased
+    @NonNull
+    static String detectorSetHash(@NonNull IssueRegistry registry) {
+        TreeSet<String> detectors = new TreeSet<>();
+        for (Issue issue : registry.getIssues()) {
+            detectors.add(issue.getId() + "|" + issue.getImplementation().getDetectorClass().getName() + "|" +
+                    issue.getImplementation().getScope());
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String detector : detectors)
+                digest.update((detector + "\n").getBytes(StandardCharsets.UTF_8));
+            StringBuilder hash = new StringBuilder();
+            byte[] bytes = digest.digest();
+            for (int i = 0; i < 8; i++)
+                hash.append(String.format("%02x", bytes[i]));
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
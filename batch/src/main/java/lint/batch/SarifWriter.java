@@ -0,0 +1,167 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Severity;
+import com.android.tools.lint.detector.api.TextFormat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming SARIF 2.1.0 log of a batch run.
+ *
+ * The tool description with one rule per issue is written when the log is opened, and every
+ * finding is appended to the results of the single run as soon as it is passed, so the memory
+ * used does not depend on the number of findings. The artifact locations are relative to the
+ * apps directory (&lt;name&gt;/&lt;release_number&gt;/&lt;path&gt;), which is given as base URI APPS.
+ * Findings with a fingerprint carry it as partial fingerprint. The log is only a valid JSON
+ * document after it was closed.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class SarifWriter implements Closeable {
+
+    private static final String SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+    private static final String SARIF_VERSION = "2.1.0";
+    private static final String TOOL_NAME = "AndroidLintSecurity";
+    private static final String BASE_ID = "APPS";
+    // key of the partial fingerprints, so that SARIF consumers can match baselines by it
+    private static final String FINGERPRINT = "lintFingerprint/v1";
+
+    private final JsonWriter json;
+    private final Map<String, Integer> ruleIndices = new HashMap<>();
+
+    SarifWriter(@NonNull File file, @NonNull IssueRegistry registry, @NonNull File appsRoot) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Cannot create " + parent);
+        json = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8));
+        json.beginObject();
+        json.name("$schema").value(SCHEMA);
+        json.name("version").value(SARIF_VERSION);
+        json.name("runs").beginArray().beginObject();
+        json.name("tool").beginObject().name("driver").beginObject();
+        json.name("name").value(TOOL_NAME);
+        json.name("version").value(ResultStore.registryVersion(registry));
+        json.name("rules").beginArray();
+        for (Issue issue : registry.getIssues()) {
+            if (ruleIndices.containsKey(issue.getId()))
+                continue;
+            ruleIndices.put(issue.getId(), ruleIndices.size());
+            writeRule(issue);
+        }
+        json.endArray();
+        json.endObject().endObject();
+        json.name("originalUriBaseIds").beginObject()
+                .name(BASE_ID).beginObject().name("uri").value(appsRoot.getAbsoluteFile().toURI().toString()).endObject()
+                .endObject();
+        json.name("results").beginArray();
+    }
+
+    /**
+     * Appends the given finding of the given release to the results.
+     */
+    synchronized void write(@NonNull AppRelease release, @NonNull Finding finding) throws IOException {
+        json.beginObject();
+        json.name("ruleId").value(finding.getIssueId());
+        Integer ruleIndex = ruleIndices.get(finding.getIssueId());
+        if (ruleIndex != null)
+            json.name("ruleIndex").value(ruleIndex);
+        json.name("level").value(level(finding.getSeverity()));
+        json.name("message").beginObject().name("text").value(finding.getMessage()).endObject();
+        json.name("locations").beginArray().beginObject();
+        json.name("physicalLocation").beginObject();
+        json.name("artifactLocation").beginObject()
+                .name("uri").value(uri(release.getName() + "/" + release.getReleaseNumber() + "/" + finding.getPath()))
+                .name("uriBaseId").value(BASE_ID)
+                .endObject();
+        if (finding.getLine() > 0) {
+            json.name("region").beginObject().name("startLine").value(finding.getLine());
+            if (finding.getColumn() > 0)
+                json.name("startColumn").value(finding.getColumn());
+            json.endObject();
+        }
+        json.endObject();
+        json.endObject().endArray();
+        if (!finding.getFingerprint().isEmpty())
+            json.name("partialFingerprints").beginObject().name(FINGERPRINT).value(finding.getFingerprint()).endObject();
+        json.endObject();
+    }
+
+    synchronized void write(@NonNull AppRelease release, @NonNull List<Finding> findings) throws IOException {
+        for (Finding finding : findings)
+            write(release, finding);
+    }
+
+    synchronized void flush() throws IOException {
+        json.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        json.endArray();
+        json.endObject().endArray();
+        json.endObject();
+        json.close();
+    }
+
+    private void writeRule(@NonNull Issue issue) throws IOException {
+        json.beginObject();
+        json.name("id").value(issue.getId());
+        json.name("shortDescription").beginObject()
+                .name("text").value(issue.getBriefDescription(TextFormat.TEXT)).endObject();
+        json.name("fullDescription").beginObject()
+                .name("text").value(issue.getExplanation(TextFormat.TEXT)).endObject();
+        if (!issue.getMoreInfo().isEmpty())
+            json.name("helpUri").value(issue.getMoreInfo().get(0));
+        json.name("defaultConfiguration").beginObject()
+                .name("level").value(level(issue.getDefaultSeverity().name())).endObject();
+        json.name("properties").beginObject()
+                .name("category").value(issue.getCategory().getFullName())
+                .name("priority").value(issue.getPriority())
+                .endObject();
+        json.endObject();
+    }
+
+    @NonNull
+    private static String level(@NonNull String severity) {
+        switch (Severity.valueOf(severity)) {
+            case FATAL:
+            case ERROR:
+                return "error";
+            case WARNING:
+                return "warning";
+            case INFORMATIONAL:
+                return "note";
+            default:
+                return "none";
+        }
+    }
+
+    // escapes the characters of a relative path that are not allowed in a URI
+    @NonNull
+    private static String uri(@NonNull String path) {
+        try {
+            return new URI(null, null, path, null).getRawPath();
+        } catch (URISyntaxException e) {
+            return path;
+        }
+    }
+}
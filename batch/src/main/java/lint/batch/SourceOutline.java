@@ -0,0 +1,266 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The classes and methods of a Java or Kotlin source and its code without comments and
+ * whitespace, line by line.
+ *
+ * The outline comes from a single pass over the characters that skips comments and literals
+ * and classifies the text in front of every opening brace, so it works on sources that do not
+ * compile and is much cheaper than parsing. Declarations that are not followed by a block, e.g.
+ * Kotlin expression functions, are not part of the outline.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class SourceOutline {
+
+    private static final Pattern PACKAGE = Pattern.compile("^package([\\w.]+)");
+    private static final Pattern CLASS = Pattern.compile(
+            "(?:^|[^\\w$])(?:class|interface|enum|object)\\s+([A-Za-z_$][\\w$]*)");
+    private static final Pattern METHOD = Pattern.compile(
+            "([A-Za-z_$][\\w$]*)\\s*\\(([^()]*(?:\\([^()]*\\)[^()]*)*)\\)\\s*(?:throws\\s+[\\w\\s.,]+|:\\s*[\\w\\s.<>?,]+)?$");
+    private static final Pattern FUNCTION = Pattern.compile("(?:^|\\s)fun\\s");
+    private static final Pattern NOT_A_METHOD = Pattern.compile(
+            "if|for|while|switch|catch|synchronized|try|when|return|new|super|this|init|constructor");
+
+    private static final int BLOCK = 0;
+    private static final int CLASS_SCOPE = 1;
+    private static final int METHOD_SCOPE = 2;
+
+    private final String packageName;
+    private final List<String> lines = new ArrayList<>();
+    private final List<Scope> scopes = new ArrayList<>();
+
+    private static final class Scope {
+        private final int kind;
+        private final String name;
+        private final int firstLine;
+        private int lastLine = Integer.MAX_VALUE;
+
+        private Scope(int kind, @NonNull String name, int firstLine) {
+            this.kind = kind;
+            this.name = name;
+            this.firstLine = firstLine;
+        }
+    }
+
+    private SourceOutline(@NonNull CharSequence source) {
+        StringBuilder line = new StringBuilder();
+        StringBuilder header = new StringBuilder();
+        Deque<Scope> open = new ArrayDeque<>();
+        int length = source.length();
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            char next = i + 1 < length ? source.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                while (i + 1 < length && source.charAt(i + 1) != '\n')
+                    i++;
+            } else if (c == '/' && next == '*') {
+                for (i += 2; i < length && !(source.charAt(i) == '*' && i + 1 < length && source.charAt(i + 1) == '/'); i++) {
+                    if (source.charAt(i) == '\n')
+                        newLine(line);
+                }
+                i++;
+            } else if (c == '"' || c == '\'') {
+                // literals are part of the code, but their braces and quotes are not structure
+                int end = literalEnd(source, i);
+                for (int j = i; j < end; j++) {
+                    if (source.charAt(j) == '\n')
+                        newLine(line);
+                    else if (!Character.isWhitespace(source.charAt(j)))
+                        line.append(source.charAt(j));
+                }
+                header.append(c).append(c);
+                i = end - 1;
+            } else if (c == '\n') {
+                newLine(line);
+                header.append(' ');
+            } else {
+                if (!Character.isWhitespace(c))
+                    line.append(c);
+                if (c == '{') {
+                    Scope scope = classify(header.toString().trim(), lines.size() + 1);
+                    scopes.add(scope);
+                    open.push(scope);
+                    header.setLength(0);
+                } else if (c == '}') {
+                    if (!open.isEmpty())
+                        open.pop().lastLine = lines.size() + 1;
+                    header.setLength(0);
+                } else if (c == ';') {
+                    header.setLength(0);
+                } else {
+                    header.append(c);
+                }
+            }
+        }
+        lines.add(line.toString());
+        Matcher packageMatcher = PACKAGE.matcher(firstCode());
+        packageName = packageMatcher.find() ? packageMatcher.group(1) : "";
+    }
+
+    /**
+     * Returns the outline of the given source.
+     */
+    @NonNull
+    static SourceOutline parse(@NonNull CharSequence source) {
+        return new SourceOutline(source);
+    }
+
+    /**
+     * Returns the code of the given 1-based line without comments and whitespace, or an empty
+     * string if the source has no such line.
+     */
+    @NonNull
+    String getCode(int line) {
+        return line >= 1 && line <= lines.size() ? lines.get(line - 1) : "";
+    }
+
+    /**
+     * Returns the qualified name of the innermost class containing the given line, with '$'
+     * separating nested classes, or the package if the line is outside of all classes.
+     */
+    @NonNull
+    String getEnclosingClass(int line) {
+        StringBuilder name = new StringBuilder(packageName);
+        String separator = packageName.isEmpty() ? "" : ".";
+        for (Scope scope : scopes) {
+            if (scope.kind == CLASS_SCOPE && contains(scope, line)) {
+                name.append(separator).append(scope.name);
+                separator = "$";
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Returns the name and parameter types of the innermost method containing the given line,
+     * e.g. "onReceive(Context,Intent)", or an empty string for lines outside of methods.
+     */
+    @NonNull
+    String getEnclosingMethod(int line) {
+        String method = "";
+        for (Scope scope : scopes) {
+            if (!contains(scope, line))
+                continue;
+            if (scope.kind == METHOD_SCOPE)
+                method = scope.name;
+            else if (scope.kind == CLASS_SCOPE)
+                method = "";
+        }
+        return method;
+    }
+
+    private static boolean contains(@NonNull Scope scope, int line) {
+        return scope.firstLine <= line && line <= scope.lastLine;
+    }
+
+    private void newLine(@NonNull StringBuilder line) {
+        lines.add(line.toString());
+        line.setLength(0);
+    }
+
+    @NonNull
+    private String firstCode() {
+        for (String line : lines) {
+            if (!line.isEmpty() && !line.startsWith("@"))
+                return line;
+        }
+        return "";
+    }
+
+    // Kotlin headers span all statements since the last brace, so a class keyword only
+    // declares the block if no function follows it, as in "class A : B() {"
+    @NonNull
+    private static Scope classify(@NonNull String header, int line) {
+        Matcher type = CLASS.matcher(header);
+        String name = null;
+        int end = 0;
+        while (type.find()) {
+            name = type.group(1);
+            end = type.end();
+        }
+        if (name != null && !FUNCTION.matcher(header.substring(end)).find())
+            return new Scope(CLASS_SCOPE, name, line);
+        Matcher method = METHOD.matcher(header);
+        if (method.find() && !NOT_A_METHOD.matcher(method.group(1)).matches() && !header.contains("->")
+                && !isAnonymousClass(header, method.start()))
+            return new Scope(METHOD_SCOPE, method.group(1) + "(" + parameterTypes(method.group(2)) + ")", line);
+        return new Scope(BLOCK, "", line);
+    }
+
+    // "new Runnable() {" is an anonymous class rather than a method named Runnable
+    private static boolean isAnonymousClass(@NonNull String header, int nameStart) {
+        String before = header.substring(0, nameStart).replaceAll("\\s+", "");
+        return before.endsWith("new") || before.endsWith(".") || before.endsWith("object:");
+    }
+
+    // "final Context context, @Nullable Map<String, Integer> extras" -> "Context,Map<String,Integer>",
+    // and "context: Context" -> "Context"
+    @NonNull
+    private static String parameterTypes(@NonNull String parameters) {
+        List<String> types = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= parameters.length(); i++) {
+            char c = i < parameters.length() ? parameters.charAt(i) : ',';
+            if (c == '<')
+                depth++;
+            else if (c == '>')
+                depth--;
+            else if (c == ',' && depth == 0) {
+                String parameter = parameters.substring(start, i).trim();
+                if (!parameter.isEmpty())
+                    types.add(parameterType(parameter));
+                start = i + 1;
+            }
+        }
+        return String.join(",", types);
+    }
+
+    @NonNull
+    private static String parameterType(@NonNull String parameter) {
+        int colon = parameter.indexOf(':');
+        if (colon >= 0)
+            return parameter.substring(colon + 1).replaceAll("\\s+|=.*", "");
+        String type = parameter.replaceAll("@[\\w.]+(\\s*\\([^)]*\\))?|\\bfinal\\b", "").trim();
+        int name = type.lastIndexOf(' ');
+        return (name > 0 ? type.substring(0, name) : type).replaceAll("\\s+", "");
+    }
+
+    // the index after the literal starting at the given quote, including Kotlin raw strings
+    private static int literalEnd(@NonNull CharSequence source, int start) {
+        char quote = source.charAt(start);
+        int length = source.length();
+        if (quote == '"' && start + 2 < length && source.charAt(start + 1) == '"' && source.charAt(start + 2) == '"') {
+            for (int i = start + 3; i + 2 < length; i++) {
+                if (source.charAt(i) == '"' && source.charAt(i + 1) == '"' && source.charAt(i + 2) == '"')
+                    return i + 3;
+            }
+            return length;
+        }
+        for (int i = start + 1; i < length; i++) {
+            char c = source.charAt(i);
+            if (c == '\\')
+                i++;
+            else if (c == quote || c == '\n')
+                return i + 1;
+        }
+        return length;
+    }
+}
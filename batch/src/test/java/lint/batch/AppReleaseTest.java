@@ -0,0 +1,58 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AppReleaseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadCsvWithByteOrderMark() throws IOException {
+        File csv = write("\uFEFFname,release_number\n" +
+                "adp.Vol,137\n" +
+                "\n" +
+                "at.bitfire.davdroid,201\n");
+
+        List<AppRelease> releases = AppRelease.readCsv(csv);
+
+        assertEquals(2, releases.size());
+        assertEquals(new AppRelease("adp.Vol", "137"), releases.get(0));
+        assertEquals(new AppRelease("at.bitfire.davdroid", "201"), releases.get(1));
+    }
+
+    @Test
+    public void testProjectDirectory() {
+        AppRelease release = new AppRelease("at.bitfire.davdroid", "201");
+
+        assertEquals(new File(new File("apps", "at.bitfire.davdroid"), "201"),
+                release.getProjectDirectory(new File("apps")));
+        assertEquals("at.bitfire.davdroid-201", release.getReportName());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedLine() throws IOException {
+        AppRelease.readCsv(write("name,release_number\nadp.Vol\n"));
+    }
+
+    private File write(String content) throws IOException {
+        File csv = temporaryFolder.newFile("apps.csv");
+        Files.write(csv.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return csv;
+    }
+}
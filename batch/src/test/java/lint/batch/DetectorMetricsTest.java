@@ -0,0 +1,106 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Detector;
+import com.android.tools.lint.detector.api.Implementation;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Scope;
+import com.android.tools.lint.detector.api.Severity;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorMetricsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    public static class SlowDetector extends Detector {
+    }
+
+    public static class FastDetector extends Detector {
+    }
+
+    private final IssueRegistry registry = new IssueRegistry() {
+        @NonNull
+        @Override
+        public List<Issue> getIssues() {
+            return Arrays.asList(issue("Slow", SlowDetector.class), issue("AlsoSlow", SlowDetector.class),
+                    issue("Fast", FastDetector.class));
+        }
+    };
+
+    @Test
+    public void testDetectorsAreOrderedByWallTime() throws IOException {
+        DetectorMetrics metrics = new DetectorMetrics();
+        metrics.record("FastDetector", "visitMethod", 100, 10);
+        metrics.record("SlowDetector", "visitMethod", 200, 20);
+        metrics.record("SlowDetector", "afterCheckProject", 300, 30);
+
+        String content = write(metrics);
+
+        String bytes = DetectorMetrics.isAllocationTrackingSupported() ? "50" : "-1";
+        assertTrue(content.contains("{\"detector\":\"SlowDetector\",\"issues\":[\"Slow\",\"AlsoSlow\"],"
+                + "\"calls\":2,\"wallTimeNanos\":500,\"allocatedBytes\":" + bytes + ",\"callbacks\":["
+                + "{\"callback\":\"afterCheckProject\",\"calls\":1,"));
+        assertTrue(content.indexOf("\"detector\":\"SlowDetector\"") < content.indexOf("\"detector\":\"FastDetector\""));
+    }
+
+    @Test
+    public void testReportsAreCountedPerIssue() throws IOException {
+        DetectorMetrics metrics = new DetectorMetrics();
+        metrics.record("SlowDetector", "visitMethod", 200, 20);
+        metrics.recordReport("Slow");
+        metrics.recordReport("Slow");
+
+        String content = write(metrics);
+
+        // the costs of a detector are attributed to each of its issues
+        assertTrue(content.contains("{\"id\":\"Slow\",\"detector\":\"SlowDetector\",\"reports\":2,\"calls\":1,\"wallTimeNanos\":200,"));
+        assertTrue(content.contains("{\"id\":\"AlsoSlow\",\"detector\":\"SlowDetector\",\"reports\":0,\"calls\":1,\"wallTimeNanos\":200,"));
+        assertTrue(content.contains("{\"id\":\"Fast\",\"detector\":\"FastDetector\",\"reports\":0,\"calls\":0,\"wallTimeNanos\":0,"));
+    }
+
+    @Test
+    public void testAllocatedBytesOfTheCurrentThread() {
+        long before = DetectorMetrics.allocatedBytes();
+        byte[] allocated = new byte[1 << 20];
+
+        long after = DetectorMetrics.allocatedBytes();
+        if (DetectorMetrics.isAllocationTrackingSupported())
+            assertTrue(after - before >= allocated.length);
+        else
+            assertEquals(0, after);
+    }
+
+    @NonNull
+    private String write(@NonNull DetectorMetrics metrics) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "metrics/detectors.json");
+        metrics.write(file, registry);
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private static Issue issue(@NonNull String id, @NonNull Class<? extends Detector> detector) {
+        return Issue.create(id, id, id, Category.SECURITY, 6, Severity.WARNING,
+                new Implementation(detector, Scope.JAVA_FILE_SCOPE));
+    }
+}
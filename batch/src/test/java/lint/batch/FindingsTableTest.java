@@ -0,0 +1,107 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FindingsTableTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AppRelease vol = new AppRelease("adp.Vol", "137");
+    private final AppRelease davdroid = new AppRelease("at.bitfire.davdroid", "201");
+    private final AppRelease davdroidUpdate = new AppRelease("at.bitfire.davdroid", "202");
+
+    @Test
+    public void testWriteAndReadRows() throws IOException {
+        File directory = temporaryFolder.newFolder("table");
+        Finding finding = new Finding("UnauthorizedIntent", "WARNING", "src/main/java/A.java", 12, 9,
+                "Avoid sending implicit intents if possible");
+        try (FindingsTable.Writer writer = new FindingsTable.Writer(directory)) {
+            writer.append(vol, Collections.<Finding>emptyList());
+            writer.append(davdroid, Arrays.asList(finding, finding));
+            writer.commit();
+        }
+
+        FindingsTable table = FindingsTable.open(directory);
+
+        assertEquals(2, table.getRowCount());
+        assertEquals(2, table.getReleaseCount());
+        assertEquals(davdroid, table.getRelease(1));
+        assertEquals(0, table.getFirstRow(1));
+        assertEquals(2, table.getFirstRow(2));
+        assertEquals(1, table.getReleaseOfRow(1));
+        assertEquals(finding, table.getFinding(1));
+    }
+
+    @Test
+    public void testQuery() throws IOException {
+        File directory = temporaryFolder.newFolder("table");
+        try (FindingsTable.Writer writer = new FindingsTable.Writer(directory)) {
+            writer.append(vol, Arrays.asList(finding("A"), finding("B"), finding("C")));
+            writer.append(davdroid, Arrays.asList(finding("A"), finding("B")));
+            writer.append(davdroidUpdate, Collections.singletonList(finding("A")));
+            writer.commit();
+        }
+
+        FindingsTable table = FindingsTable.open(directory);
+
+        assertEquals(Collections.singletonList(davdroid), table.query().with("A").with("B").without("C").releases());
+        assertEquals(Arrays.asList(vol.getName(), davdroid.getName()), table.query().with("B").with("B").apps());
+        assertEquals(Collections.<AppRelease>emptyList(), table.query().with("A").without("A").releases());
+        assertEquals(Collections.<AppRelease>emptyList(), table.query().with("Unknown").releases());
+        assertEquals(Arrays.asList(vol, davdroid, davdroidUpdate), table.query().without("Unknown").releases());
+    }
+
+    @Test
+    public void testTableWithoutCommitIsNotReadable() throws IOException {
+        File directory = temporaryFolder.newFolder("table");
+        try (FindingsTable.Writer writer = new FindingsTable.Writer(directory)) {
+            writer.append(vol, Collections.singletonList(finding("A")));
+        }
+
+        try {
+            FindingsTable.open(directory);
+            fail("the table was never committed");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testFailedRewriteLeavesNoReadableTable() throws IOException {
+        File directory = temporaryFolder.newFolder("table");
+        try (FindingsTable.Writer writer = new FindingsTable.Writer(directory)) {
+            writer.append(vol, Collections.singletonList(finding("A")));
+            writer.commit();
+        }
+        try (FindingsTable.Writer writer = new FindingsTable.Writer(directory)) {
+            writer.append(davdroid, Collections.singletonList(finding("B")));
+            throw new IOException("Cannot read the findings of " + davdroidUpdate);
+        } catch (IOException expected) {
+        }
+
+        try {
+            FindingsTable.open(directory);
+            fail("the old header was kept");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static Finding finding(String issueId) {
+        return new Finding(issueId, "WARNING", "AndroidManifest.xml", 1, 1, issueId);
+    }
+}
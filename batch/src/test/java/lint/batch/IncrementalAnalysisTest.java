@@ -0,0 +1,186 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import lint.AndroidLintSecurityRegistry;
+import lint.ImplicitUnprotectedIntentSendDetector;
+import lint.StickyBroadcastDetector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IncrementalAnalysisTest {
+
+    private static final String FILE_LOCAL = "StickyBroadcast";
+    private static final String PROJECT = "UnauthorizedIntent";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AppRelease first = new AppRelease("at.bitfire.davdroid", "201");
+    private final AppRelease second = new AppRelease("at.bitfire.davdroid", "202");
+
+    /**
+     * Reports FILE_LOCAL in the first line of every checked source and PROJECT in the manifest,
+     * and records the inputs of every file-local run.
+     */
+    private static final class FakeLint implements IncrementalAnalysis.LintRunner {
+        private final File projectDirectory;
+        private final List<List<String>> fileLocalRuns = new ArrayList<>();
+        private boolean failProjectRun;
+
+        private FakeLint(File projectDirectory) {
+            this.projectDirectory = projectDirectory;
+        }
+
+        @Override
+        public List<Finding> run(List<File> inputs, Set<String> issueIds) throws IOException {
+            List<Finding> findings = new ArrayList<>();
+            if (issueIds.contains(PROJECT)) {
+                if (failProjectRun)
+                    throw new IOException("lint failed");
+                findings.add(new Finding(PROJECT, "WARNING", "AndroidManifest.xml", 1, 1, "project"));
+                return findings;
+            }
+            List<String> paths = new ArrayList<>();
+            for (File input : inputs)
+                collect(input, paths);
+            Collections.sort(paths);
+            fileLocalRuns.add(paths);
+            for (String path : paths)
+                findings.add(new Finding(FILE_LOCAL, "WARNING", path, 1, 1, "file-local"));
+            return findings;
+        }
+
+        private void collect(File file, List<String> paths) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children)
+                    collect(child, paths);
+            } else if (file.getName().endsWith(".java")) {
+                paths.add(projectDirectory.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyListedIssuesAreFileLocal() {
+        IncrementalAnalysis analysis = new IncrementalAnalysis(temporaryFolder.getRoot(), new AndroidLintSecurityRegistry());
+
+        assertTrue(analysis.getFileLocalIssueIds().contains(StickyBroadcastDetector.ISSUE.getId()));
+        // its detector reads the summaries of methods in other files
+        assertFalse(analysis.getFileLocalIssueIds().contains(
+                ImplicitUnprotectedIntentSendDetector.IMPLICIT_INTENT_SENDED_UNPROTECTED.getId()));
+    }
+
+    @Test
+    public void testUnchangedFilesReuseCachedFindings() throws IOException {
+        IncrementalAnalysis analysis = analysis();
+        File firstDirectory = release(first, "class A {}", "class B {}");
+        File secondDirectory = release(second, "class A {}", "class B { int changed; }");
+
+        FakeLint firstLint = new FakeLint(firstDirectory);
+        analysis.analyze(first, firstDirectory, firstLint);
+        FakeLint secondLint = new FakeLint(secondDirectory);
+        List<Finding> findings = analysis.analyze(second, secondDirectory, secondLint);
+
+        assertEquals(Collections.singletonList(Arrays.asList("src/A.java", "src/B.java")), firstLint.fileLocalRuns);
+        assertEquals(Collections.singletonList(Collections.singletonList("src/B.java")), secondLint.fileLocalRuns);
+        assertEquals(paths("AndroidManifest.xml", "src/A.java", "src/B.java"), paths(findings));
+    }
+
+    @Test
+    public void testUnchangedReleaseIsNotCheckedAgain() throws IOException {
+        IncrementalAnalysis analysis = analysis();
+        File firstDirectory = release(first, "class A {}", "class B {}");
+        File secondDirectory = release(second, "class A {}", "class B {}");
+
+        analysis.analyze(first, firstDirectory, new FakeLint(firstDirectory));
+        FakeLint secondLint = new FakeLint(secondDirectory);
+        List<Finding> findings = analysis.analyze(second, secondDirectory, secondLint);
+
+        assertTrue(secondLint.fileLocalRuns.isEmpty());
+        assertEquals(paths("AndroidManifest.xml", "src/A.java", "src/B.java"), paths(findings));
+    }
+
+    @Test
+    public void testFindingsOfDeletedFilesAreDropped() throws IOException {
+        IncrementalAnalysis analysis = analysis();
+        File firstDirectory = release(first, "class A {}", "class B {}");
+        File secondDirectory = release(second, "class A {}", null);
+
+        analysis.analyze(first, firstDirectory, new FakeLint(firstDirectory));
+        List<Finding> findings = analysis.analyze(second, secondDirectory, new FakeLint(secondDirectory));
+
+        assertEquals(paths("AndroidManifest.xml", "src/A.java"), paths(findings));
+    }
+
+    @Test
+    public void testStateIsOnlyWrittenAfterSuccessfulRun() throws IOException {
+        IncrementalAnalysis analysis = analysis();
+        File firstDirectory = release(first, "class A {}", "class B {}");
+        FakeLint failingLint = new FakeLint(firstDirectory);
+        failingLint.failProjectRun = true;
+        try {
+            analysis.analyze(first, firstDirectory, failingLint);
+            fail("the failed project run was not reported");
+        } catch (IOException expected) {
+            // the state must not pair the new hashes with the findings of the failed run
+        }
+
+        FakeLint retryLint = new FakeLint(firstDirectory);
+        analysis.analyze(first, firstDirectory, retryLint);
+
+        assertEquals(Collections.singletonList(Arrays.asList("src/A.java", "src/B.java")), retryLint.fileLocalRuns);
+    }
+
+    private IncrementalAnalysis analysis() {
+        return new IncrementalAnalysis(new File(temporaryFolder.getRoot(), "cache"),
+                new HashSet<>(Arrays.asList(FILE_LOCAL, PROJECT)));
+    }
+
+    // a release with src/A.java and, unless its content is null, src/B.java
+    private File release(AppRelease release, String a, String b) throws IOException {
+        File directory = release.getProjectDirectory(new File(temporaryFolder.getRoot(), "apps"));
+        File sources = new File(directory, "src");
+        if (!sources.mkdirs())
+            throw new IOException("Cannot create " + sources);
+        Files.write(new File(sources, "A.java").toPath(), a.getBytes(StandardCharsets.UTF_8));
+        if (b != null)
+            Files.write(new File(sources, "B.java").toPath(), b.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "AndroidManifest.xml").toPath(), "<manifest/>".getBytes(StandardCharsets.UTF_8));
+        return directory;
+    }
+
+    private static List<String> paths(String... paths) {
+        return Arrays.asList(paths);
+    }
+
+    private static List<String> paths(List<Finding> findings) {
+        List<String> paths = new ArrayList<>();
+        for (Finding finding : findings)
+            paths.add(finding.getPath());
+        Collections.sort(paths);
+        return paths;
+    }
+}
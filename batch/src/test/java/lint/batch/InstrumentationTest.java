@@ -0,0 +1,168 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.client.api.UElementHandler;
+import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
+import com.android.tools.lint.detector.api.Detector;
+import com.android.tools.lint.detector.api.Implementation;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.JavaContext;
+import com.android.tools.lint.detector.api.Scope;
+import com.android.tools.lint.detector.api.Severity;
+
+import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UElement;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstrumentationTest {
+
+    private static final AtomicInteger projects = new AtomicInteger();
+    private static final AtomicInteger calls = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    public static class CallDetector extends Detector implements Detector.UastScanner {
+        @Override
+        public void afterCheckProject(@NonNull Context context) {
+            projects.incrementAndGet();
+        }
+
+        @Override
+        public List<Class<? extends UElement>> getApplicableUastTypes() {
+            return Collections.singletonList(UCallExpression.class);
+        }
+
+        @Override
+        public UElementHandler createUastHandler(@NonNull JavaContext context) {
+            return new UElementHandler() {
+                @Override
+                public void visitCallExpression(@NonNull UCallExpression node) {
+                    calls.incrementAndGet();
+                }
+            };
+        }
+    }
+
+    public static class ManifestDetector extends Detector implements Detector.XmlScanner {
+    }
+
+    private static final Issue FIRST = issue("First", CallDetector.class, Scope.JAVA_FILE_SCOPE);
+    private static final Issue SECOND = issue("Second", CallDetector.class, Scope.JAVA_FILE_SCOPE);
+    private static final Issue MANIFEST = issue("Manifest", ManifestDetector.class, Scope.MANIFEST_SCOPE);
+
+    private final IssueRegistry registry = new IssueRegistry() {
+        @NonNull
+        @Override
+        public List<Issue> getIssues() {
+            return Arrays.asList(FIRST, SECOND, MANIFEST);
+        }
+    };
+
+    @Test
+    public void testIssuesOfTheRegistryAreNotChanged() {
+        IssueRegistry instrumented = Instrumentation.instrument(registry, new DetectorMetrics());
+
+        assertSame(CallDetector.class, FIRST.getImplementation().getDetectorClass());
+        assertSame(ManifestDetector.class, MANIFEST.getImplementation().getDetectorClass());
+        List<Issue> issues = instrumented.getIssues();
+        assertEquals(3, issues.size());
+        assertEquals("First", issues.get(0).getId());
+        assertEquals(Severity.WARNING, issues.get(0).getDefaultSeverity());
+        assertEquals(Scope.JAVA_FILE_SCOPE, issues.get(0).getImplementation().getScope());
+        assertNotSame(CallDetector.class, issues.get(0).getImplementation().getDetectorClass());
+    }
+
+    @Test
+    public void testIssuesOfOneDetectorShareItsWrapper() {
+        List<Issue> issues = Instrumentation.instrument(registry, new DetectorMetrics()).getIssues();
+
+        assertSame(issues.get(0).getImplementation().getDetectorClass(),
+                issues.get(1).getImplementation().getDetectorClass());
+        assertNotSame(issues.get(0).getImplementation().getDetectorClass(),
+                issues.get(2).getImplementation().getDetectorClass());
+    }
+
+    @Test
+    public void testCallbacksAndHandlersAreMeasured() throws Exception {
+        DetectorMetrics metrics = new DetectorMetrics();
+        Detector detector = createDetector(Instrumentation.instrument(registry, metrics), 0);
+        int projectsBefore = projects.get();
+        int callsBefore = calls.get();
+
+        detector.afterCheckProject(null);
+        UElementHandler handler = ((Detector.UastScanner) detector).createUastHandler(null);
+        handler.visitCallExpression(null);
+        handler.visitCallExpression(null);
+
+        assertEquals(projectsBefore + 1, projects.get());
+        assertEquals(callsBefore + 2, calls.get());
+        String content = write(metrics);
+        assertTrue(content.contains("{\"callback\":\"afterCheckProject\",\"calls\":1,"));
+        assertTrue(content.contains("{\"callback\":\"handler.visitCallExpression\",\"calls\":2,"));
+    }
+
+    @Test
+    public void testRegistriesRecordIntoTheirOwnMetrics() throws Exception {
+        DetectorMetrics first = new DetectorMetrics();
+        DetectorMetrics second = new DetectorMetrics();
+        createDetector(Instrumentation.instrument(registry, first), 0).afterCheckProject(null);
+
+        assertTrue(write(first).contains("{\"callback\":\"afterCheckProject\",\"calls\":1,"));
+        assertTrue(write(second).contains("\"detector\":\"CallDetector\",\"issues\":[\"First\",\"Second\"],\"calls\":0,"));
+    }
+
+    @Test
+    public void testTemplateIsNotCreatedByLint() {
+        try {
+            new InstrumentedDetector();
+            fail("the template has no detector to wrap");
+        } catch (IllegalStateException expected) {
+            // only the wrapper classes of instrumented registries can be created
+        }
+    }
+
+    @NonNull
+    private static Detector createDetector(@NonNull IssueRegistry instrumented, int issue) throws Exception {
+        return instrumented.getIssues().get(issue).getImplementation().getDetectorClass()
+                .getDeclaredConstructor().newInstance();
+    }
+
+    @NonNull
+    private String write(@NonNull DetectorMetrics metrics) throws IOException {
+        File file = temporaryFolder.newFile();
+        metrics.write(file, registry);
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private static Issue issue(@NonNull String id, @NonNull Class<? extends Detector> detector,
+                               @NonNull EnumSet<Scope> scope) {
+        return Issue.create(id, id, id, Category.SECURITY, 6, Severity.WARNING, new Implementation(detector, scope));
+    }
+}
@@ -0,0 +1,42 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonWriterTest {
+
+    @Test
+    public void testNestedDocument() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("detector").value("WeakHashFunctionDetector");
+        json.name("issues").beginArray().value("WeakHashFunction").value("Other").endArray();
+        json.name("callbacks").beginArray();
+        json.beginObject().name("calls").value(3).name("tracked").value(true).endObject();
+        json.beginObject().name("calls").value(0).endObject();
+        json.endArray();
+        json.name("empty").beginArray().endArray();
+        json.endObject();
+
+        assertEquals("{\"detector\":\"WeakHashFunctionDetector\",\"issues\":[\"WeakHashFunction\",\"Other\"],"
+                + "\"callbacks\":[{\"calls\":3,\"tracked\":true},{\"calls\":0}],\"empty\":[]}", out.toString());
+    }
+
+    @Test
+    public void testStringsAreEscaped() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).beginArray().value("a\"b\\c\nd\te\u0001").value((String) null).endArray();
+
+        assertEquals("[\"a\\\"b\\\\c\\nd\\te\\u0001\",null]", out.toString());
+    }
+}
@@ -0,0 +1,53 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModulesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testGradleModulesInPathOrder() throws IOException {
+        File project = temporaryFolder.newFolder("project");
+        manifest(project, "lib/src/main");
+        manifest(project, "app/src/main");
+        manifest(project, "features/chat/src/main");
+        manifest(project, "app/build/intermediates/manifests");
+        manifest(project, ".idea/src/main");
+
+        assertEquals(Arrays.asList(new File(project, "app"), new File(project, "features/chat"), new File(project, "lib")),
+                Modules.find(project));
+    }
+
+    @Test
+    public void testSingleModuleProject() throws IOException {
+        File project = temporaryFolder.newFolder("project");
+        manifest(project, "");
+        manifest(project, "library");
+
+        assertEquals(Collections.singletonList(project), Modules.find(project));
+    }
+
+    private static void manifest(File project, String directory) throws IOException {
+        File parent = new File(project, directory);
+        if (!parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Cannot create " + parent);
+        if (!new File(parent, "AndroidManifest.xml").createNewFile())
+            throw new IOException("Cannot create the manifest in " + parent);
+    }
+}
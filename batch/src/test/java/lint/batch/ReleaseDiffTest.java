@@ -0,0 +1,136 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReleaseDiffTest {
+
+    private static final String RECEIVER = "" +
+            "package test.pkg;\n" +
+            "\n" +
+            "public class SyncReceiver extends BroadcastReceiver {\n" +
+            "    @Override\n" +
+            "    public void onReceive(final Context context, Intent intent) {\n" +
+            "        context.sendStickyBroadcast(intent); // sticky\n" +
+            "    }\n" +
+            "\n" +
+            "    static class Helper {\n" +
+            "        void notify(Context context, Map<String, Integer> extras) {\n" +
+            "            context.sendStickyBroadcast(new Intent(\"{\"));\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AppRelease first = new AppRelease("at.bitfire.davdroid", "201");
+    private final AppRelease second = new AppRelease("at.bitfire.davdroid", "202");
+
+    @Test
+    public void testOutline() {
+        SourceOutline outline = SourceOutline.parse(RECEIVER);
+
+        assertEquals("context.sendStickyBroadcast(intent);", outline.getCode(6));
+        assertEquals("test.pkg.SyncReceiver", outline.getEnclosingClass(6));
+        assertEquals("onReceive(Context,Intent)", outline.getEnclosingMethod(6));
+        assertEquals("test.pkg.SyncReceiver$Helper", outline.getEnclosingClass(11));
+        assertEquals("notify(Context,Map<String,Integer>)", outline.getEnclosingMethod(11));
+        assertEquals("", outline.getEnclosingMethod(9));
+    }
+
+    @Test
+    public void testKotlinOutline() {
+        SourceOutline outline = SourceOutline.parse("" +
+                "package test.pkg\n" +
+                "class SyncReceiver : BroadcastReceiver() {\n" +
+                "    override fun onReceive(context: Context, intent: Intent?) {\n" +
+                "        context.sendStickyBroadcast(intent)\n" +
+                "    }\n" +
+                "}\n");
+
+        assertEquals("test.pkg.SyncReceiver", outline.getEnclosingClass(4));
+        assertEquals("onReceive(Context,Intent?)", outline.getEnclosingMethod(4));
+    }
+
+    @Test
+    public void testUnrelatedEditsKeepFingerprints() throws IOException {
+        source(first, RECEIVER);
+        source(second, "// moved helper\n" + RECEIVER.replace("public class", "\n\npublic class"));
+        ReleaseDiff diff = new ReleaseDiff(temporaryFolder.getRoot());
+
+        ReleaseDiff.Fingerprints before = diff.fingerprint(first, Arrays.asList(sticky(6), sticky(11)));
+        ReleaseDiff.Fingerprints after = diff.fingerprint(second, Arrays.asList(sticky(9), sticky(14)));
+
+        assertEquals(before.fingerprints, after.fingerprints);
+        assertEquals(Collections.<Finding>emptyList(), ReleaseDiff.subtract(after, before).findings);
+        assertEquals(Collections.<Finding>emptyList(), ReleaseDiff.subtract(before, after).findings);
+    }
+
+    @Test
+    public void testIntroducedAndFixed() throws IOException {
+        source(first, RECEIVER);
+        source(second, RECEIVER.replace("sendStickyBroadcast(intent)", "sendBroadcast(intent)")
+                .replace("\"{\"));", "\"{\"));\n            context.sendStickyBroadcast(new Intent(\"{\"));"));
+        ReleaseDiff diff = new ReleaseDiff(temporaryFolder.getRoot());
+
+        ReleaseDiff.Fingerprints before = diff.fingerprint(first, Arrays.asList(sticky(6), sticky(11)));
+        ReleaseDiff.Fingerprints after = diff.fingerprint(second, Arrays.asList(sticky(11), sticky(12)));
+
+        assertEquals(Collections.singletonList(sticky(12)), ReleaseDiff.subtract(after, before).findings);
+        assertEquals(Collections.singletonList(sticky(6)), ReleaseDiff.subtract(before, after).findings);
+    }
+
+    @Test
+    public void testDetectorFingerprintsAreUsed() throws IOException {
+        ReleaseDiff diff = new ReleaseDiff(temporaryFolder.getRoot());
+        Finding original = new Finding("StickyBroadcast", "WARNING", "src/Sync.java", 6, 9, "Sticky", "00000000000000aa");
+        Finding moved = new Finding("StickyBroadcast", "WARNING", "src/Moved.java", 40, 9, "Sticky", "00000000000000aa");
+
+        ReleaseDiff.Fingerprints before = diff.fingerprint(first, Collections.singletonList(original));
+        ReleaseDiff.Fingerprints after = diff.fingerprint(second, Collections.singletonList(moved));
+
+        assertEquals(Collections.singletonList("00000000000000aa"), after.fingerprints);
+        assertEquals(Collections.<Finding>emptyList(), ReleaseDiff.subtract(after, before).findings);
+    }
+
+    @Test
+    public void testReleasesAreGroupedByAppAndSortedByNumber() {
+        AppRelease vol = new AppRelease("adp.Vol", "137");
+        AppRelease volUpdate = new AppRelease("adp.Vol", "1370");
+        AppRelease third = new AppRelease("at.bitfire.davdroid", "1010");
+        AppRelease beta = new AppRelease("at.bitfire.davdroid", "beta");
+        AppRelease old = new AppRelease("at.bitfire.davdroid", "099");
+
+        // the apps keep the order they are first listed in
+        assertEquals(Arrays.asList(old, first, second, third, beta, vol, volUpdate),
+                ReleaseDiff.inReleaseOrder(Arrays.asList(third, volUpdate, beta, second, vol, first, old)));
+    }
+
+    private void source(AppRelease release, String content) throws IOException {
+        File file = new File(release.getProjectDirectory(temporaryFolder.getRoot()), "src/main/java/test/pkg/SyncReceiver.java");
+        if (!file.getParentFile().mkdirs())
+            throw new IOException("Cannot create " + file.getParentFile());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Finding sticky(int line) {
+        return new Finding("StickyBroadcast", "WARNING", "src/main/java/test/pkg/SyncReceiver.java", line, 9,
+                "Sticky broadcasts can be accessed, sent or modified by anyone");
+    }
+}
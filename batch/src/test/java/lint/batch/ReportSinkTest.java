@@ -0,0 +1,60 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReportSinkTest {
+
+    @Test
+    public void testSortedAndDeduplicated() {
+        ReportSink sink = new ReportSink();
+        Finding second = new Finding("WeakHashFunction", "WARNING", "src/B.java", 3, 1, "MD5");
+        Finding first = new Finding("CustomSchemeChannel", "WARNING", "AndroidManifest.xml", 12, 5, "scheme");
+        sink.add(second);
+        sink.add(first);
+        sink.add(new Finding("WeakHashFunction", "WARNING", "src/B.java", 3, 1, "MD5"));
+
+        assertEquals(Arrays.asList(first, second), sink.drain());
+        assertTrue(sink.drain().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentRunEqualsSerialRun() throws InterruptedException {
+        List<Finding> reported = new ArrayList<>();
+        for (int file = 0; file < 50; file++) {
+            for (int line = 1; line <= 40; line++)
+                reported.add(new Finding("Issue" + line % 3, "WARNING", "src/F" + file + ".java", line, 1, "m"));
+        }
+        ReportSink serial = new ReportSink();
+        for (Finding finding : reported)
+            serial.add(finding);
+
+        List<Finding> shuffled = new ArrayList<>(reported);
+        shuffled.addAll(reported);
+        Collections.shuffle(shuffled);
+        ReportSink concurrent = new ReportSink();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            List<Finding> part = shuffled.subList(t * shuffled.size() / 8, (t + 1) * shuffled.size() / 8);
+            threads.add(new Thread(() -> part.forEach(concurrent::add)));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(serial.drain(), concurrent.drain());
+    }
+}
@@ -0,0 +1,82 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AppRelease release = new AppRelease("at.bitfire.davdroid", "201");
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        ResultStore store = new ResultStore(temporaryFolder.getRoot(), "1.0", "0123456789abcdef");
+        List<Finding> findings = Arrays.asList(
+                new Finding("UnauthorizedIntent", "WARNING", "src/main/java/A.java", 12, 9,
+                        "Avoid sending implicit intents if possible"),
+                new Finding("CustomSchemeChannel", "WARNING", "AndroidManifest.xml", 3, 1,
+                        "Message with\ttab, \\ and\nline break"));
+
+        assertFalse(store.contains(release));
+        assertNull(store.read(release));
+
+        store.write(release, findings);
+
+        assertTrue(store.contains(release));
+        assertEquals(findings, store.read(release));
+    }
+
+    @Test
+    public void testFingerprintsAreStored() throws IOException {
+        ResultStore store = new ResultStore(temporaryFolder.getRoot(), "1.0", "0123456789abcdef");
+        List<Finding> findings = Arrays.asList(
+                new Finding("UnauthorizedIntent", "WARNING", "src/main/java/A.java", 12, 9,
+                        "Avoid sending implicit intents if possible", "8d6c1f0e2a4b3c59"),
+                new Finding("CustomSchemeChannel", "WARNING", "AndroidManifest.xml", 3, 1,
+                        "Custom scheme"));
+
+        store.write(release, findings);
+
+        List<Finding> stored = store.read(release);
+        assertEquals(findings, stored);
+        assertEquals("8d6c1f0e2a4b3c59", stored.get(0).getFingerprint());
+        assertEquals("", stored.get(1).getFingerprint());
+    }
+
+    @Test
+    public void testReleaseWithoutFindingsIsStored() throws IOException {
+        ResultStore store = new ResultStore(temporaryFolder.getRoot(), "1.0", "0123456789abcdef");
+
+        store.write(release, Collections.<Finding>emptyList());
+
+        assertTrue(store.contains(release));
+        assertEquals(Collections.<Finding>emptyList(), store.read(release));
+    }
+
+    @Test
+    public void testOtherDetectorSetDoesNotMatch() throws IOException {
+        new ResultStore(temporaryFolder.getRoot(), "1.0", "0123456789abcdef")
+                .write(release, Collections.<Finding>emptyList());
+
+        assertFalse(new ResultStore(temporaryFolder.getRoot(), "1.0", "fedcba9876543210").contains(release));
+        assertFalse(new ResultStore(temporaryFolder.getRoot(), "1.1", "0123456789abcdef").contains(release));
+    }
+}
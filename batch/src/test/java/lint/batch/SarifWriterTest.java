@@ -0,0 +1,67 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import lint.AndroidLintSecurityRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SarifWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testFindingsAreAppendedToSingleRun() throws IOException {
+        File log = new File(temporaryFolder.getRoot(), "results.sarif");
+        AppRelease release = new AppRelease("at.bitfire.davdroid", "201");
+
+        try (SarifWriter sarif = new SarifWriter(log, new AndroidLintSecurityRegistry(), temporaryFolder.getRoot())) {
+            sarif.write(release, new Finding("WeakHashFunction", "WARNING", "src/main/java/A B.java", 12, 9,
+                    "Using \"MD5\" is insecure"));
+            sarif.write(release, new Finding("TaskAffinityNotEmpty", "WARNING", "AndroidManifest.xml", 0, 0,
+                    "Task affinity"));
+        }
+
+        String content = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+        assertTrue(content.startsWith("{\"$schema\":"));
+        assertTrue(content.contains("\"version\":\"2.1.0\""));
+        assertTrue(content.contains("{\"id\":\"WeakHashFunction\""));
+        assertTrue(content.contains("\"ruleId\":\"WeakHashFunction\""));
+        assertTrue(content.contains("\"message\":{\"text\":\"Using \\\"MD5\\\" is insecure\"}"));
+        assertTrue(content.contains("\"uri\":\"at.bitfire.davdroid/201/src/main/java/A%20B.java\",\"uriBaseId\":\"APPS\""));
+        assertTrue(content.contains("\"region\":{\"startLine\":12,\"startColumn\":9}"));
+        assertTrue(content.endsWith("\"uriBaseId\":\"APPS\"}}}]}]}]}"));
+    }
+
+    @Test
+    public void testFingerprintsArePartialFingerprints() throws IOException {
+        File log = new File(temporaryFolder.getRoot(), "results.sarif");
+        AppRelease release = new AppRelease("at.bitfire.davdroid", "201");
+
+        try (SarifWriter sarif = new SarifWriter(log, new AndroidLintSecurityRegistry(), temporaryFolder.getRoot())) {
+            sarif.write(release, new Finding("WeakHashFunction", "WARNING", "src/main/java/A.java", 12, 9,
+                    "Using \"MD5\" is insecure", "0123456789abcdef"));
+            sarif.write(release, new Finding("TaskAffinityNotEmpty", "WARNING", "AndroidManifest.xml", 0, 0,
+                    "Task affinity"));
+        }
+
+        String content = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+        String partialFingerprints = "\"partialFingerprints\":{\"lintFingerprint/v1\":\"0123456789abcdef\"}";
+        assertTrue(content.contains(partialFingerprints));
+        assertEquals(content.indexOf("\"partialFingerprints\""), content.lastIndexOf("\"partialFingerprints\""));
+    }
+}
@@ -0,0 +1,132 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.benchmark;
+
+import com.android.tools.lint.LintCliClient;
+import com.android.tools.lint.LintCliFlags;
+import com.android.tools.lint.client.api.IssueRegistry;
+import com.android.tools.lint.detector.api.Issue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import lint.AndroidLintSecurityRegistry;
+import lint.generator.AppProfile;
+import lint.generator.SyntheticAppGenerator;
+
+/**
+ * Throughput of complete lint runs over a project of the SyntheticAppGenerator, either with
+ * the issues of a single detector or with all issues of the AndroidLintSecurityRegistry.
+ *
+ * Every run includes parsing the project, so the single-detector results are best compared
+ * with each other and with the run of the complete registry. The allocation rate is reported
+ * by the gc profiler configured in build.gradle. Run with
+ * gradle :benchmark:jmh [-PjmhInclude=DetectorBenchmark]; the sources of the android classes
+ * are resolved through the SDK in ANDROID_HOME.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class DetectorBenchmark {
+
+    private static final String ALL = "ALL";
+    private static final String PACKAGE = "bench.gen";
+    private static final long SEED = 0;
+
+    @Param({ALL,
+            "BroadcastStickyPermissionDetector",
+            "CallingOrSelfPermissionCheckDetector",
+            "CustomSchemeChannelDetector",
+            "ImplicitUnprotectedIntentSendDetector",
+            "InsufficientRSAKeySizeDetector",
+            "PathPermissionProblematicUriMatchingDetector",
+            "PermissionCheckMisuseDetector",
+            "StickyBroadcastDetector",
+            "TaskAffinityDetector",
+            "UnprotectedPermissionDetector",
+            "UnrestrictedWebViewDetector",
+            "UnrevokedUriPermissionDetector",
+            "UnsafeDynamicBroadcastReceiverDetector",
+            "WeakHashFunctionDetector",
+            "WebViewClientMethodMisuseDetector",
+            "WrongPathPermissionPrecedenceDetector"})
+    public String detector;
+
+    @Param({"JAVA", "KOTLIN"})
+    public String language;
+
+    @Param({"50"})
+    public int classes;
+
+    @Param({"10"})
+    public int methodsPerClass;
+
+    @Param({"8"})
+    public int callSitesPerMethod;
+
+    @Param({"1000"})
+    public int activities;
+
+    private final IssueRegistry registry = new AndroidLintSecurityRegistry();
+    private final Set<String> issueIds = new HashSet<>();
+    private File projectDirectory;
+
+    @Setup(Level.Trial)
+    public void generateProject() throws IOException {
+        for (Issue issue : registry.getIssues()) {
+            if (ALL.equals(detector) || issue.getImplementation().getDetectorClass().getSimpleName().equals(detector))
+                issueIds.add(issue.getId());
+        }
+        if (issueIds.isEmpty())
+            throw new IllegalArgumentException("Unknown detector " + detector);
+        projectDirectory = Files.createTempDirectory("lint-benchmark").toFile();
+        AppProfile profile = new AppProfile();
+        profile.language = AppProfile.Language.valueOf(language);
+        profile.classes = classes;
+        profile.methodsPerClass = methodsPerClass;
+        profile.callSitesPerMethod = callSitesPerMethod;
+        profile.activities = activities;
+        new SyntheticAppGenerator(profile, SEED).generate(projectDirectory, PACKAGE, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteProject() throws IOException {
+        try (Stream<Path> paths = Files.walk(projectDirectory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int lint() throws IOException {
+        LintCliFlags flags = new LintCliFlags();
+        flags.setQuiet(true);
+        flags.setExactCheckedIds(issueIds);
+        return new LintCliClient(flags, "benchmark").run(registry, Collections.singletonList(projectDirectory));
+    }
+}
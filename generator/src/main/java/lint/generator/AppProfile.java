@@ -0,0 +1,72 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.generator;
+
+/**
+ * Size and composition of a generated app.
+ *
+ * The call site densities are the probabilities that a call site uses the respective API; the
+ * remaining call sites are calls the detectors do not care about. The WebViewClient density is
+ * the probability that a class comes with a WebViewClient subclass.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public final class AppProfile {
+
+    public enum Language {
+        JAVA, KOTLIN
+    }
+
+    public Language language = Language.JAVA;
+
+    // source tree
+    public int classes = 50;
+    public int methodsPerClass = 10;
+    public int callSitesPerMethod = 8;
+    public double implicitIntentDensity = 0.1;
+    public double weakHashDensity = 0.05;
+    public double rsaKeyPairDensity = 0.05;
+    public double registerReceiverDensity = 0.05;
+    public double stickyBroadcastDensity = 0.02;
+    public double permissionCheckDensity = 0.02;
+    public double uriGrantDensity = 0.02;
+    public double webViewClientDensity = 0.1;
+
+    // manifest
+    public int activities = 1000;
+    public int services = 200;
+    public int receivers = 200;
+    public int providers = 50;
+    public double intentFilterDensity = 0.5;
+    public int pathPermissionsPerProvider = 4;
+
+    // fraction of the classes that change from one release to the next
+    public double changeRate = 0.1;
+
+    /**
+     * @throws IllegalArgumentException if a size is negative or the densities are no probabilities
+     */
+    public void validate() {
+        if (classes < 0 || methodsPerClass < 0 || callSitesPerMethod < 0 || activities < 0 || services < 0
+                || receivers < 0 || providers < 0 || pathPermissionsPerProvider < 0)
+            throw new IllegalArgumentException("Sizes must not be negative");
+        double callSiteDensity = implicitIntentDensity + weakHashDensity + rsaKeyPairDensity
+                + registerReceiverDensity + stickyBroadcastDensity + permissionCheckDensity + uriGrantDensity;
+        if (!isProbability(implicitIntentDensity) || !isProbability(weakHashDensity)
+                || !isProbability(rsaKeyPairDensity) || !isProbability(registerReceiverDensity)
+                || !isProbability(stickyBroadcastDensity) || !isProbability(permissionCheckDensity)
+                || !isProbability(uriGrantDensity) || !isProbability(callSiteDensity))
+            throw new IllegalArgumentException("The call site densities must add up to at most 1");
+        if (!isProbability(webViewClientDensity) || !isProbability(intentFilterDensity) || !isProbability(changeRate))
+            throw new IllegalArgumentException("Densities and the change rate must be between 0 and 1");
+    }
+
+    private static boolean isProbability(double value) {
+        return value >= 0 && value <= 1;
+    }
+}
@@ -0,0 +1,136 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.generator;
+
+import com.android.annotations.NonNull;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Command line options of the synthetic app generator.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class GeneratorOptions {
+
+    static final String USAGE =
+            "Usage: SyntheticAppGenerator --out <dir> [options]\n" +
+            "  --out <dir>                        directory receiving <dir>/<name>/<release_number> and apps.csv\n" +
+            "  --apps <n>                         number of apps (default: 10)\n" +
+            "  --releases <n>                     number of releases per app (default: 3)\n" +
+            "  --seed <n>                         seed of the generated content (default: 0)\n" +
+            "  --language <java|kotlin>           language of the sources (default: java)\n" +
+            "  --classes <n>                      activity classes per app (default: 50)\n" +
+            "  --methods <n>                      methods per class (default: 10)\n" +
+            "  --call-sites <n>                   call sites per method (default: 8)\n" +
+            "  --implicit-intent-density <p>      share of call sites sending implicit intents (default: 0.1)\n" +
+            "  --weak-hash-density <p>            share of call sites using MD5 (default: 0.05)\n" +
+            "  --rsa-density <p>                  share of call sites creating 1024 bit RSA keys (default: 0.05)\n" +
+            "  --register-receiver-density <p>    share of call sites registering receivers (default: 0.05)\n" +
+            "  --sticky-broadcast-density <p>     share of call sites sending sticky broadcasts (default: 0.02)\n" +
+            "  --permission-check-density <p>     share of call sites checking permissions (default: 0.02)\n" +
+            "  --uri-grant-density <p>            share of call sites granting URI permissions (default: 0.02)\n" +
+            "  --webview-client-density <p>       share of classes with a WebViewClient subclass (default: 0.1)\n" +
+            "  --activities <n>                   activities in the manifest (default: 1000)\n" +
+            "  --services <n>                     services in the manifest (default: 200)\n" +
+            "  --receivers <n>                    receivers in the manifest (default: 200)\n" +
+            "  --providers <n>                    providers in the manifest (default: 50)\n" +
+            "  --path-permissions <n>             path permissions per provider (default: 4)\n" +
+            "  --intent-filter-density <p>        share of components with an intent filter (default: 0.5)\n" +
+            "  --change-rate <p>                  share of classes changed per release (default: 0.1)\n";
+
+    File outputDirectory;
+    int apps = 10;
+    int releases = 3;
+    long seed = 0;
+    final AppProfile profile = new AppProfile();
+
+    @NonNull
+    static GeneratorOptions parse(@NonNull String[] args) {
+        GeneratorOptions options = new GeneratorOptions();
+        AppProfile profile = options.profile;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String value = value(args, ++i, arg);
+            switch (arg) {
+                case "--out": options.outputDirectory = new File(value); break;
+                case "--apps": options.apps = count(value, arg); break;
+                case "--releases": options.releases = count(value, arg); break;
+                case "--seed": options.seed = number(value, arg); break;
+                case "--language": profile.language = language(value); break;
+                case "--classes": profile.classes = count(value, arg); break;
+                case "--methods": profile.methodsPerClass = count(value, arg); break;
+                case "--call-sites": profile.callSitesPerMethod = count(value, arg); break;
+                case "--implicit-intent-density": profile.implicitIntentDensity = density(value, arg); break;
+                case "--weak-hash-density": profile.weakHashDensity = density(value, arg); break;
+                case "--rsa-density": profile.rsaKeyPairDensity = density(value, arg); break;
+                case "--register-receiver-density": profile.registerReceiverDensity = density(value, arg); break;
+                case "--sticky-broadcast-density": profile.stickyBroadcastDensity = density(value, arg); break;
+                case "--permission-check-density": profile.permissionCheckDensity = density(value, arg); break;
+                case "--uri-grant-density": profile.uriGrantDensity = density(value, arg); break;
+                case "--webview-client-density": profile.webViewClientDensity = density(value, arg); break;
+                case "--activities": profile.activities = count(value, arg); break;
+                case "--services": profile.services = count(value, arg); break;
+                case "--receivers": profile.receivers = count(value, arg); break;
+                case "--providers": profile.providers = count(value, arg); break;
+                case "--path-permissions": profile.pathPermissionsPerProvider = count(value, arg); break;
+                case "--intent-filter-density": profile.intentFilterDensity = density(value, arg); break;
+                case "--change-rate": profile.changeRate = density(value, arg); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (options.outputDirectory == null)
+            throw new IllegalArgumentException("--out is required");
+        profile.validate();
+        return options;
+    }
+
+    @NonNull
+    private static String value(@NonNull String[] args, int index, @NonNull String option) {
+        if (index >= args.length)
+            throw new IllegalArgumentException("Missing value for " + option);
+        return args[index];
+    }
+
+    private static long number(@NonNull String value, @NonNull String option) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number but was " + value);
+        }
+    }
+
+    private static int count(@NonNull String value, @NonNull String option) {
+        long count = number(value, option);
+        if (count < 0 || count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(option + " expects a non-negative number but was " + value);
+        return (int) count;
+    }
+
+    private static double density(@NonNull String value, @NonNull String option) {
+        try {
+            double density = Double.parseDouble(value);
+            if (density >= 0 && density <= 1)
+                return density;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException(option + " expects a number between 0 and 1 but was " + value);
+    }
+
+    @NonNull
+    private static AppProfile.Language language(@NonNull String value) {
+        try {
+            return AppProfile.Language.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--language expects java or kotlin but was " + value);
+        }
+    }
+}
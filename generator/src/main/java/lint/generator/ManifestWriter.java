@@ -0,0 +1,135 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.generator;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+
+import java.util.Random;
+
+/**
+ * Writes the manifest of a generated app with the activities, services, receivers and
+ * providers of its profile.
+ *
+ * The first activities are the generated classes. Intent filters are added with the intent
+ * filter density and use a mix of custom and IANA registered schemes; every provider is
+ * protected by permissions and has path permissions using path, pathPrefix and pathPattern.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class ManifestWriter {
+
+    private static final String[] REGISTERED_SCHEMES = {"http", "https", "mailto", "geo", "tel"};
+    private static final String[] PATH_ATTRIBUTES = {"path", "pathPrefix", "pathPattern"};
+    private static final String[] PROTECTION_LEVELS = {"normal", "dangerous", "signature"};
+    // number of components per declared permission
+    private static final int COMPONENTS_PER_PERMISSION = 100;
+
+    private final AppProfile profile;
+    private final String packageName;
+
+    ManifestWriter(@NonNull AppProfile profile, @NonNull String packageName) {
+        this.profile = profile;
+        this.packageName = packageName;
+    }
+
+    @NonNull
+    String manifest(@NonNull Random random) {
+        int components = profile.activities + profile.services + profile.receivers + profile.providers;
+        int permissions = components / COMPONENTS_PER_PERMISSION + 1;
+        StringBuilder manifest = new StringBuilder();
+        manifest.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+                .append("<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n")
+                .append("    package=\"").append(packageName).append("\">\n");
+        for (int p = 0; p < permissions; p++) {
+            manifest.append("    <permission android:name=\"").append(permission(p)).append("\"");
+            // some permissions are declared without protection level
+            if (random.nextBoolean()) {
+                manifest.append(" android:protectionLevel=\"")
+                        .append(PROTECTION_LEVELS[random.nextInt(PROTECTION_LEVELS.length)]).append("\"");
+            }
+            manifest.append(" />\n");
+        }
+        manifest.append("    <uses-permission android:name=\"android.permission.BROADCAST_STICKY\" />\n")
+                .append("    <application android:taskAffinity=\"").append(packageName).append(".affinity\">\n");
+
+        for (int a = 0; a < profile.activities; a++) {
+            String name = a < profile.classes ? ".Class" + a : ".Activity" + a;
+            manifest.append("        <activity android:name=\"").append(name).append("\"");
+            if (random.nextDouble() < profile.intentFilterDensity) {
+                manifest.append(" android:exported=\"true\">\n");
+                intentFilter(manifest, "android.intent.action.VIEW", scheme(a, random));
+                manifest.append("        </activity>\n");
+            } else {
+                manifest.append(" />\n");
+            }
+        }
+        for (int s = 0; s < profile.services; s++)
+            component(manifest, "service", ".Service" + s, permission(random.nextInt(permissions)), random);
+        for (int r = 0; r < profile.receivers; r++)
+            component(manifest, "receiver", ".Receiver" + r, null, random);
+        for (int p = 0; p < profile.providers; p++) {
+            manifest.append("        <provider android:name=\".Provider").append(p).append("\"\n")
+                    .append("            android:authorities=\"").append(packageName).append(".provider").append(p)
+                    .append("\"\n")
+                    .append("            android:exported=\"true\"\n")
+                    .append("            android:readPermission=\"").append(permission(random.nextInt(permissions)))
+                    .append("\"\n")
+                    .append("            android:writePermission=\"").append(permission(random.nextInt(permissions)))
+                    .append("\">\n");
+            for (int pp = 0; pp < profile.pathPermissionsPerProvider; pp++) {
+                String attribute = PATH_ATTRIBUTES[random.nextInt(PATH_ATTRIBUTES.length)];
+                String path = attribute.equals("pathPattern") ? "/data" + pp + "/.*" : "/data" + pp;
+                manifest.append("            <path-permission android:").append(attribute).append("=\"").append(path)
+                        .append("\"\n")
+                        .append("                android:readPermission=\"")
+                        .append(permission(random.nextInt(permissions))).append("\" />\n");
+            }
+            manifest.append("        </provider>\n");
+        }
+        manifest.append("    </application>\n")
+                .append("</manifest>\n");
+        return manifest.toString();
+    }
+
+    private void component(@NonNull StringBuilder manifest, @NonNull String tag, @NonNull String name,
+                           @Nullable String permission, @NonNull Random random) {
+        manifest.append("        <").append(tag).append(" android:name=\"").append(name).append("\"");
+        if (permission != null)
+            manifest.append(" android:permission=\"").append(permission).append("\"");
+        if (random.nextDouble() < profile.intentFilterDensity) {
+            manifest.append(" android:exported=\"true\">\n");
+            intentFilter(manifest, packageName + ".action." + name.substring(1).toUpperCase(), null);
+            manifest.append("        </").append(tag).append(">\n");
+        } else {
+            manifest.append(" />\n");
+        }
+    }
+
+    private static void intentFilter(@NonNull StringBuilder manifest, @NonNull String action, @Nullable String scheme) {
+        manifest.append("            <intent-filter>\n")
+                .append("                <action android:name=\"").append(action).append("\" />\n")
+                .append("                <category android:name=\"android.intent.category.DEFAULT\" />\n");
+        if (scheme != null)
+            manifest.append("                <data android:scheme=\"").append(scheme).append("\" />\n");
+        manifest.append("            </intent-filter>\n");
+    }
+
+    // about half of the schemes are custom ones
+    @NonNull
+    private String scheme(int activity, @NonNull Random random) {
+        if (random.nextBoolean())
+            return REGISTERED_SCHEMES[random.nextInt(REGISTERED_SCHEMES.length)];
+        return packageName.replace(".", "") + activity;
+    }
+
+    @NonNull
+    private String permission(int index) {
+        return packageName + ".permission.P" + index;
+    }
+}
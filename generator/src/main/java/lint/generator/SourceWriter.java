@@ -0,0 +1,172 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.generator;
+
+import com.android.annotations.NonNull;
+
+import java.util.Random;
+
+/**
+ * Writes the Java or Kotlin sources of generated activities and WebViewClient subclasses.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class SourceWriter {
+
+    /**
+     * API uses a call site can contain, with their Java and Kotlin templates. The templates are
+     * formatted with the number of the call site and the package name.
+     */
+    enum CallSite {
+        IMPLICIT_INTENT(
+                "sendBroadcast(new Intent(\"%2$s.ACTION_%1$d\"));",
+                "sendBroadcast(Intent(\"%2$s.ACTION_%1$d\"))"),
+        WEAK_HASH(
+                "MessageDigest digest%1$d = MessageDigest.getInstance(\"MD5\");",
+                "val digest%1$d = MessageDigest.getInstance(\"MD5\")"),
+        RSA_KEY_PAIR(
+                "KeyPairGenerator generator%1$d = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                "        generator%1$d.initialize(1024);",
+                "val generator%1$d = KeyPairGenerator.getInstance(\"RSA\")\n" +
+                "        generator%1$d.initialize(1024)"),
+        REGISTER_RECEIVER(
+                "registerReceiver(receiver, new IntentFilter(\"%2$s.ACTION_%1$d\"));",
+                "registerReceiver(receiver, IntentFilter(\"%2$s.ACTION_%1$d\"))"),
+        STICKY_BROADCAST(
+                "sendStickyBroadcast(new Intent(\"%2$s.STICKY_%1$d\"));",
+                "sendStickyBroadcast(Intent(\"%2$s.STICKY_%1$d\"))"),
+        PERMISSION_CHECK(
+                "checkCallingOrSelfPermission(\"%2$s.PERMISSION_%1$d\");",
+                "checkCallingOrSelfPermission(\"%2$s.PERMISSION_%1$d\")"),
+        URI_GRANT(
+                "grantUriPermission(\"%2$s\", Uri.parse(\"content://%2$s/%1$d\"), " +
+                "Intent.FLAG_GRANT_READ_URI_PERMISSION);",
+                "grantUriPermission(\"%2$s\", Uri.parse(\"content://%2$s/%1$d\"), " +
+                "Intent.FLAG_GRANT_READ_URI_PERMISSION)"),
+        NEUTRAL(
+                "String.valueOf(%1$d).length();",
+                "\"%1$d\".length");
+
+        private final String javaTemplate;
+        private final String kotlinTemplate;
+
+        CallSite(@NonNull String javaTemplate, @NonNull String kotlinTemplate) {
+            this.javaTemplate = javaTemplate;
+            this.kotlinTemplate = kotlinTemplate;
+        }
+    }
+
+    private static final String ACTIVITY_IMPORTS =
+            "import android.app.Activity;\n" +
+            "import android.content.BroadcastReceiver;\n" +
+            "import android.content.Intent;\n" +
+            "import android.content.IntentFilter;\n" +
+            "import android.net.Uri;\n" +
+            "import java.security.KeyPairGenerator;\n" +
+            "import java.security.MessageDigest;\n";
+
+    private static final String WEB_VIEW_IMPORTS =
+            "import android.net.http.SslError;\n" +
+            "import android.webkit.SslErrorHandler;\n" +
+            "import android.webkit.WebView;\n" +
+            "import android.webkit.WebViewClient;\n";
+
+    private final AppProfile profile;
+    private final String packageName;
+
+    SourceWriter(@NonNull AppProfile profile, @NonNull String packageName) {
+        this.profile = profile;
+        this.packageName = packageName;
+    }
+
+    @NonNull
+    String extension() {
+        return profile.language == AppProfile.Language.JAVA ? ".java" : ".kt";
+    }
+
+    /**
+     * Returns the source of the activity Class&lt;index&gt; with call sites drawn from the given
+     * random generator.
+     */
+    @NonNull
+    String activity(int index, @NonNull Random random) {
+        boolean java = profile.language == AppProfile.Language.JAVA;
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName).append(java ? ";\n\n" : "\n\n")
+                .append(java ? ACTIVITY_IMPORTS : ACTIVITY_IMPORTS.replace(";", "")).append('\n');
+        if (java) {
+            source.append("public class Class").append(index).append(" extends Activity {\n")
+                    .append("    private BroadcastReceiver receiver;\n");
+        } else {
+            source.append("open class Class").append(index).append(" : Activity() {\n")
+                    .append("    private var receiver: BroadcastReceiver? = null\n");
+        }
+        int callSite = 0;
+        for (int m = 0; m < profile.methodsPerClass; m++) {
+            source.append(java ? "\n    public void method" + m + "() throws Exception {\n"
+                    : "\n    fun method" + m + "() {\n");
+            for (int s = 0; s < profile.callSitesPerMethod; s++, callSite++) {
+                CallSite kind = callSite(random.nextDouble());
+                source.append("        ")
+                        .append(String.format(java ? kind.javaTemplate : kind.kotlinTemplate, callSite, packageName))
+                        .append('\n');
+            }
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Returns the source of the WebViewClient subclass Client&lt;index&gt;, which proceeds on SSL
+     * errors and allows all URLs to be loaded.
+     */
+    @NonNull
+    String webViewClient(int index) {
+        if (profile.language == AppProfile.Language.JAVA) {
+            return "package " + packageName + ";\n\n" +
+                    WEB_VIEW_IMPORTS + "\n" +
+                    "public class Client" + index + " extends WebViewClient {\n" +
+                    "    @Override\n" +
+                    "    public void onReceivedSslError(WebView view, SslErrorHandler handler, SslError error) {\n" +
+                    "        handler.proceed();\n" +
+                    "    }\n\n" +
+                    "    @Override\n" +
+                    "    public boolean shouldOverrideUrlLoading(WebView view, String url) {\n" +
+                    "        return false;\n" +
+                    "    }\n" +
+                    "}\n";
+        }
+        return "package " + packageName + "\n\n" +
+                WEB_VIEW_IMPORTS.replace(";", "") + "\n" +
+                "class Client" + index + " : WebViewClient() {\n" +
+                "    override fun onReceivedSslError(view: WebView, handler: SslErrorHandler, error: SslError) {\n" +
+                "        handler.proceed()\n" +
+                "    }\n\n" +
+                "    override fun shouldOverrideUrlLoading(view: WebView, url: String): Boolean {\n" +
+                "        return false\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    // maps a uniformly distributed number onto the call site kinds according to their densities
+    @NonNull
+    private CallSite callSite(double sample) {
+        double[] densities = {
+                profile.implicitIntentDensity, profile.weakHashDensity, profile.rsaKeyPairDensity,
+                profile.registerReceiverDensity, profile.stickyBroadcastDensity,
+                profile.permissionCheckDensity, profile.uriGrantDensity};
+        double bound = 0;
+        for (int i = 0; i < densities.length; i++) {
+            bound += densities[i];
+            if (sample < bound)
+                return CallSite.values()[i];
+        }
+        return CallSite.NEUTRAL;
+    }
+}
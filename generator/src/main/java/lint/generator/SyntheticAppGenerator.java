@@ -0,0 +1,142 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.generator;
+
+import com.android.annotations.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic Android projects for scale tests.
+ *
+ * All content is derived from the seed, the package name of the app and the release, so the
+ * same arguments always result in the same files. The projects use the Eclipse layout lint
+ * recognizes without a build system (AndroidManifest.xml and src/ in the project directory).
+ *
+ * A corpus consists of several apps with several releases each, laid out as expected by the
+ * batch analyzer (&lt;out&gt;/&lt;name&gt;/&lt;release_number&gt;) and listed in &lt;out&gt;/apps.csv.
+ * From one release to the next the profile's change rate of the classes is rewritten, so the
+ * corpus also exercises the incremental mode of the batch analyzer.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public final class SyntheticAppGenerator {
+
+    public static final String CORPUS_CSV = "apps.csv";
+    private static final String APP_NAME_PREFIX = "synthetic.app";
+
+    // stream ids used to derive independent random generators from the seed
+    private static final long MANIFEST = -1;
+    private static final long WEB_VIEW_CLIENT = -2;
+    private static final long CHANGE = -3;
+
+    private final AppProfile profile;
+    private final long seed;
+
+    public SyntheticAppGenerator(@NonNull AppProfile profile, long seed) {
+        profile.validate();
+        this.profile = profile;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        GeneratorOptions options;
+        try {
+            options = GeneratorOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(GeneratorOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        File csv = new SyntheticAppGenerator(options.profile, options.seed)
+                .generateCorpus(options.outputDirectory, options.apps, options.releases);
+        System.out.println("Generated " + options.apps * options.releases + " releases, listed in " + csv);
+    }
+
+    /**
+     * Writes all releases of the given number of apps and the CSV listing them.
+     *
+     * @return the CSV with the columns name,release_number
+     */
+    @NonNull
+    public File generateCorpus(@NonNull File outputDirectory, int apps, int releases) throws IOException {
+        mkdirs(outputDirectory);
+        File csv = new File(outputDirectory, CORPUS_CSV);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("name,release_number");
+            writer.newLine();
+            for (int app = 0; app < apps; app++) {
+                String name = APP_NAME_PREFIX + app;
+                for (int release = 1; release <= releases; release++) {
+                    generate(new File(outputDirectory, name + File.separator + release), name, release);
+                    writer.write(name + "," + release);
+                    writer.newLine();
+                }
+            }
+        }
+        return csv;
+    }
+
+    /**
+     * Writes the given release of the app with the given package name into a project directory.
+     *
+     * @param release the release number, starting at 1
+     */
+    public void generate(@NonNull File projectDirectory, @NonNull String packageName, int release)
+            throws IOException {
+        long app = packageName.hashCode();
+        File sourceDirectory = new File(projectDirectory, "src" + File.separator
+                + packageName.replace('.', File.separatorChar));
+        mkdirs(sourceDirectory);
+        write(new File(projectDirectory, "AndroidManifest.xml"),
+                new ManifestWriter(profile, packageName).manifest(random(app, MANIFEST, 0)));
+
+        SourceWriter sources = new SourceWriter(profile, packageName);
+        for (int c = 0; c < profile.classes; c++) {
+            write(new File(sourceDirectory, "Class" + c + sources.extension()),
+                    sources.activity(c, random(app, c, version(app, c, release))));
+            if (random(app, WEB_VIEW_CLIENT, c).nextDouble() < profile.webViewClientDensity)
+                write(new File(sourceDirectory, "Client" + c + sources.extension()), sources.webViewClient(c));
+        }
+    }
+
+    // number of releases up to the given one in which the class was rewritten
+    private int version(long app, int index, int release) {
+        int version = 0;
+        for (int r = 2; r <= release; r++) {
+            if (random(app, CHANGE, ((long) index << 32) | r).nextDouble() < profile.changeRate)
+                version++;
+        }
+        return version;
+    }
+
+    @NonNull
+    private Random random(long app, long stream, long value) {
+        long hash = seed;
+        for (long part : new long[]{app, stream, value}) {
+            hash = (hash ^ part) * 0xBF58476D1CE4E5B9L;
+            hash ^= hash >>> 31;
+        }
+        return new Random(hash);
+    }
+
+    private static void mkdirs(@NonNull File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+    }
+
+    private static void write(@NonNull File file, @NonNull String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,111 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint.generator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticAppGeneratorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSameSeedGeneratesSameProject() throws IOException {
+        AppProfile profile = new AppProfile();
+        File first = temporaryFolder.newFolder("first");
+        File second = temporaryFolder.newFolder("second");
+
+        new SyntheticAppGenerator(profile, 42).generate(first, "synthetic.app", 1);
+        new SyntheticAppGenerator(profile, 42).generate(second, "synthetic.app", 1);
+
+        assertSameContent(first, second, "AndroidManifest.xml");
+        assertSameContent(first, second, "src/synthetic/app/Class0.java");
+        assertSameContent(first, second, "src/synthetic/app/Class49.java");
+    }
+
+    @Test
+    public void testOnlyChangedClassesDifferBetweenReleases() throws IOException {
+        AppProfile profile = new AppProfile();
+        profile.changeRate = 0;
+        File first = temporaryFolder.newFolder("first");
+        File second = temporaryFolder.newFolder("second");
+
+        new SyntheticAppGenerator(profile, 7).generate(first, "synthetic.app", 1);
+        new SyntheticAppGenerator(profile, 7).generate(second, "synthetic.app", 2);
+        assertSameContent(first, second, "src/synthetic/app/Class3.java");
+
+        profile.changeRate = 1;
+        new SyntheticAppGenerator(profile, 7).generate(second, "synthetic.app", 2);
+        assertFalse(Arrays.equals(read(first, "src/synthetic/app/Class3.java"),
+                read(second, "src/synthetic/app/Class3.java")));
+    }
+
+    @Test
+    public void testDensitiesSelectCallSites() throws IOException {
+        AppProfile profile = new AppProfile();
+        profile.language = AppProfile.Language.KOTLIN;
+        profile.classes = 1;
+        profile.implicitIntentDensity = 0;
+        profile.weakHashDensity = 0;
+        profile.rsaKeyPairDensity = 1;
+        profile.registerReceiverDensity = 0;
+        profile.stickyBroadcastDensity = 0;
+        profile.permissionCheckDensity = 0;
+        profile.uriGrantDensity = 0;
+        File project = temporaryFolder.newFolder("project");
+
+        new SyntheticAppGenerator(profile, 0).generate(project, "synthetic.app", 1);
+
+        String source = new String(read(project, "src/synthetic/app/Class0.kt"), StandardCharsets.UTF_8);
+        assertTrue(source.contains("KeyPairGenerator.getInstance(\"RSA\")"));
+        assertFalse(source.contains("sendBroadcast"));
+    }
+
+    @Test
+    public void testCorpusIsListedInCsv() throws IOException {
+        AppProfile profile = new AppProfile();
+        profile.classes = 2;
+        profile.activities = 10;
+        File corpus = temporaryFolder.getRoot();
+
+        File csv = new SyntheticAppGenerator(profile, 0).generateCorpus(corpus, 2, 2);
+
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("name,release_number", "synthetic.app0,1", "synthetic.app0,2",
+                "synthetic.app1,1", "synthetic.app1,2"), lines);
+        assertTrue(new File(corpus, "synthetic.app1/2/AndroidManifest.xml").isFile());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDensitiesAboveOneAreRejected() {
+        AppProfile profile = new AppProfile();
+        profile.implicitIntentDensity = 0.6;
+        profile.weakHashDensity = 0.6;
+        new SyntheticAppGenerator(profile, 0);
+    }
+
+    private static void assertSameContent(File first, File second, String path) throws IOException {
+        assertArrayEquals(read(first, path), read(second, path));
+    }
+
+    private static byte[] read(File directory, String path) throws IOException {
+        return Files.readAllBytes(new File(directory, path).toPath());
+    }
+}
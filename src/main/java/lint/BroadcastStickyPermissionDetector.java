@@ -7,6 +7,7 @@ package lint;
 
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -16,17 +17,7 @@ import com.android.tools.lint.detector.api.XmlContext;
 
 import org.jetbrains.annotations.NotNull;
 import org.w3c.dom.Attr;
-import org.w3c.dom.Element;
-
-import java.util.Collection;
-import java.util.Collections;
-
-import javax.annotation.Nullable;
-
-import static com.android.SdkConstants.ATTR_NAME;
-import static com.android.SdkConstants.NS_RESOURCES;
-import static com.android.SdkConstants.TAG_USES_PERMISSION;
-
+import org.w3c.dom.Document;
 
 /**
  * Checks if the "android.permission.BROADCAST_STICKY" is used.
@@ -65,26 +56,19 @@ public class BroadcastStickyPermissionDetector extends Detector implements Detec
     private static final String BROADCAST_STICKY = "android.permission.BROADCAST_STICKY";
 
     @Override
-    public Collection<String> getApplicableElements() {
-        return Collections.singleton(TAG_USES_PERMISSION);
-    }
-
-    @Override
-    public void visitElement(@NotNull XmlContext context, @NotNull Element usesPermissionElement) {
-        Attr permissionAttr = findPermissionNameAttr(usesPermissionElement);
-        if (permissionAttr != null && permissionAttr.getValue() != null
-                && permissionAttr.getValue().equals(BROADCAST_STICKY)) {
-            context.report(ISSUE, usesPermissionElement, context.getLocation(permissionAttr), REPORT_MESSAGE);
+    public void visitDocument(@NotNull XmlContext context, @NotNull Document document) {
+        ManifestModel manifest = ManifestModel.get(document);
+        for (int i = 0; i < manifest.getUsesPermissionCount(); i++) {
+            Attr permissionAttr = manifest.getUsesPermissionName(i);
+            if (permissionAttr != null && permissionAttr.getValue() != null
+                    && permissionAttr.getValue().equals(BROADCAST_STICKY)) {
+                context.report(ISSUE, manifest.getUsesPermission(i), Fingerprint.attach(ISSUE, permissionAttr, context.getLocation(permissionAttr)), REPORT_MESSAGE);
+            }
         }
     }
 
-    @Nullable
-    private Attr findPermissionNameAttr(@NotNull Element usesPermissionElement) {
-        Attr nameAttribute = usesPermissionElement.getAttributeNodeNS(NS_RESOURCES, ATTR_NAME);
-        if (nameAttribute != null) {
-            return nameAttribute;
-        }
-        return null;
+    @Override
+    public void afterCheckProject(@NotNull Context context) {
+        ManifestModel.release();
     }
-
 }
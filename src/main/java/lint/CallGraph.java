@@ -0,0 +1,274 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.detector.api.Context;
+import com.android.tools.lint.detector.api.JavaContext;
+import com.android.tools.lint.detector.api.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+
+import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UExpression;
+import org.jetbrains.uast.UMethod;
+import org.jetbrains.uast.UParenthesizedExpression;
+import org.jetbrains.uast.UQualifiedReferenceExpression;
+import org.jetbrains.uast.USimpleNameReferenceExpression;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Project-wide call graph of the analyzed sources, shared by all detectors.
+ *
+ * Building the graph costs a resolve per call, so detectors only build it once they know they
+ * need callers or callees: they request a second pass over the Java files in afterCheckProject,
+ * index every file in afterCheckFile of that pass, while its UAST is still available, and query
+ * and release the graph in afterCheckProject of that pass. The calls of a file are taken
+ * from its FileCallIndex, so indexing does not walk the UAST again. Methods, including library
+ * methods called from the sources, are interned to int ids by their signature. Every call
+ * site is an int id as well, with its caller, its callee and a descriptor per argument
+ * telling whether the argument is a parameter of the caller or the result of another call.
+ * The callers of every method are compacted into CSR arrays (an offset array per method into
+ * one array of call sites) on the first query after new files were indexed. Like ProjectState,
+ * the graph belongs to the main project, so it includes the sources of its library modules.
+ * Detectors which also check single files on the fly, e.g. ImplicitUnprotectedIntentSendDetector,
+ * cannot wait for a second pass and use the FileCallIndex of the current file instead.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class CallGraph {
+
+    // argument descriptors: ids of called methods are >= 0, parameters are encoded below -1
+    static final int OTHER_ARGUMENT = -1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final Map<Project, CallGraph> GRAPHS =
+            Collections.synchronizedMap(new WeakHashMap<Project, CallGraph>());
+
+    private final Map<String, Integer> methodIds = new HashMap<>();
+    private final Set<File> indexedFiles = new HashSet<>();
+
+    // call sites in the order they were found
+    private int[] callers = new int[INITIAL_CAPACITY];
+    private int[] callees = new int[INITIAL_CAPACITY];
+    private int[] argumentOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] arguments = new int[INITIAL_CAPACITY];
+    private int callSiteCount;
+
+    // CSR adjacency of the incoming call sites, valid while compiled is set
+    private int[] incomingOffsets;
+    private int[] incomingSites;
+    private boolean compiled;
+
+    @NonNull
+    static CallGraph get(@NonNull Context context) {
+        return GRAPHS.computeIfAbsent(context.getMainProject(), project -> new CallGraph());
+    }
+
+    static int parameter(int index) {
+        return -2 - index;
+    }
+
+    static boolean isParameter(int argument) {
+        return argument < OTHER_ARGUMENT;
+    }
+
+    static int parameterIndex(int argument) {
+        return -2 - argument;
+    }
+
+    /**
+     * Drops the graph of the main project of the given context.
+     */
+    static void release(@NonNull Context context) {
+        GRAPHS.remove(context.getMainProject());
+    }
+
+    /**
+     * Adds the methods and call sites of the file of the given context. Files which were
+     * already indexed, e.g. by another detector, are skipped. Calls in methods without
+     * signature, e.g. in anonymous classes, belong to the closest enclosing method with a
+     * signature, but their arguments are never parameters of that method. Calls outside of
+     * methods are not indexed.
+     */
+    synchronized void index(@NonNull JavaContext context) {
+        if (context.getUastFile() == null || !indexedFiles.add(context.file))
+            return;
+        FileCallIndex calls = UastHelper.getCallIndex(context);
+        int[] callerIds = new int[calls.getMethodCount()];
+        boolean[] hasSignature = new boolean[callerIds.length];
+        for (int method = 0; method < callerIds.length; method++) {
+            String signature = signature(calls.getMethod(method));
+            int parent = calls.getParentMethod(method);
+            hasSignature[method] = signature != null;
+            callerIds[method] = signature != null ? intern(signature) : parent >= 0 ? callerIds[parent] : -1;
+        }
+        for (int i = 0; i < calls.getCallCount(); i++) {
+            int method = calls.getMethodOfCall(i);
+            if (method < 0 || callerIds[method] < 0)
+                continue;
+            UCallExpression call = calls.getCall(i);
+            PsiMethod callee = UastHelper.resolve(context, call);
+            String signature = callee != null ? signature(callee) : null;
+            if (signature == null)
+                continue;
+            // parameters of anonymous classes do not belong to the caller
+            UMethod caller = hasSignature[method] ? calls.getMethod(method) : null;
+            List<UExpression> valueArguments = call.getValueArguments();
+            int[] descriptors = new int[valueArguments.size()];
+            for (int j = 0; j < descriptors.length; j++)
+                descriptors[j] = describe(context, valueArguments.get(j), call, caller, true);
+            addCallSite(callerIds[method], intern(signature), descriptors);
+        }
+        compiled = false;
+    }
+
+    /**
+     * Returns the id of the method with the given signature, see signature(PsiMethod), or -1 if
+     * it is neither declared nor called in the indexed files.
+     */
+    synchronized int methodId(@NonNull String signature) {
+        Integer id = methodIds.get(signature);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the call sites calling the given method.
+     */
+    @NonNull
+    synchronized int[] callSitesTo(int method) {
+        compile();
+        return Arrays.copyOfRange(incomingSites, incomingOffsets[method], incomingOffsets[method + 1]);
+    }
+
+    synchronized int getCaller(int callSite) {
+        return callers[callSite];
+    }
+
+    synchronized int getArgumentCount(int callSite) {
+        return argumentOffsets[callSite + 1] - argumentOffsets[callSite];
+    }
+
+    /**
+     * Returns the descriptor of the given argument of the call site: the id of the method
+     * whose result is passed, a parameter of the caller (see isParameter and parameterIndex)
+     * or OTHER_ARGUMENT.
+     */
+    synchronized int getArgument(int callSite, int index) {
+        if (index >= getArgumentCount(callSite))
+            return OTHER_ARGUMENT;
+        return arguments[argumentOffsets[callSite] + index];
+    }
+
+    private int intern(@NonNull String signature) {
+        Integer id = methodIds.get(signature);
+        if (id == null) {
+            id = methodIds.size();
+            methodIds.put(signature, id);
+        }
+        return id;
+    }
+
+    private void addCallSite(int caller, int callee, @NonNull int[] descriptors) {
+        if (callSiteCount == callers.length) {
+            callers = Arrays.copyOf(callers, callSiteCount * 2);
+            callees = Arrays.copyOf(callees, callSiteCount * 2);
+            argumentOffsets = Arrays.copyOf(argumentOffsets, callSiteCount * 2 + 1);
+        }
+        int offset = argumentOffsets[callSiteCount];
+        if (offset + descriptors.length > arguments.length)
+            arguments = Arrays.copyOf(arguments, Math.max(arguments.length * 2, offset + descriptors.length));
+        System.arraycopy(descriptors, 0, arguments, offset, descriptors.length);
+        callers[callSiteCount] = caller;
+        callees[callSiteCount] = callee;
+        argumentOffsets[++callSiteCount] = offset + descriptors.length;
+    }
+
+    // builds the CSR adjacency of the callers of every method from the call sites indexed so far
+    private void compile() {
+        if (compiled)
+            return;
+        int methods = methodIds.size();
+        incomingOffsets = offsets(callees, methods);
+        incomingSites = sites(callees, incomingOffsets);
+        compiled = true;
+    }
+
+    @NonNull
+    private int[] offsets(@NonNull int[] methodOfSite, int methods) {
+        int[] offsets = new int[methods + 1];
+        for (int site = 0; site < callSiteCount; site++)
+            offsets[methodOfSite[site] + 1]++;
+        for (int method = 0; method < methods; method++)
+            offsets[method + 1] += offsets[method];
+        return offsets;
+    }
+
+    @NonNull
+    private int[] sites(@NonNull int[] methodOfSite, @NonNull int[] offsets) {
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        int[] sites = new int[callSiteCount];
+        for (int site = 0; site < callSiteCount; site++)
+            sites[next[methodOfSite[site]]++] = site;
+        return sites;
+    }
+
+    /**
+     * Returns the class, name and canonical parameter types of the given method, or null for
+     * methods of anonymous and local classes, which have no stable signature.
+     */
+    @Nullable
+    static String signature(@NonNull PsiMethod method) {
+        PsiClass containingClass = method.getContainingClass();
+        String className = containingClass != null ? containingClass.getQualifiedName() : null;
+        if (className == null)
+            return null;
+        StringBuilder signature = new StringBuilder(className).append('#').append(method.getName()).append('(');
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0)
+                signature.append(',');
+            signature.append(parameters[i].getType().getCanonicalText());
+        }
+        return signature.append(')').toString();
+    }
+
+    private int describe(@NonNull JavaContext context, @Nullable UExpression argument,
+                         @NonNull UCallExpression call, @Nullable UMethod caller, boolean followAssignment) {
+        while (argument instanceof UParenthesizedExpression)
+            argument = ((UParenthesizedExpression) argument).getExpression();
+        if (argument instanceof UQualifiedReferenceExpression)
+            argument = ((UQualifiedReferenceExpression) argument).getSelector();
+        if (argument instanceof UCallExpression) {
+            PsiMethod method = UastHelper.resolve(context, (UCallExpression) argument);
+            String signature = method != null ? signature(method) : null;
+            return signature != null ? intern(signature) : OTHER_ARGUMENT;
+        }
+        if (argument instanceof USimpleNameReferenceExpression) {
+            int index = caller != null ? UastHelper.parameterIndex(caller, argument) : -1;
+            if (index >= 0)
+                return parameter(index);
+            // local variables are described by the value they were assigned last
+            if (followAssignment)
+                return describe(context, UastHelper.getLastAssignedExpression(argument, call), call, caller, false);
+        }
+        return OTHER_ARGUMENT;
+    }
+}
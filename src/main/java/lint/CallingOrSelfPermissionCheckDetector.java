@@ -7,8 +7,8 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -22,6 +22,8 @@ import org.jetbrains.uast.UCallExpression;
 import java.util.Arrays;
 import java.util.List;
 
+import static lint.UastHelper.isMemberInSubClassOf;
+
 /**
  * Checks for checkSelfOrCallingPermission and enforceSelfOrCallingPermission.
  * These methods should be avoided as they could erroneously provide caller apps the permission of the callee.
@@ -55,13 +57,17 @@ public class CallingOrSelfPermissionCheckDetector extends Detector implements De
     @Override
     public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call,
                             @NonNull PsiMethod method) {
-        JavaEvaluator evaluator = context.getEvaluator();
-        if(!evaluator.isMemberInSubClassOf(method, CONTEXT_CLASS, false) && !evaluator.isMemberInSubClassOf(method, PERMISSION_CHECKER_CLASS, false))
+        if(!isMemberInSubClassOf(context, method, CONTEXT_CLASS) && !isMemberInSubClassOf(context, method, PERMISSION_CHECKER_CLASS))
             return;
 
-        context.report(ISSUE, call, context.getLocation(call), call.getMethodName()+MESSAGE);
+        context.report(ISSUE, call, Fingerprint.attach(context, ISSUE, call, context.getLocation(call)), call.getMethodName()+MESSAGE);
+
 
+    }
 
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
     }
 
     @Override
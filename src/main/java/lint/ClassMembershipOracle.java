@@ -0,0 +1,105 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.detector.api.JavaContext;
+import com.android.tools.lint.detector.api.Project;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Project-wide cache of class membership checks, e.g. "is the containing class of this
+ * method a subclass of android.content.Context?".
+ *
+ * The detectors check the same few framework classes at tens of thousands of call sites, while
+ * the number of distinct containing classes is small. Class names are therefore interned to
+ * int ids and every answered (class, target class) pair is kept in an open addressing table
+ * of long keys, so each pair is computed at most once per project.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class ClassMembershipOracle {
+
+    // relation of a class to a target class, stored in the upper bits of each key
+    static final int SUBCLASS = 0;
+    static final int TYPE_OR_DIRECT_SUPER_TYPE = 1;
+
+    private static final byte EMPTY = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final Map<Project, ClassMembershipOracle> ORACLES =
+            Collections.synchronizedMap(new WeakHashMap<Project, ClassMembershipOracle>());
+
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    @NonNull
+    static ClassMembershipOracle get(@NonNull JavaContext context) {
+        return ORACLES.computeIfAbsent(context.getProject(), project -> new ClassMembershipOracle());
+    }
+
+    /**
+     * Returns the cached answer for the relation between the given classes, or computes and
+     * caches it if the pair was not asked before.
+     */
+    synchronized boolean isRelated(int relation, @NonNull String className, @NonNull String targetClassName,
+                                   @NonNull BooleanSupplier computation) {
+        long key = ((long) relation << 62) | ((long) intern(className) << 31) | intern(targetClassName);
+        int slot = slot(key);
+        if (states[slot] != EMPTY)
+            return states[slot] == TRUE;
+        boolean related = computation.getAsBoolean();
+        // the computation may not modify the table, so the slot is still valid
+        keys[slot] = key;
+        states[slot] = related ? TRUE : FALSE;
+        if (++size * 2 > keys.length)
+            grow();
+        return related;
+    }
+
+    private int intern(@NonNull String className) {
+        Integer id = classIds.get(className);
+        if (id == null) {
+            id = classIds.size();
+            classIds.put(className, id);
+        }
+        return id;
+    }
+
+    // returns the slot of the given key or the empty slot where it has to be inserted
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 29) ^ (key >>> 47)) * 0x9E3779B9 & mask;
+        while (states[slot] != EMPTY && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        byte[] oldStates = states;
+        keys = new long[oldKeys.length * 2];
+        states = new byte[oldStates.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                states[slot] = oldStates[i];
+            }
+        }
+    }
+}
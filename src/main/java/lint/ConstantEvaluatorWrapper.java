@@ -6,7 +6,6 @@
 package lint;
 
 import com.android.annotations.Nullable;
-import com.android.tools.lint.detector.api.ConstantEvaluator;
 import com.android.tools.lint.detector.api.JavaContext;
 
 import org.jetbrains.annotations.NotNull;
@@ -23,17 +22,19 @@ import org.jetbrains.uast.UExpression;
  */
 class ConstantEvaluatorWrapper {
 
+    // The constants are evaluated by a single ConstantEvaluator per file and cached in the
+    // FileCache, so detectors using these methods have to call UastHelper.releaseFileCache in
+    // afterCheckProject.
     @Nullable
     static Long resolveAsLong(@Nullable UExpression expression, @NotNull JavaContext context) {
-        ConstantEvaluator evaluator = new ConstantEvaluator();
-        evaluator.allowFieldInitializers();
-
-        Object value = expression.evaluate();
+        if (expression == null)
+            return null;
+        Object value = FileCache.get(context).evaluate(expression);
         if (value instanceof Long) {
             return (Long) value;
         }
         if (value instanceof Integer) {
-            return new Long((Integer) value);
+            return Long.valueOf((Integer) value);
         }
 
         return null;
@@ -41,9 +42,9 @@ class ConstantEvaluatorWrapper {
 
     @Nullable
     static String resolveAsString(@Nullable UExpression expression, @NotNull JavaContext context) {
-        ConstantEvaluator evaluator = new ConstantEvaluator();
-        evaluator.allowFieldInitializers();
-        Object value = evaluator.evaluate(expression);
+        if (expression == null)
+            return null;
+        Object value = FileCache.get(context).evaluate(expression);
         return value instanceof String ? (String)value : null;
     }
 
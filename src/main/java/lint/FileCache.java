@@ -0,0 +1,152 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.detector.api.ConstantEvaluator;
+import com.android.tools.lint.detector.api.JavaContext;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+
+import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UExpression;
+import org.jetbrains.uast.UReferenceExpression;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Caches shared by all detectors while a single source file is analyzed.
+ *
+ * Lint analyzes a source file on one thread and passes the same JavaContext to every
+ * detector, so the cache of a file is kept per thread and owned by the context of the file.
+ * The cache is released by get itself, which replaces it as soon as a detector asks for the
+ * cache of another file, so it is built once per file however many detectors use it. Detectors
+ * must not release it in afterCheckFile, since the detectors after them still use it; they
+ * drop the cache of the last file in afterCheckProject instead.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class FileCache {
+
+    private static final ThreadLocal<FileCache> CURRENT = new ThreadLocal<>();
+    // marks calls that could not be resolved
+    private static final Object UNRESOLVED = new Object();
+    // marks expressions without constant value
+    private static final Object NO_VALUE = new Object();
+
+    private final JavaContext owner;
+    private final Map<Object, Object> resolvedCalls = new HashMap<>();
+    // kept apart from the calls, a qualified call and its selector share their PSI element
+    private final Map<Object, Object> resolvedReferences = new HashMap<>();
+    // values of constant expressions and final field initializers, see evaluate
+    private final Map<Object, Object> constants = new HashMap<>();
+    private ConstantEvaluator evaluator;
+    private FileCallIndex callIndex;
+    // start offsets of the nodes of a scope by node class and token hash, see Fingerprint
+    private final Map<PsiElement, Map<Class<?>, Map<Long, List<Integer>>>> occurrences = new HashMap<>();
+
+    private FileCache(@NonNull JavaContext owner) {
+        this.owner = owner;
+    }
+
+    @NonNull
+    static FileCache get(@NonNull JavaContext context) {
+        FileCache cache = CURRENT.get();
+        if (cache == null || cache.owner != context) {
+            cache = new FileCache(context);
+            CURRENT.set(cache);
+        }
+        return cache;
+    }
+
+    static void release() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the calls of the file, collected in a single traversal on first use.
+     */
+    @NonNull
+    FileCallIndex getCallIndex() {
+        if (callIndex == null)
+            callIndex = new FileCallIndex(owner.getUastFile());
+        return callIndex;
+    }
+
+    /**
+     * Returns the occurrences of the nodes of the given class in the given scope, building them
+     * with the given index on first use, so every scope is indexed once per node class.
+     */
+    @NonNull
+    Map<Long, List<Integer>> getOccurrences(@NonNull PsiElement scope, @NonNull Class<?> type,
+                                            @NonNull Supplier<Map<Long, List<Integer>>> index) {
+        return occurrences.computeIfAbsent(scope, key -> new HashMap<>()).computeIfAbsent(type, key -> index.get());
+    }
+
+    @Nullable
+    PsiMethod resolve(@NonNull UCallExpression call) {
+        // the PSI element is shared by all UAST elements created for the same call
+        PsiElement psi = call.getPsi();
+        Object key = psi != null ? psi : call;
+        Object method = resolvedCalls.get(key);
+        if (method != null)
+            return method == UNRESOLVED ? null : (PsiMethod) method;
+        PsiMethod resolved = call.resolve();
+        resolvedCalls.put(key, resolved != null ? resolved : UNRESOLVED);
+        return resolved;
+    }
+
+    @Nullable
+    PsiElement resolve(@NonNull UReferenceExpression reference) {
+        PsiElement psi = reference.getPsi();
+        Object key = psi != null ? psi : reference;
+        Object element = resolvedReferences.get(key);
+        if (element != null)
+            return element == UNRESOLVED ? null : (PsiElement) element;
+        PsiElement resolved = reference.resolve();
+        resolvedReferences.put(key, resolved != null ? resolved : UNRESOLVED);
+        return resolved;
+    }
+
+    /**
+     * Evaluates the given expression to a constant, following the initializers of final fields.
+     * Values are cached per expression and, for references to fields, per field, so every
+     * constant of the file is evaluated once no matter how often it is referenced. Non-final
+     * fields have no constant value, since any file may assign them.
+     */
+    @Nullable
+    Object evaluate(@NonNull UExpression expression) {
+        PsiElement resolved = expression instanceof UReferenceExpression ? resolve((UReferenceExpression) expression) : null;
+        Object key;
+        if (resolved instanceof PsiField) {
+            if (!((PsiField) resolved).hasModifierProperty(PsiModifier.FINAL))
+                return null;
+            key = resolved;
+        } else {
+            PsiElement psi = expression.getPsi();
+            key = psi != null ? psi : expression;
+        }
+        Object value = constants.get(key);
+        if (value != null)
+            return value == NO_VALUE ? null : value;
+        // without allowFieldInitializers only the initializers of final fields are followed
+        if (evaluator == null)
+            evaluator = new ConstantEvaluator();
+        value = evaluator.evaluate(expression);
+        if (value == null)
+            value = expression.evaluate();
+        constants.put(key, value != null ? value : NO_VALUE);
+        return value;
+    }
+}
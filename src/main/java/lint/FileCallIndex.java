@@ -0,0 +1,152 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.intellij.psi.PsiElement;
+
+import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UFile;
+import org.jetbrains.uast.UMethod;
+import org.jetbrains.uast.visitor.AbstractUastVisitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All calls and methods of a single source file, collected in one traversal of its UAST.
+ *
+ * Lint dispatches the calls with applicable method names to the detectors in its own single
+ * traversal, but some analyses need every call of a file or of a method, e.g. to index the
+ * file in the CallGraph or to follow an intent variable through its method. They share this
+ * index through the FileCache instead of walking the UAST again. Calls are kept in pre-order,
+ * so the calls of a method, including those of its lambdas and local classes, are the range
+ * between its first and its last call, and a method-name table maps every called name to its
+ * calls.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class FileCallIndex {
+
+    private final List<UCallExpression> calls = new ArrayList<>();
+    // innermost method of each call, or -1 for calls outside of methods
+    private int[] callMethods = new int[64];
+    private final List<UMethod> methods = new ArrayList<>();
+    // enclosing method of each method, or -1
+    private final List<Integer> parentMethods = new ArrayList<>();
+    private final List<Integer> firstCalls = new ArrayList<>();
+    private final List<Integer> endCalls = new ArrayList<>();
+    private final Map<Object, Integer> methodIndices = new HashMap<>();
+    private final Map<String, List<Integer>> callsByName = new HashMap<>();
+
+    FileCallIndex(@Nullable UFile file) {
+        if (file != null)
+            file.accept(new IndexVisitor());
+    }
+
+    int getCallCount() {
+        return calls.size();
+    }
+
+    @NonNull
+    UCallExpression getCall(int index) {
+        return calls.get(index);
+    }
+
+    /**
+     * Returns the index of the innermost method containing the given call, or -1.
+     */
+    int getMethodOfCall(int index) {
+        return callMethods[index];
+    }
+
+    int getMethodCount() {
+        return methods.size();
+    }
+
+    @NonNull
+    UMethod getMethod(int method) {
+        return methods.get(method);
+    }
+
+    /**
+     * Returns the index of the method the given method is declared in, e.g. the method of a
+     * local or anonymous class, or -1. Enclosing methods always have the lower index.
+     */
+    int getParentMethod(int method) {
+        return parentMethods.get(method);
+    }
+
+    /**
+     * Returns the calls within the given method, including those of nested lambdas and
+     * classes, or null if the method is not part of this file.
+     */
+    @Nullable
+    List<UCallExpression> getCallsWithin(@NonNull UMethod method) {
+        Integer index = methodIndices.get(key(method));
+        if (index == null)
+            return null;
+        return calls.subList(firstCalls.get(index), endCalls.get(index));
+    }
+
+    /**
+     * Returns the indices of the calls of methods with the given name, in pre-order.
+     */
+    @NonNull
+    List<Integer> getCallsNamed(@NonNull String methodName) {
+        List<Integer> named = callsByName.get(methodName);
+        return named != null ? named : Collections.<Integer>emptyList();
+    }
+
+    // the PSI element is shared by all UAST elements created for the same method
+    @NonNull
+    private static Object key(@NonNull UMethod method) {
+        PsiElement psi = method.getPsi();
+        return psi != null ? psi : method;
+    }
+
+    private class IndexVisitor extends AbstractUastVisitor {
+        private int currentMethod = -1;
+
+        @Override
+        public boolean visitMethod(@NonNull UMethod node) {
+            int index = methods.size();
+            methods.add(node);
+            parentMethods.add(currentMethod);
+            firstCalls.add(calls.size());
+            endCalls.add(calls.size());
+            methodIndices.put(key(node), index);
+            currentMethod = index;
+            return super.visitMethod(node);
+        }
+
+        @Override
+        public void afterVisitMethod(@NonNull UMethod node) {
+            endCalls.set(currentMethod, calls.size());
+            currentMethod = parentMethods.get(currentMethod);
+            super.afterVisitMethod(node);
+        }
+
+        @Override
+        public boolean visitCallExpression(@NonNull UCallExpression node) {
+            if (calls.size() == callMethods.length)
+                callMethods = Arrays.copyOf(callMethods, callMethods.length * 2);
+            String name = node.getMethodName();
+            if (name != null)
+                callsByName.computeIfAbsent(name, key -> new ArrayList<>()).add(calls.size());
+            callMethods[calls.size()] = currentMethod;
+            calls.add(node);
+            return super.visitCallExpression(node);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.JavaContext;
+import com.android.tools.lint.detector.api.Location;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiWhiteSpace;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.uast.UElement;
+import org.jetbrains.uast.UMethod;
+import org.jetbrains.uast.UastUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_NAME;
+
+/**
+ * Stable identity of a reported finding that does not depend on its line.
+ *
+ * The fingerprint is a 64 bit FNV-1a hash over the issue id, the qualified name of the
+ * enclosing class, the name and parameter types of the enclosing method and the tokens of the
+ * reported node without whitespace and comments. Declarations, e.g. a reported method, only
+ * contribute their signature, so edits within their body keep the fingerprint. Equal nodes of
+ * the same method, e.g. a call repeated in both branches of an if, are told apart by their
+ * occurrence among the nodes with equal tokens in source order; the first occurrence
+ * contributes nothing. The nodes of a scope are hashed once per node class and file and kept
+ * in the FileCache, so finding the occurrence does not walk the scope again. Manifest nodes
+ * are identified by the tags and android:name attributes of their ancestors instead of a class.
+ * Unrelated edits of a file therefore keep the fingerprints of its findings, and baselines can
+ * be matched with a hash set instead of comparing lines.
+ *
+ * Detectors attach the fingerprint to the location they report while visiting the node, and
+ * clients read it back with of(Location). Detectors of Java and Kotlin nodes have to call
+ * UastHelper.releaseFileCache in afterCheckProject.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+public final class Fingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final char SEPARATOR = 0;
+
+    private final long hash;
+
+    private Fingerprint(long hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * Attaches the fingerprint of the given Java or Kotlin node to the given location.
+     *
+     * @return the location
+     */
+    @NonNull
+    static Location attach(@NonNull JavaContext context, @NonNull Issue issue, @NonNull UElement node,
+                           @NonNull Location location) {
+        Hasher hasher = new Hasher().add(issue.getId());
+        PsiClass containingClass = UastUtils.getContainingClass(node);
+        // anonymous and local classes are identified by their enclosing named class
+        while (containingClass != null && containingClass.getQualifiedName() == null)
+            containingClass = containingClass.getContainingClass();
+        hasher.add(containingClass != null ? containingClass.getQualifiedName() : "");
+        UMethod containingMethod = UastUtils.getContainingUMethod(node);
+        hasher.add(containingMethod != null ? signature(containingMethod) : "");
+        if (node instanceof PsiMethod) {
+            hasher.add(signature((PsiMethod) node));
+        } else if (node.getPsi() != null) {
+            PsiElement element = node.getPsi();
+            hasher.addTokens(element);
+            PsiElement scope = containingMethod != null ? containingMethod.getPsi() : containingClass;
+            int occurrence = occurrence(context, element, scope != null ? scope : element.getContainingFile());
+            if (occurrence > 0)
+                hasher.add(Integer.toString(occurrence));
+        } else {
+            hasher.add(node.asSourceString().replaceAll("\\s+", ""));
+        }
+        location.setClientData(new Fingerprint(hasher.hash));
+        return location;
+    }
+
+    /**
+     * Attaches the fingerprint of the given manifest element or attribute to the given location.
+     *
+     * @return the location
+     */
+    @NonNull
+    static Location attach(@NonNull Issue issue, @NonNull Node node, @NonNull Location location) {
+        Hasher hasher = new Hasher().add(issue.getId());
+        Node element = node instanceof Attr ? ((Attr) node).getOwnerElement() : node;
+        StringBuilder path = new StringBuilder();
+        for (Node parent = element; parent instanceof Element; parent = parent.getParentNode()) {
+            String name = ((Element) parent).getAttributeNS(ANDROID_URI, ATTR_NAME);
+            path.insert(0, "/" + parent.getNodeName() + (name.isEmpty() ? "" : "[" + name + "]"));
+        }
+        hasher.add(path.toString());
+        hasher.add(node instanceof Attr ? node.getNodeName() + "=" + node.getNodeValue() : "");
+        location.setClientData(new Fingerprint(hasher.hash));
+        return location;
+    }
+
+    /**
+     * Returns the fingerprint attached to the given location as 16 hex digits, or null if the
+     * reporting detector does not compute fingerprints.
+     */
+    @Nullable
+    public static String of(@NonNull Location location) {
+        Object data = location.getClientData();
+        return data instanceof Fingerprint ? data.toString() : null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x", hash);
+    }
+
+    // e.g. "onReceive(android.content.Context,android.content.Intent)"
+    @NonNull
+    private static String signature(@NonNull PsiMethod method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0)
+                signature.append(',');
+            signature.append(parameters[i].getType().getCanonicalText());
+        }
+        return signature.append(')').toString();
+    }
+
+    // the number of nodes of the same type with equal tokens before the given one in the scope
+    private static int occurrence(@NonNull JavaContext context, @NonNull PsiElement element,
+                                  @Nullable PsiElement scope) {
+        if (scope == null || element.getTextRange() == null)
+            return 0;
+        Class<? extends PsiElement> type = element.getClass();
+        List<Integer> starts = FileCache.get(context).getOccurrences(scope, type, () -> index(scope, type))
+                .get(new Hasher().addTokens(element).hash);
+        if (starts == null)
+            return 0;
+        int index = Collections.binarySearch(starts, element.getTextRange().getStartOffset());
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // the start offsets of the nodes of the given type in the scope by the hash of their tokens,
+    // in source order
+    @NonNull
+    private static Map<Long, List<Integer>> index(@NonNull PsiElement scope, @NonNull Class<? extends PsiElement> type) {
+        Map<Long, List<Integer>> starts = new HashMap<>();
+        for (PsiElement candidate : PsiTreeUtil.findChildrenOfType(scope, type)) {
+            if (candidate.getTextRange() != null)
+                starts.computeIfAbsent(new Hasher().addTokens(candidate).hash, hash -> new ArrayList<>())
+                        .add(candidate.getTextRange().getStartOffset());
+        }
+        return starts;
+    }
+
+    private static final class Hasher {
+        private long hash = OFFSET_BASIS;
+
+        @NonNull
+        private Hasher add(@NonNull String part) {
+            for (int i = 0; i < part.length(); i++)
+                add(part.charAt(i));
+            add(SEPARATOR);
+            return this;
+        }
+
+        // the leaves of the tree in source order, i.e. the tokens of the node
+        @NonNull
+        private Hasher addTokens(@NonNull PsiElement element) {
+            PsiElement child = element.getFirstChild();
+            if (child == null) {
+                if (!(element instanceof PsiWhiteSpace) && !(element instanceof PsiComment))
+                    add(element.getText());
+                return this;
+            }
+            for (; child != null; child = child.getNextSibling())
+                addTokens(child);
+            return this;
+        }
+
+        private void add(char c) {
+            hash = (hash ^ c) * PRIME;
+        }
+    }
+}
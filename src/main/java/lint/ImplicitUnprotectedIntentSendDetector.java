@@ -7,8 +7,8 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -23,24 +23,27 @@ import com.intellij.psi.PsiVariable;
 import org.jetbrains.uast.UCallExpression;
 import org.jetbrains.uast.UExpression;
 import org.jetbrains.uast.UMethod;
-import org.jetbrains.uast.UReferenceExpression;
 import org.jetbrains.uast.USimpleNameReferenceExpression;
 import org.jetbrains.uast.UastLiteralUtils;
 import org.jetbrains.uast.UastUtils;
 import org.jetbrains.uast.util.UastExpressionUtils;
-import org.jetbrains.uast.visitor.AbstractUastVisitor;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 
+import static lint.IntentSummaries.isExplicitIntentConstructor;
 import static lint.UastHelper.getLastAssignedExpression;
 import static lint.UastHelper.hasClassOrSuperClass;
-import static lint.UastHelper.methodHasName;
+import static lint.UastHelper.isMemberInSubClassOf;
 
 /**
  * This detector checks if an implicit intent is created and sent
  * without any additional protection through a permission specified in the sending method.
- * Important: This detector considers only intra-procedural issues.
+ * Intents created by other methods, e.g. builders or factories, and intents passed to other
+ * methods which make them explicit are followed through the IntentSummaries of these methods,
+ * so the issues need all Java files of the project. Single files, e.g. in the editor, are
+ * checked with the summaries of their own methods only.
  * Intents are implicit as long as their receiver is not defined specifically. Receivers can 
  * be defined specifically by the component (Class or ComponentName) during intent creation 
  * or later. We only consider an implicit intent to be safe if the sending method 
@@ -59,8 +62,9 @@ public class ImplicitUnprotectedIntentSendDetector extends Detector implements D
     private static final String INTENT_CLASS = "android.content.Intent";
     private static final String CONTEXT_CLASS = "android.content.Context";
     private static final String ACTIVITY_CLASS = "android.app.Activity";
-
-    private static final String URI_CLASS= "android.net.Uri";
+    // the reports depend on the summaries of methods in other files, but single files can be
+    // checked on the fly with the summaries of their own methods
+    private static final EnumSet<Scope> SCOPE = EnumSet.of(Scope.JAVA_FILE, Scope.ALL_JAVA_FILES);
 
     public static final String IMPLICIT_INTENT_MESSAGE = "Avoid sending implicit intents if possible";
     public static final Issue IMPLICIT_INTENT_SENDED_UNPROTECTED = Issue.create("UnauthorizedIntent", //$NON-NLS-1$
@@ -81,6 +85,7 @@ public class ImplicitUnprotectedIntentSendDetector extends Detector implements D
             Severity.WARNING,
             new Implementation(
                     ImplicitUnprotectedIntentSendDetector.class,
+                    SCOPE,
                     Scope.JAVA_FILE_SCOPE))
             .addMoreInfo("https://developer.android.com/training/articles/security-tips.html#IPC");
     public static final String IMPLICIT_PENDING_INTENT_MESSAGE = "Do not use implicit intents for pending intents";
@@ -99,26 +104,32 @@ public class ImplicitUnprotectedIntentSendDetector extends Detector implements D
             Severity.WARNING,
             new Implementation(
                     ImplicitUnprotectedIntentSendDetector.class,
+                    SCOPE,
                     Scope.JAVA_FILE_SCOPE))
             .addMoreInfo("https://developer.android.com/reference/android/app/PendingIntent.html")
             .addMoreInfo("https://bitbucket.org/secure-it-i/android-app-vulnerability-benchmarks/src/978fbc17a087d77b38474bfbe01a00b5e2217ce6/ICC/ImplicitPendingIntent-IntentHijack-Lean/?at=master")
             .addMoreInfo("https://wiki.sei.cmu.edu/confluence/display/android/DRD21-J.+Always+pass+explicit+intents+to+a+PendingIntent");
 
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
+        IntentSummaries.release(context);
+    }
+
     @Override
     public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call,
                             @NonNull PsiMethod method) {
         boolean isPendingIntent = isPendingIntent(call);
-        JavaEvaluator evaluator = context.getEvaluator();
 
-        if(!evaluator.isMemberInSubClassOf(method, CONTEXT_CLASS, false) && !evaluator.isMemberInSubClassOf(method, ACTIVITY_CLASS, false)
-            && !evaluator.isMemberInSubClassOf(method, PENDING_INTENT_CLASS, false))
+        if(!isMemberInSubClassOf(context, method, CONTEXT_CLASS) && !isMemberInSubClassOf(context, method, ACTIVITY_CLASS)
+            && !isMemberInSubClassOf(context, method, PENDING_INTENT_CLASS))
             return;
 
         // Calls which include a non null permission are ok
         if(checkCallIncludesPermission(call))
             return;
         
-        UExpression intentArgument = getIntentArgument(call);
+        UExpression intentArgument = getIntentArgument(call, context);
         // calls to these methods without intent argument aren't interesting
         if(intentArgument == null)
             return;
@@ -127,38 +138,49 @@ public class ImplicitUnprotectedIntentSendDetector extends Detector implements D
         // for example in the call sendBroadcast(new Intent("test.action"))
         // an implicit intent is directly created and sent, therefore we need to report
         if(UastExpressionUtils.isConstructorCall(intentArgument)){
-            if(!isExplicitIntentConstructor(intentArgument)) {
+            if(!isExplicitIntentConstructor(intentArgument, context)) {
                 report(call, isPendingIntent, context);
                 return;
             }
             else
                 return;
         }
-        
+
+        IntentSummaries summaries = IntentSummaries.get(context);
+        // the intent argument is computed by a method, for example in the call
+        // sendBroadcast(createIntent()), so the summary of the method tells if it is implicit
+        if (!(intentArgument instanceof USimpleNameReferenceExpression)) {
+            if (summaries.classify(context, intentArgument, call) == IntentSummaries.IMPLICIT)
+                report(call, isPendingIntent, context);
+            return;
+        }
+
         // get the last assingment in case the intent argument is a variable
         UExpression lastAssignment = getLastAssignedExpression(intentArgument, call);
         // return if either:
-        // we couldn't find the last assignment (because the intent was a method for example)
-        // it wasn't assigned an intent with a constructor but with a method
+        // we couldn't find the last assignment (because the intent was a parameter for example)
+        // it was assigned an intent returned by a method which is not known to be implicit
         // the constructed intent assigned to the variable was an explicit and therefore we don't need
         // to continue checking, as explicit intents can not be made implicit
-        if(lastAssignment == null || !UastExpressionUtils.isConstructorCall(lastAssignment) || isExplicitIntentConstructor(lastAssignment))
+        if(lastAssignment == null)
+            return;
+        if(UastExpressionUtils.isConstructorCall(lastAssignment)) {
+            if(isExplicitIntentConstructor(lastAssignment, context))
+                return;
+        }
+        else if(summaries.classify(context, lastAssignment, call) != IntentSummaries.IMPLICIT)
             return;
 
-        // Starting from here, we know the intent was constructed within the method surrounding this call
-        // with an implicit constructor. We still need to determine if intent has been made explicit
-        // with the help of a SendIntentMethodVisitor
-        if (intentArgument instanceof USimpleNameReferenceExpression) {
-            PsiElement e = UastUtils.tryResolve(intentArgument);
-            if (e instanceof PsiVariable) {
-                UMethod containingMethod = UastUtils.getContainingUMethod(call);
-                if(containingMethod == null)
-                    return;
-                SendIntentMethodVisitor visitor = new SendIntentMethodVisitor((PsiVariable) e);
-                containingMethod.accept(visitor);
-                if(!visitor.intentWasMadeExplicit())
-                    report(call, isPendingIntent, context);
-            }
+        // Starting from here, we know the intent assigned to the variable is implicit. We still
+        // need to determine if the intent has been made explicit within the surrounding method,
+        // either directly or by a method whose summary makes the intent parameter explicit
+        PsiElement e = UastUtils.tryResolve(intentArgument);
+        if (e instanceof PsiVariable) {
+            UMethod containingMethod = UastUtils.getContainingUMethod(call);
+            if(containingMethod == null)
+                return;
+            if(!summaries.isMadeExplicit(context, (PsiVariable) e, containingMethod))
+                report(call, isPendingIntent, context);
         }
 
     }
@@ -169,39 +191,12 @@ public class ImplicitUnprotectedIntentSendDetector extends Detector implements D
         return permissionArgument != null && !UastLiteralUtils.isNullLiteral(permissionArgument);
     }
 
-    // Explicit Intent constructors are all constructors which require a class and a package name.
-    // This includes the following two constructors:
-    // Intent(Context packageContext, Class<?> cls)
-    // Intent(String action, Uri uri, Context packageContext, Class<?> cls)
-    private boolean isExplicitIntentConstructor(@Nullable UExpression expression){
-        if(expression == null)
-            return false;
-        UCallExpression constructorCall = (UCallExpression) expression;
-        UReferenceExpression classReference = constructorCall.getClassReference();
-        if (classReference == null)
-            return false;
-        String klass = UastUtils.getQualifiedName(classReference);
-        if (INTENT_CLASS.equals(klass)) {
-            List<UExpression> valueArgumentList = constructorCall.getValueArguments();
-            if (valueArgumentList.size() != 2 && valueArgumentList.size() != 4)
-                return false;
-            // for all implicit constructors with 2 or 4 arguments, the last argument is a uri
-            PsiType lastType = valueArgumentList.get(valueArgumentList.size() - 1).getExpressionType();
-
-            if ( lastType == null )
-                return true;
-            return !hasClassOrSuperClass(lastType, URI_CLASS);
-        }
-
-        return false;
-    }
-
     // tries to find the intent argument of the given UCallExpression
-    private UExpression getIntentArgument(@NonNull UCallExpression call){
+    private UExpression getIntentArgument(@NonNull UCallExpression call, @NonNull JavaContext context){
         List<UExpression> argumentValueList = call.getValueArguments();
         for(UExpression intentArgument : argumentValueList){
             PsiType argumentType = intentArgument.getExpressionType();
-            if(hasClassOrSuperClass(argumentType, INTENT_CLASS))
+            if(hasClassOrSuperClass(context, argumentType, INTENT_CLASS))
                 return intentArgument;
         }
         return null;
@@ -237,9 +232,9 @@ public class ImplicitUnprotectedIntentSendDetector extends Detector implements D
     // or a IMPLICIT_INTENT_SENDED_UNPROTECTED issue
     private void report(@NonNull UCallExpression call, boolean isPendingIntent, @NonNull JavaContext context){
         if(isPendingIntent)
-            context.report(IMPLICIT_PENDING_INTENT, call, context.getLocation(call), IMPLICIT_PENDING_INTENT_MESSAGE);
+            context.report(IMPLICIT_PENDING_INTENT, call, Fingerprint.attach(context, IMPLICIT_PENDING_INTENT, call, context.getLocation(call)), IMPLICIT_PENDING_INTENT_MESSAGE);
         else
-            context.report(IMPLICIT_INTENT_SENDED_UNPROTECTED, call, context.getLocation(call), IMPLICIT_INTENT_MESSAGE);
+            context.report(IMPLICIT_INTENT_SENDED_UNPROTECTED, call, Fingerprint.attach(context, IMPLICIT_INTENT_SENDED_UNPROTECTED, call, context.getLocation(call)), IMPLICIT_INTENT_MESSAGE);
 
     }
 
@@ -267,54 +262,4 @@ public class ImplicitUnprotectedIntentSendDetector extends Detector implements D
     }
 
 
-    // A visitor which tries to follow the trace of a given intent reference within a method
-    // to find out if any method was called to make this intent explicit
-    private class SendIntentMethodVisitor extends AbstractUastVisitor {
-        private PsiVariable intentVariable;
-        private boolean makesIntentExplicit = false;
-
-        private SendIntentMethodVisitor(@NonNull PsiVariable intentVariable) {
-            this.intentVariable = intentVariable;
-        }
-
-       private void makesIntentExplicit(@NonNull UCallExpression methodInvocation){
-            if(isComponentSettingMethod(methodInvocation)) {
-                PsiElement e = UastUtils.tryResolve(methodInvocation.getReceiver());
-                if (e instanceof PsiVariable) {
-                    PsiVariable receivingVariable = (PsiVariable) e;
-                    if(receivingVariable.getName() != null &&
-                            receivingVariable.getName().equals(intentVariable.getName()))
-                        makesIntentExplicit = true;
-                }
-                // if e is not a variable we just assume that it is the same
-                // this can happen, for example, when multiple intent methods are chained
-                else
-                    makesIntentExplicit = true;
-
-            }
-        }
-
-        private boolean isComponentSettingMethod(@NonNull UCallExpression call){
-           for(String componentSettingMethods : componentSettingMethods()){
-               if(methodHasName(call, componentSettingMethods))
-                   return true;
-           }
-           return false;
-        }
-
-        private List<String> componentSettingMethods(){
-            return Arrays.asList("setClass","setClassName","setComponentName","setPackage","setComponent");
-        }
-
-        @Override
-        public boolean visitCallExpression(@NonNull UCallExpression methodInvocation) {
-            makesIntentExplicit(methodInvocation);
-            return super.visitCallExpression(methodInvocation);
-        }
-
-        boolean intentWasMadeExplicit() {
-            return makesIntentExplicit;
-        }
-
-    }
 }
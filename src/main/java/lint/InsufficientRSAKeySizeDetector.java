@@ -6,38 +6,58 @@
 package lint;
 
 import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.client.api.UElementHandler;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
 import com.android.tools.lint.detector.api.JavaContext;
 import com.android.tools.lint.detector.api.Scope;
 import com.android.tools.lint.detector.api.Severity;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiLocalVariable;
 import com.intellij.psi.PsiMethod;
 
+import org.jetbrains.uast.UBinaryExpression;
 import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UClass;
 import org.jetbrains.uast.UElement;
 import org.jetbrains.uast.UExpression;
+import org.jetbrains.uast.UField;
+import org.jetbrains.uast.UFile;
+import org.jetbrains.uast.ULambdaExpression;
 import org.jetbrains.uast.UMethod;
+import org.jetbrains.uast.UParenthesizedExpression;
+import org.jetbrains.uast.UQualifiedReferenceExpression;
+import org.jetbrains.uast.UReturnExpression;
+import org.jetbrains.uast.UastBinaryOperator;
+import org.jetbrains.uast.UastUtils;
 import org.jetbrains.uast.visitor.AbstractUastVisitor;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static lint.ConstantEvaluatorWrapper.resolveAsLong;
 import static lint.ConstantEvaluatorWrapper.resolveAsString;
+import static lint.UastHelper.getLastAssignedExpression;
+import static lint.UastHelper.hasClassOrSuperClass;
+import static lint.UastHelper.isMemberInSubClassOf;
 import static lint.UastHelper.methodHasName;
 
-//todo
 /**
  * Checks for the initialization of a RSA key pair generator with a key size lower than 2048
  * bits.
  *
- * Note that this check is limited to key pair generators created and initialized within the
- * same method.
+ * The key pair generator of an initialize call is followed to the getInstance call creating
+ * it through local variables, fields and factory methods of the same file.
  * 
  * @author Patrick Frischknecht
  * 
@@ -48,6 +68,11 @@ import static lint.UastHelper.methodHasName;
 public class InsufficientRSAKeySizeDetector extends Detector implements Detector.UastScanner {
 
     private static final String KEY_PAIR_GENERATOR = "java.security.KeyPairGenerator";
+    // simple name every source using a key pair generator has to contain
+    private static final String KEY_PAIR_GENERATOR_NAME = "KeyPairGenerator";
+    // bounds the fields and factories tracked per file and the length of followed chains
+    private static final int MAX_TRACKED = 256;
+    private static final int MAX_DEPTH = 8;
     private static final String GET_INSTANCE = "getInstance";
     private static final String INITIALIZE = "initialize";
     private static final int MIN_KEY_SIZE = 2048;
@@ -68,93 +93,240 @@ public class InsufficientRSAKeySizeDetector extends Detector implements Detector
             .addMoreInfo("http://nvlpubs.nist.gov/nistpubs/SpecialPublications/NIST.SP.800-57Pt3r1.pdf");
 
     @Override
-    public UElementHandler createUastHandler(JavaContext context) {
-        return new VisitorToMethodPasser(context);
+    public UElementHandler createUastHandler(@NonNull JavaContext context) {
+        return new UElementHandler() {
+            @Override
+            public void visitFile(@NonNull UFile file) {
+                checkFile(context);
+            }
+        };
     }
 
     @Override
     public List<Class<? extends UElement>> getApplicableUastTypes() {
-        return Collections.singletonList(UMethod.class);
+        return Collections.singletonList(UFile.class);
     }
 
-    // Ugly workaround to use a visitor (which can easily visit different elements)
-    // instead of a UElementVisitor (which can only visit one element type or the
-    // reimplementation of many methods is required).
-    // According to UElementHandler this is the proposed approach
-    // (creating a handler to create a visitor).
-    private class  VisitorToMethodPasser extends UElementHandler{
-        private JavaContext context;
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
+    }
 
-        public VisitorToMethodPasser(JavaContext context){
-            this.context = context;
+    // Checks the initialize calls of the file, taken from the method-name table of the call
+    // index shared by all detectors. Files which do not mention KeyPairGenerator at all are
+    // skipped before their calls are collected. Every initialize call with a low key size is
+    // tied to the getInstance call that created its receiver by a GeneratorTracker.
+    private void checkFile(@NonNull JavaContext context) {
+        CharSequence contents = context.getContents();
+        if (contents != null && contents.toString().indexOf(KEY_PAIR_GENERATOR_NAME) < 0)
+            return;
+        FileCallIndex calls = UastHelper.getCallIndex(context);
+        List<Integer> initializeCalls = calls.getCallsNamed(INITIALIZE);
+        if (initializeCalls.isEmpty())
+            return;
+        GeneratorTracker tracker = null;
+        for (int call : initializeCalls) {
+            UCallExpression initializeCall = calls.getCall(call);
+            if (!isSettingLowKeySize(initializeCall, context))
+                continue;
+            if (tracker == null)
+                tracker = new GeneratorTracker(context, calls);
+            if (tracker.isRSAGenerator(initializeCall.getReceiver(), initializeCall, 0))
+                context.report(ISSUE, initializeCall, Fingerprint.attach(context, ISSUE, initializeCall, context.getLocation(initializeCall)), MESSAGE);
         }
-        @Override
-        public void visitMethod(UMethod uMethod) {
-            uMethod.accept(new InsufficientRSAKeySizeVisitor(context));
+    }
+
+    private boolean isGettingRSAInstance(@NonNull UCallExpression methodInvocation, @NonNull JavaContext context) {
+        if (!methodHasName(methodInvocation, GET_INSTANCE))
+            return false;
+        PsiMethod resolvedMethod = UastHelper.resolve(context, methodInvocation);
+        if (resolvedMethod == null || !isMemberInSubClassOf(context, resolvedMethod, KEY_PAIR_GENERATOR))
+            return false;
+        List<UExpression> argumentList = methodInvocation.getValueArguments();
+        if ((argumentList.size() == 1 || argumentList.size() == 2)) {
+            UExpression expression = argumentList.get(0);
+            String argument = resolveAsString(expression, context);
+            return argument != null && argument.toUpperCase().startsWith("RSA");
         }
+        return false;
     }
 
+    private boolean isSettingLowKeySize(@NonNull UCallExpression methodInvocation, @NonNull JavaContext context) {
+        if (!methodHasName(methodInvocation, INITIALIZE))
+            return false;
+        PsiMethod resolvedMethod = UastHelper.resolve(context, methodInvocation);
+        if (resolvedMethod == null || !isMemberInSubClassOf(context, resolvedMethod, KEY_PAIR_GENERATOR))
+            return false;
+        List<UExpression> argumentList = methodInvocation.getValueArguments();
+        if (argumentList.size() == 1) {
+            UExpression expression = argumentList.get(0);
+            Long value = resolveAsLong(expression, context);
+            return value != null && value < MIN_KEY_SIZE;
+        }
+        return false;
+    }
 
-    private class InsufficientRSAKeySizeVisitor extends AbstractUastVisitor {
-        private boolean foundGetInstance = false;
-        private UCallExpression lowKeySizeInitializeCall = null;
-        private JavaContext context;
+    // Finds out if the receiver of an initialize call was created by getInstance("RSA"). The
+    // receiver is followed through local variables, through fields of the file and through
+    // factory methods of the file returning a key pair generator. Fields assigned an RSA key
+    // pair generator are collected in one pass over the getInstance calls of the file; they
+    // only count as RSA if every assignment to them in the file is an RSA generator, fields
+    // also assigned other generators are unknown. Factory methods are evaluated once when they
+    // are first met. Both tables are bounded by MAX_TRACKED entries, generators beyond it are
+    // not followed.
+    private class GeneratorTracker {
+        private final JavaContext context;
+        private final FileCallIndex calls;
+        private final Set<PsiField> rsaFields = new HashSet<>();
+        private final Map<PsiMethod, Boolean> factories = new HashMap<>();
 
-        private InsufficientRSAKeySizeVisitor(@NonNull JavaContext context) {
+        private GeneratorTracker(@NonNull JavaContext context, @NonNull FileCallIndex calls) {
             this.context = context;
+            this.calls = calls;
+            for (int call : calls.getCallsNamed(GET_INSTANCE)) {
+                UCallExpression getInstanceCall = calls.getCall(call);
+                PsiField field = getAssignedField(getInstanceCall);
+                if (field != null && rsaFields.size() < MAX_TRACKED && isGettingRSAInstance(getInstanceCall, context))
+                    rsaFields.add(field);
+            }
+            UFile file = context.getUastFile();
+            if (!rsaFields.isEmpty() && file != null) {
+                MixedFieldVisitor visitor = new MixedFieldVisitor();
+                file.accept(visitor);
+                rsaFields.removeAll(visitor.mixedFields);
+            }
         }
 
-
-        @Override
-        public boolean visitCallExpression(@NonNull UCallExpression methodInvocation) {
-            checkIsGettingRSAInstance(methodInvocation);
-            checkSetsRSAKeySize(methodInvocation);
-            return super.visitCallExpression(methodInvocation);
+        private boolean isRSAGenerator(@Nullable UExpression generator, @NonNull UElement use, int depth) {
+            if (generator == null || depth > MAX_DEPTH)
+                return false;
+            generator = skipParenthesesAndQualifiers(generator);
+            if (generator instanceof UCallExpression) {
+                UCallExpression call = (UCallExpression) generator;
+                if (methodHasName(call, GET_INSTANCE))
+                    return isGettingRSAInstance(call, context);
+                return isRSAFactory(UastHelper.resolve(context, call), depth);
+            }
+            PsiElement resolved = UastUtils.tryResolve(generator);
+            if (resolved instanceof PsiField)
+                return rsaFields.contains(resolved);
+            if (resolved instanceof PsiLocalVariable)
+                return isRSAGenerator(getLastAssignedExpression(generator, use), use, depth + 1);
+            return false;
         }
 
-        private void checkIsGettingRSAInstance(@NonNull UCallExpression methodInvocation) {
-            PsiMethod resolvedMethod = methodInvocation.resolve();
-            JavaEvaluator evaluator = context.getEvaluator();
-            if (resolvedMethod == null ||
-                    !evaluator.isMemberInSubClassOf(resolvedMethod, KEY_PAIR_GENERATOR, false) ||
-                    !methodHasName(methodInvocation, GET_INSTANCE))
-                return;
-            List<UExpression> argumentList = methodInvocation.getValueArguments();
-            if ((argumentList.size() == 1 || argumentList.size() == 2)) {
-                UExpression expression = argumentList.get(0);
-                String argument = resolveAsString(expression, context);
-                if (argument != null && argument.toUpperCase().startsWith("RSA")) {
-                    foundGetInstance = true;
-                }
+        // checks if the given method of this file returns an RSA key pair generator
+        private boolean isRSAFactory(@Nullable PsiMethod method, int depth) {
+            if (method == null || !hasClassOrSuperClass(context, method.getReturnType(), KEY_PAIR_GENERATOR))
+                return false;
+            Boolean known = factories.get(method);
+            if (known != null)
+                return known;
+            if (factories.size() >= MAX_TRACKED)
+                return false;
+            UElement element = context.getUastContext().convertElementWithParent(method, UMethod.class);
+            // only factories of this file are followed
+            if (!(element instanceof UMethod) || calls.getCallsWithin((UMethod) element) == null) {
+                factories.put(method, false);
+                return false;
             }
+            // recursive factories see no generator while they are evaluated
+            factories.put(method, false);
+            ReturnVisitor visitor = new ReturnVisitor(depth);
+            element.accept(visitor);
+            factories.put(method, visitor.returnsRSAGenerator);
+            return visitor.returnsRSAGenerator;
         }
 
-        private void checkSetsRSAKeySize(@NonNull UCallExpression methodInvocation) {
-            JavaEvaluator evaluator= context.getEvaluator();
-            PsiMethod resolvedMethod = methodInvocation.resolve();
-            if (resolvedMethod == null ||
-                    !evaluator.isMemberInSubClassOf(resolvedMethod, KEY_PAIR_GENERATOR, false) ||
-                    !methodHasName(methodInvocation, INITIALIZE))
-                return;
-            List<UExpression> argumentList = methodInvocation.getValueArguments();
-            if (argumentList.size() == 1) {
-                UExpression expression = argumentList.get(0);
-                Long value = resolveAsLong(expression, context);
-                if (value != null && value < MIN_KEY_SIZE) {
-                    lowKeySizeInitializeCall = methodInvocation;
-                }
+        // Collects the fields of rsaFields which are also assigned something other than an RSA
+        // generator, e.g. an EC generator or null.
+        private class MixedFieldVisitor extends AbstractUastVisitor {
+            private final Set<PsiField> mixedFields = new HashSet<>();
+
+            @Override
+            public boolean visitField(@NonNull UField node) {
+                UExpression initializer = node.getUastInitializer();
+                if (initializer != null)
+                    check(node.getPsi(), initializer, node);
+                return super.visitField(node);
+            }
+
+            @Override
+            public boolean visitBinaryExpression(@NonNull UBinaryExpression node) {
+                if (node.getOperator() == UastBinaryOperator.ASSIGN)
+                    check(UastUtils.tryResolve(node.getLeftOperand()), node.getRightOperand(), node);
+                return super.visitBinaryExpression(node);
+            }
+
+            private void check(@Nullable PsiElement field, @NonNull UExpression value, @NonNull UElement use) {
+                if (field instanceof PsiField && rsaFields.contains(field) && !mixedFields.contains(field)
+                        && !isRSAGenerator(value, use, 1))
+                    mixedFields.add((PsiField) field);
             }
         }
 
+        // Collects the returns of a factory method, lambdas and local classes return for other
+        // methods and are skipped.
+        private class ReturnVisitor extends AbstractUastVisitor {
+            private final int depth;
+            private boolean returnsRSAGenerator = false;
+
+            private ReturnVisitor(int depth) {
+                this.depth = depth;
+            }
+
+            @Override
+            public boolean visitReturnExpression(@NonNull UReturnExpression node) {
+                if (!returnsRSAGenerator && isRSAGenerator(node.getReturnExpression(), node, depth + 1))
+                    returnsRSAGenerator = true;
+                return super.visitReturnExpression(node);
+            }
+
+            @Override
+            public boolean visitLambdaExpression(@NonNull ULambdaExpression node) {
+                return true;
+            }
 
-        @Override
-        public void afterVisitMethod(@NonNull UMethod methodDeclaration) {
-            if (foundGetInstance && lowKeySizeInitializeCall != null) {
-                context.report(ISSUE, lowKeySizeInitializeCall, context.getLocation(lowKeySizeInitializeCall), MESSAGE);
+            @Override
+            public boolean visitClass(@NonNull UClass node) {
+                return true;
             }
-            foundGetInstance = false;
-            lowKeySizeInitializeCall = null;
         }
+    }
 
+    // returns the field a getInstance call is assigned to, either in the field initializer or
+    // by an assignment, or null
+    @Nullable
+    private static PsiField getAssignedField(@NonNull UCallExpression getInstanceCall) {
+        UElement parent = getInstanceCall.getUastParent();
+        // the call is usually the selector of KeyPairGenerator.getInstance(..)
+        if (parent instanceof UQualifiedReferenceExpression
+                && ((UQualifiedReferenceExpression) parent).getSelector() instanceof UCallExpression
+                && methodHasName((UCallExpression) ((UQualifiedReferenceExpression) parent).getSelector(), GET_INSTANCE))
+            parent = parent.getUastParent();
+        while (parent instanceof UParenthesizedExpression)
+            parent = parent.getUastParent();
+        if (parent instanceof UField) {
+            PsiElement field = ((UField) parent).getPsi();
+            return field instanceof PsiField ? (PsiField) field : null;
+        }
+        if (parent instanceof UBinaryExpression
+                && ((UBinaryExpression) parent).getOperator() == UastBinaryOperator.ASSIGN) {
+            PsiElement assigned = UastUtils.tryResolve(((UBinaryExpression) parent).getLeftOperand());
+            return assigned instanceof PsiField ? (PsiField) assigned : null;
+        }
+        return null;
+    }
+
+    @NonNull
+    private static UExpression skipParenthesesAndQualifiers(@NonNull UExpression expression) {
+        while (true) {
+            if (expression instanceof UParenthesizedExpression)
+                expression = ((UParenthesizedExpression) expression).getExpression();
+            else if (expression instanceof UQualifiedReferenceExpression)
+                expression = ((UQualifiedReferenceExpression) expression).getSelector();
+            else
+                return expression;
+        }
     }
 }
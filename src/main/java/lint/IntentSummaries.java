@@ -0,0 +1,422 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.detector.api.Context;
+import com.android.tools.lint.detector.api.JavaContext;
+import com.android.tools.lint.detector.api.Scope;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiVariable;
+
+import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UClass;
+import org.jetbrains.uast.UElement;
+import org.jetbrains.uast.UExpression;
+import org.jetbrains.uast.ULambdaExpression;
+import org.jetbrains.uast.UMethod;
+import org.jetbrains.uast.UParenthesizedExpression;
+import org.jetbrains.uast.UQualifiedReferenceExpression;
+import org.jetbrains.uast.UReferenceExpression;
+import org.jetbrains.uast.UReturnExpression;
+import org.jetbrains.uast.USimpleNameReferenceExpression;
+import org.jetbrains.uast.UastUtils;
+import org.jetbrains.uast.util.UastExpressionUtils;
+import org.jetbrains.uast.visitor.AbstractUastVisitor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static lint.UastHelper.getLastAssignedExpression;
+import static lint.UastHelper.hasClassOrSuperClass;
+import static lint.UastHelper.isMemberInSubClassOf;
+
+/**
+ * Interprocedural summaries of how methods treat intents, shared by all files of a project.
+ *
+ * The summary of a method records whether it returns an explicit or an implicit intent and
+ * which of its intent parameters it makes explicit, either directly (e.g. param.setClass(..))
+ * or by passing them to a method that does so. Summaries are computed on demand when a send
+ * site needs them, so the call graph is summarized bottom-up from the sites and every method
+ * body is walked at most once per project. Recursive calls see an unknown summary while
+ * their callee is being summarized, and deeper call chains than MAX_DEPTH allows are not
+ * followed. A summary that saw such a placeholder of one of its callers or a cut off chain is
+ * only used by the caller that requested it and computed again when it is needed elsewhere.
+ *
+ * The summaries are kept in the ProjectState of the project and released by the detector in
+ * afterCheckProject; every cached summary takes an entry of the budget. When lint only checks
+ * single files, e.g. on the fly in the editor, methods of other files have no summary, so the
+ * result is the one of the current method alone.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class IntentSummaries {
+
+    // explicitness of an intent
+    static final int UNKNOWN = 0;
+    static final int EXPLICIT = 1;
+    static final int IMPLICIT = 2;
+
+    private static final String INTENT_CLASS = "android.content.Intent";
+    private static final String URI_CLASS = "android.net.Uri";
+    private static final List<String> COMPONENT_SETTING_METHODS =
+            Arrays.asList("setClass", "setClassName", "setComponentName", "setPackage", "setComponent");
+    // bounds the nesting of summaries and expression evaluations
+    private static final int MAX_DEPTH = 32;
+    // only the first parameters of a method are tracked
+    private static final int MAX_PARAMETERS = 64;
+
+    private static final ProjectState.Key<IntentSummaries> SUMMARIES =
+            new ProjectState.Key<>("IntentSummaries", IntentSummaries::new);
+
+    /**
+     * What a method does with intents.
+     */
+    static final class Summary {
+        final int returnedIntent;
+        private final long explicitParameters;
+
+        private Summary(int returnedIntent, long explicitParameters) {
+            this.returnedIntent = returnedIntent;
+            this.explicitParameters = explicitParameters;
+        }
+
+        boolean makesParameterExplicit(int index) {
+            return index < MAX_PARAMETERS && (explicitParameters & (1L << index)) != 0;
+        }
+    }
+
+    private static final Summary NONE = new Summary(UNKNOWN, 0);
+
+    private final Map<PsiMethod, Summary> summaries = new HashMap<>();
+    // methods whose summary is being computed, by the depth at which they were entered
+    private final Map<PsiMethod, Integer> inProgress = new HashMap<>();
+    private int depth;
+    // the lowest depth of a placeholder the current summary depends on, -1 for cut off chains
+    private int lowestPlaceholder = Integer.MAX_VALUE;
+
+    @NonNull
+    static IntentSummaries get(@NonNull JavaContext context) {
+        return ProjectState.get(context, SUMMARIES);
+    }
+
+    /**
+     * Drops the summaries of the main project of the given context.
+     */
+    static void release(@NonNull Context context) {
+        ProjectState.release(context, SUMMARIES);
+    }
+
+    // Explicit Intent constructors are all constructors which require a class and a package name.
+    // This includes the following two constructors:
+    // Intent(Context packageContext, Class<?> cls)
+    // Intent(String action, Uri uri, Context packageContext, Class<?> cls)
+    static boolean isExplicitIntentConstructor(@Nullable UExpression expression, @NonNull JavaContext context) {
+        if (!(expression instanceof UCallExpression))
+            return false;
+        UCallExpression constructorCall = (UCallExpression) expression;
+        UReferenceExpression classReference = constructorCall.getClassReference();
+        if (classReference == null)
+            return false;
+        String klass = UastUtils.getQualifiedName(classReference);
+        if (INTENT_CLASS.equals(klass)) {
+            List<UExpression> valueArgumentList = constructorCall.getValueArguments();
+            if (valueArgumentList.size() != 2 && valueArgumentList.size() != 4)
+                return false;
+            // for all implicit constructors with 2 or 4 arguments, the last argument is a uri
+            PsiType lastType = valueArgumentList.get(valueArgumentList.size() - 1).getExpressionType();
+            if (lastType == null)
+                return true;
+            return !hasClassOrSuperClass(context, lastType, URI_CLASS);
+        }
+        return false;
+    }
+
+    static boolean isComponentSettingMethod(@NonNull UCallExpression call) {
+        return COMPONENT_SETTING_METHODS.contains(call.getMethodName());
+    }
+
+    /**
+     * Returns the explicitness of the intent the given expression evaluates to at the given
+     * element of its method: EXPLICIT, IMPLICIT or UNKNOWN.
+     */
+    synchronized int classify(@NonNull JavaContext context, @NonNull UExpression expression, @NonNull UElement use) {
+        if (depth >= MAX_DEPTH) {
+            lowestPlaceholder = -1;
+            return UNKNOWN;
+        }
+        depth++;
+        try {
+            return classifyExpression(context, expression, use);
+        } finally {
+            depth--;
+        }
+    }
+
+    /**
+     * Checks if the given intent variable is made explicit anywhere in the given method, either
+     * by a component setting call on the variable or by passing it to a method that makes the
+     * corresponding parameter explicit.
+     */
+    synchronized boolean isMadeExplicit(@NonNull JavaContext context, @NonNull PsiVariable intentVariable,
+                                        @NonNull UMethod method) {
+        // the calls of methods in the current file are already collected
+        List<UCallExpression> calls = UastHelper.getCallIndex(context).getCallsWithin(method);
+        if (calls != null) {
+            for (UCallExpression call : calls) {
+                if (makesExplicit(context, call, intentVariable))
+                    return true;
+            }
+            return false;
+        }
+        MadeExplicitVisitor visitor = new MadeExplicitVisitor(context, intentVariable);
+        method.accept(visitor);
+        return visitor.madeExplicit;
+    }
+
+    /**
+     * Returns the summary of the given method, computing it if the method was not summarized yet.
+     */
+    @NonNull
+    synchronized Summary summary(@NonNull JavaContext context, @NonNull PsiMethod method) {
+        Summary summary = summaries.get(method);
+        if (summary != null)
+            return summary;
+        Integer enteredAt = inProgress.get(method);
+        if (enteredAt != null || depth >= MAX_DEPTH) {
+            lowestPlaceholder = Math.min(lowestPlaceholder, enteredAt != null ? enteredAt : -1);
+            return NONE;
+        }
+        if (!handlesIntents(context, method)) {
+            cache(context, method, NONE);
+            return NONE;
+        }
+        // files which are not checked may change without the summaries being recomputed
+        if (!isVisible(context, method)) {
+            lowestPlaceholder = -1;
+            return NONE;
+        }
+        UElement element = context.getUastContext().convertElementWithParent(method, UMethod.class);
+        if (!(element instanceof UMethod) || ((UMethod) element).getUastBody() == null) {
+            cache(context, method, NONE);
+            return NONE;
+        }
+        // recursive calls see no summary while this one is computed
+        int enclosingPlaceholder = lowestPlaceholder;
+        lowestPlaceholder = Integer.MAX_VALUE;
+        inProgress.put(method, depth);
+        depth++;
+        try {
+            summary = computeSummary(context, method, (UMethod) element);
+        } finally {
+            depth--;
+            inProgress.remove(method);
+        }
+        // placeholders of this method itself do not depend on the callers
+        if (lowestPlaceholder >= depth)
+            cache(context, method, summary);
+        else
+            enclosingPlaceholder = Math.min(enclosingPlaceholder, lowestPlaceholder);
+        lowestPlaceholder = enclosingPlaceholder;
+        return summary;
+    }
+
+    private void cache(@NonNull JavaContext context, @NonNull PsiMethod method, @NonNull Summary summary) {
+        if (ProjectState.reserve(context, SUMMARIES, 1))
+            summaries.put(method, summary);
+    }
+
+    // without all Java files in scope only the methods of the current file are summarized
+    private static boolean isVisible(@NonNull JavaContext context, @NonNull PsiMethod method) {
+        if (context.getScope().contains(Scope.ALL_JAVA_FILES))
+            return true;
+        PsiFile file = method.getContainingFile();
+        return file != null && file.equals(context.getPsiFile());
+    }
+
+    private int classifyExpression(@NonNull JavaContext context, @NonNull UExpression expression,
+                                   @NonNull UElement use) {
+        if (expression instanceof UParenthesizedExpression)
+            return classify(context, ((UParenthesizedExpression) expression).getExpression(), use);
+        if (expression instanceof UQualifiedReferenceExpression)
+            return classify(context, ((UQualifiedReferenceExpression) expression).getSelector(), use);
+        if (UastExpressionUtils.isConstructorCall(expression)) {
+            if (isExplicitIntentConstructor(expression, context))
+                return EXPLICIT;
+            return hasClassOrSuperClass(context, expression.getExpressionType(), INTENT_CLASS) ? IMPLICIT : UNKNOWN;
+        }
+        if (expression instanceof UCallExpression) {
+            UCallExpression call = (UCallExpression) expression;
+            if (isComponentSettingMethod(call))
+                return EXPLICIT;
+            PsiMethod method = UastHelper.resolve(context, call);
+            if (method == null)
+                return UNKNOWN;
+            // builder methods like putExtra return the intent they are called on
+            if (isMemberInSubClassOf(context, method, INTENT_CLASS)) {
+                UExpression receiver = call.getReceiver();
+                return receiver != null && hasClassOrSuperClass(context, method.getReturnType(), INTENT_CLASS)
+                        ? classify(context, receiver, use) : UNKNOWN;
+            }
+            return summary(context, method).returnedIntent;
+        }
+        if (expression instanceof USimpleNameReferenceExpression) {
+            PsiElement variable = UastUtils.tryResolve(expression);
+            if (!(variable instanceof PsiVariable) || variable instanceof PsiParameter)
+                return UNKNOWN;
+            UExpression assigned = getLastAssignedExpression(expression, use);
+            if (assigned == null)
+                return UNKNOWN;
+            int explicitness = classify(context, assigned, use);
+            UMethod method = UastUtils.getContainingUMethod(use);
+            if (explicitness == IMPLICIT && method != null && isMadeExplicit(context, (PsiVariable) variable, method))
+                return EXPLICIT;
+            return explicitness;
+        }
+        return UNKNOWN;
+    }
+
+    // only methods returning or receiving intents can have a summary
+    private static boolean handlesIntents(@NonNull JavaContext context, @NonNull PsiMethod method) {
+        if (hasClassOrSuperClass(context, method.getReturnType(), INTENT_CLASS))
+            return true;
+        for (PsiParameter parameter : method.getParameterList().getParameters()) {
+            if (hasClassOrSuperClass(context, parameter.getType(), INTENT_CLASS))
+                return true;
+        }
+        return false;
+    }
+
+    @NonNull
+    private Summary computeSummary(@NonNull JavaContext context, @NonNull PsiMethod method, @NonNull UMethod uMethod) {
+        SummaryVisitor visitor = new SummaryVisitor(context, method,
+                hasClassOrSuperClass(context, method.getReturnType(), INTENT_CLASS));
+        uMethod.accept(visitor);
+        return new Summary(visitor.returnedIntent, visitor.explicitParameters);
+    }
+
+    // checks if the call passes the given argument to a parameter its callee makes explicit
+    private boolean passesToExplicitParameter(@NonNull JavaContext context, @NonNull UCallExpression call,
+                                              int argumentIndex) {
+        PsiMethod callee = UastHelper.resolve(context, call);
+        return callee != null && summary(context, callee).makesParameterExplicit(argumentIndex);
+    }
+
+    // Collects the summary of a single method. Lambdas and local classes are skipped, their
+    // returns and parameters belong to other methods.
+    private class SummaryVisitor extends AbstractUastVisitor {
+        private final JavaContext context;
+        private final PsiMethod method;
+        private final boolean returnsIntent;
+        private int returnedIntent = UNKNOWN;
+        private boolean returnSeen = false;
+        private long explicitParameters = 0;
+
+        private SummaryVisitor(@NonNull JavaContext context, @NonNull PsiMethod method, boolean returnsIntent) {
+            this.context = context;
+            this.method = method;
+            this.returnsIntent = returnsIntent;
+        }
+
+        @Override
+        public boolean visitReturnExpression(@NonNull UReturnExpression node) {
+            UExpression returned = node.getReturnExpression();
+            if (returnsIntent && returned != null) {
+                int explicitness = classify(context, returned, node);
+                // all returned intents have to agree, otherwise the result is unknown
+                returnedIntent = !returnSeen || returnedIntent == explicitness ? explicitness : UNKNOWN;
+                returnSeen = true;
+            }
+            return super.visitReturnExpression(node);
+        }
+
+        @Override
+        public boolean visitCallExpression(@NonNull UCallExpression node) {
+            if (isComponentSettingMethod(node)) {
+                markExplicit(UastHelper.parameterIndex(method, node.getReceiver()));
+            } else {
+                List<UExpression> arguments = node.getValueArguments();
+                for (int i = 0; i < arguments.size(); i++) {
+                    int parameter = UastHelper.parameterIndex(method, arguments.get(i));
+                    if (parameter >= 0 && passesToExplicitParameter(context, node, i))
+                        markExplicit(parameter);
+                }
+            }
+            return super.visitCallExpression(node);
+        }
+
+        @Override
+        public boolean visitLambdaExpression(@NonNull ULambdaExpression node) {
+            return true;
+        }
+
+        @Override
+        public boolean visitClass(@NonNull UClass node) {
+            return true;
+        }
+
+        private void markExplicit(int parameter) {
+            if (parameter >= 0 && parameter < MAX_PARAMETERS)
+                explicitParameters |= 1L << parameter;
+        }
+    }
+
+    // checks if the call makes the given intent variable explicit, either by a component setting
+    // method or by passing it to a method that makes the corresponding parameter explicit
+    private boolean makesExplicit(@NonNull JavaContext context, @NonNull UCallExpression call,
+                                  @NonNull PsiVariable intentVariable) {
+        if (isComponentSettingMethod(call)) {
+            PsiElement e = UastUtils.tryResolve(call.getReceiver());
+            // if e is not a variable we just assume that it is the same
+            // this can happen, for example, when multiple intent methods are chained
+            return !(e instanceof PsiVariable) || isSameVariable((PsiVariable) e, intentVariable);
+        }
+        List<UExpression> arguments = call.getValueArguments();
+        for (int i = 0; i < arguments.size(); i++) {
+            PsiElement e = arguments.get(i) instanceof USimpleNameReferenceExpression
+                    ? UastUtils.tryResolve(arguments.get(i)) : null;
+            if (e instanceof PsiVariable && isSameVariable((PsiVariable) e, intentVariable)
+                    && passesToExplicitParameter(context, call, i))
+                return true;
+        }
+        return false;
+    }
+
+    // variables are compared by their declaration, shadowed variables of the same name differ
+    private static boolean isSameVariable(@NonNull PsiVariable variable, @NonNull PsiVariable intentVariable) {
+        return variable.equals(intentVariable) || variable.isEquivalentTo(intentVariable);
+    }
+
+    // A visitor which tries to follow the trace of a given intent variable within a method of
+    // another file to find out if any method was called to make this intent explicit
+    private class MadeExplicitVisitor extends AbstractUastVisitor {
+        private final JavaContext context;
+        private final PsiVariable intentVariable;
+        private boolean madeExplicit = false;
+
+        private MadeExplicitVisitor(@NonNull JavaContext context, @NonNull PsiVariable intentVariable) {
+            this.context = context;
+            this.intentVariable = intentVariable;
+        }
+
+        @Override
+        public boolean visitCallExpression(@NonNull UCallExpression methodInvocation) {
+            if (madeExplicit)
+                return true;
+            madeExplicit = makesExplicit(context, methodInvocation, intentVariable);
+            return super.visitCallExpression(methodInvocation);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.checks.SecurityDetector;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_NAME;
+import static com.android.SdkConstants.ATTR_PACKAGE;
+import static com.android.SdkConstants.ATTR_PATH;
+import static com.android.SdkConstants.ATTR_PATH_PATTERN;
+import static com.android.SdkConstants.ATTR_PATH_PREFIX;
+import static com.android.SdkConstants.ATTR_PERMISSION;
+import static com.android.SdkConstants.ATTR_READ_PERMISSION;
+import static com.android.SdkConstants.ATTR_SCHEME;
+import static com.android.SdkConstants.ATTR_WRITE_PERMISSION;
+import static com.android.SdkConstants.TAG_ACTIVITY;
+import static com.android.SdkConstants.TAG_ACTIVITY_ALIAS;
+import static com.android.SdkConstants.TAG_APPLICATION;
+import static com.android.SdkConstants.TAG_DATA;
+import static com.android.SdkConstants.TAG_INTENT_FILTER;
+import static com.android.SdkConstants.TAG_PATH_PERMISSION;
+import static com.android.SdkConstants.TAG_PERMISSION;
+import static com.android.SdkConstants.TAG_PROVIDER;
+import static com.android.SdkConstants.TAG_RECEIVER;
+import static com.android.SdkConstants.TAG_SERVICE;
+import static com.android.SdkConstants.TAG_USES_PERMISSION;
+
+/**
+ * Immutable model of the parts of a manifest the manifest detectors check, shared by all of them.
+ *
+ * The model is built in a single walk over the DOM of the manifest, the first time a detector
+ * asks for it, and kept until a detector asks for the model of another document. Every kind
+ * of element is kept in flat arrays in document order together with the attributes the
+ * detectors need, so the detectors neither walk the children of elements nor query attributes
+ * again. Nested elements refer to their enclosing element by index: path-permissions and
+ * intent-filters to their component, schemes to their intent-filter. Elements and attributes
+ * are kept to report locations. Component names are also kept fully qualified, resolved
+ * against the package of the manifest.
+ *
+ * Lint visits the manifests of a project on one thread, one after the other, and every
+ * detector visits a manifest before the next one is parsed, so the model of the document
+ * currently visited is kept per thread, like the FileCache of source files. Projects analyzed
+ * in parallel do not evict each other's model. Detectors drop the model of the last manifest
+ * in afterCheckProject.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class ManifestModel {
+
+    private static final String ATTR_TASK_AFFINITY = "taskAffinity";
+    private static final String ATTR_PROTECTION_LEVEL = "protectionLevel";
+
+    // the model of the document currently visited on this thread, see get
+    private static final ThreadLocal<ManifestModel> CURRENT = new ThreadLocal<>();
+
+    private final Document document;
+    private final String packageName;
+
+    private final Element[] applications;
+    private final Attr[] applicationTaskAffinities;
+
+    private final Element[] components;
+    private final String[] componentTags;
+    private final String[] componentNames;
+    private final String[] qualifiedComponentNames;
+    private final boolean[] exported;
+    private final boolean[] permissionProtected;
+    private final Attr[] taskAffinities;
+    // path-permissions of component i are firstPathPermissions[i] until firstPathPermissions[i + 1]
+    private final int[] firstPathPermissions;
+
+    private final Element[] pathPermissions;
+    private final String[][] pathPermissionPaths;
+
+    private final Element[] intentFilters;
+    private final int[] intentFilterComponents;
+
+    private final Attr[] schemes;
+    private final int[] schemeIntentFilters;
+
+    private final Element[] permissions;
+    private final Attr[] protectionLevels;
+
+    private final Element[] usesPermissions;
+    private final Attr[] usesPermissionNames;
+
+    private ManifestModel(@NonNull Document document, @NonNull Builder builder) {
+        this.document = document;
+        packageName = builder.packageName;
+        applications = builder.applications.toArray(new Element[0]);
+        applicationTaskAffinities = builder.applicationTaskAffinities.toArray(new Attr[0]);
+        components = builder.components.toArray(new Element[0]);
+        componentTags = builder.componentTags.toArray(new String[0]);
+        componentNames = builder.componentNames.toArray(new String[0]);
+        qualifiedComponentNames = new String[components.length];
+        for (int i = 0; i < components.length; i++)
+            qualifiedComponentNames[i] = qualify(packageName, componentNames[i]);
+        exported = Arrays.copyOf(builder.exported, components.length);
+        permissionProtected = Arrays.copyOf(builder.permissionProtected, components.length);
+        taskAffinities = builder.taskAffinities.toArray(new Attr[0]);
+        pathPermissions = builder.pathPermissions.toArray(new Element[0]);
+        pathPermissionPaths = builder.pathPermissionPaths.toArray(new String[0][]);
+        intentFilters = builder.intentFilters.toArray(new Element[0]);
+        intentFilterComponents = toArray(builder.intentFilterComponents);
+        schemes = builder.schemes.toArray(new Attr[0]);
+        schemeIntentFilters = toArray(builder.schemeIntentFilters);
+        permissions = builder.permissions.toArray(new Element[0]);
+        protectionLevels = builder.protectionLevels.toArray(new Attr[0]);
+        usesPermissions = builder.usesPermissions.toArray(new Element[0]);
+        usesPermissionNames = builder.usesPermissionNames.toArray(new Attr[0]);
+
+        // path-permissions are added in document order, hence grouped by component
+        List<Integer> pathPermissionComponents = builder.pathPermissionComponents;
+        firstPathPermissions = new int[components.length + 1];
+        for (int component : pathPermissionComponents)
+            firstPathPermissions[component + 1]++;
+        for (int i = 0; i < components.length; i++)
+            firstPathPermissions[i + 1] += firstPathPermissions[i];
+    }
+
+    /**
+     * Returns the model of the given document, replacing the model of the document previously
+     * visited on this thread.
+     */
+    @NonNull
+    static ManifestModel get(@NonNull Document document) {
+        ManifestModel model = CURRENT.get();
+        if (model == null || model.document != document) {
+            model = build(document);
+            CURRENT.set(model);
+        }
+        return model;
+    }
+
+    /**
+     * Drops the model kept for this thread. Detectors using the model call this in
+     * afterCheckProject.
+     */
+    static void release() {
+        CURRENT.remove();
+    }
+
+    @NonNull
+    private static ManifestModel build(@NonNull Document document) {
+        Builder builder = new Builder();
+        Element root = document.getDocumentElement();
+        if (root != null) {
+            String packageName = root.getAttribute(ATTR_PACKAGE);
+            builder.packageName = packageName != null ? packageName : "";
+            builder.add(root, -1, -1);
+        }
+        return new ManifestModel(document, builder);
+    }
+
+    /**
+     * Returns the package of the manifest, or an empty string.
+     */
+    @NonNull
+    String getPackage() {
+        return packageName;
+    }
+
+    int getApplicationCount() {
+        return applications.length;
+    }
+
+    @NonNull
+    Element getApplication(int application) {
+        return applications[application];
+    }
+
+    @Nullable
+    Attr getApplicationTaskAffinity(int application) {
+        return applicationTaskAffinities[application];
+    }
+
+    /**
+     * Returns the number of activities, activity-aliases, services, receivers and providers.
+     */
+    int getComponentCount() {
+        return components.length;
+    }
+
+    @NonNull
+    Element getComponent(int component) {
+        return components[component];
+    }
+
+    @NonNull
+    String getComponentTag(int component) {
+        return componentTags[component];
+    }
+
+    /**
+     * Returns the value of android:name of the given component, or an empty string.
+     */
+    @NonNull
+    String getComponentName(int component) {
+        return componentNames[component];
+    }
+
+    /**
+     * Returns the fully qualified class name of the given component, with nested classes
+     * separated by dots, or an empty string if it has no name.
+     */
+    @NonNull
+    String getQualifiedComponentName(int component) {
+        return qualifiedComponentNames[component];
+    }
+
+    boolean isExported(int component) {
+        return exported[component];
+    }
+
+    /**
+     * Checks if the given component sets a non-empty permission, readPermission or
+     * writePermission.
+     */
+    boolean hasPermission(int component) {
+        return permissionProtected[component];
+    }
+
+    @Nullable
+    Attr getTaskAffinity(int component) {
+        return taskAffinities[component];
+    }
+
+    /**
+     * Returns the index of the first path-permission of the given component. The
+     * path-permissions of the component end at the first one of the next component.
+     */
+    int getFirstPathPermission(int component) {
+        return firstPathPermissions[component];
+    }
+
+    int getEndPathPermission(int component) {
+        return firstPathPermissions[component + 1];
+    }
+
+    int getPathPermissionCount() {
+        return pathPermissions.length;
+    }
+
+    @NonNull
+    Element getPathPermission(int pathPermission) {
+        return pathPermissions[pathPermission];
+    }
+
+    /**
+     * Returns the values of android:path, android:pathPattern and android:pathPrefix of the
+     * given path-permission, empty if not set.
+     */
+    @NonNull
+    String[] getPaths(int pathPermission) {
+        return pathPermissionPaths[pathPermission].clone();
+    }
+
+    boolean hasPathContaining(int pathPermission, @NonNull String part) {
+        for (String path : pathPermissionPaths[pathPermission]) {
+            if (path.contains(part))
+                return true;
+        }
+        return false;
+    }
+
+    int getIntentFilterCount() {
+        return intentFilters.length;
+    }
+
+    @NonNull
+    Element getIntentFilter(int intentFilter) {
+        return intentFilters[intentFilter];
+    }
+
+    /**
+     * Returns the component of the given intent-filter, or -1 if it is not part of a component.
+     */
+    int getIntentFilterComponent(int intentFilter) {
+        return intentFilterComponents[intentFilter];
+    }
+
+    /**
+     * Returns the number of android:scheme attributes of data elements in intent-filters.
+     */
+    int getSchemeCount() {
+        return schemes.length;
+    }
+
+    @NonNull
+    Attr getScheme(int scheme) {
+        return schemes[scheme];
+    }
+
+    int getSchemeIntentFilter(int scheme) {
+        return schemeIntentFilters[scheme];
+    }
+
+    int getPermissionCount() {
+        return permissions.length;
+    }
+
+    @NonNull
+    Element getPermission(int permission) {
+        return permissions[permission];
+    }
+
+    @Nullable
+    Attr getProtectionLevel(int permission) {
+        return protectionLevels[permission];
+    }
+
+    int getUsesPermissionCount() {
+        return usesPermissions.length;
+    }
+
+    @NonNull
+    Element getUsesPermission(int usesPermission) {
+        return usesPermissions[usesPermission];
+    }
+
+    @Nullable
+    Attr getUsesPermissionName(int usesPermission) {
+        return usesPermissionNames[usesPermission];
+    }
+
+    @NonNull
+    private static int[] toArray(@NonNull List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = values.get(i);
+        return array;
+    }
+
+    // resolves ".Name" and "Name" against the package like the package manager does
+    @NonNull
+    private static String qualify(@NonNull String packageName, @NonNull String name) {
+        if (name.isEmpty())
+            return name;
+        if (name.charAt(0) == '.')
+            name = packageName + name;
+        else if (name.indexOf('.') < 0 && !packageName.isEmpty())
+            name = packageName + '.' + name;
+        return name.replace('$', '.');
+    }
+
+    // some DOM implementations return null instead of an empty string for missing attributes
+    @NonNull
+    private static String value(@NonNull Element element, @NonNull String attribute) {
+        String value = element.getAttributeNS(ANDROID_URI, attribute);
+        return value != null ? value : "";
+    }
+
+    private static boolean isComponent(@NonNull String tag) {
+        return TAG_ACTIVITY.equals(tag) || TAG_ACTIVITY_ALIAS.equals(tag) || TAG_SERVICE.equals(tag)
+                || TAG_RECEIVER.equals(tag) || TAG_PROVIDER.equals(tag);
+    }
+
+    // collects the elements while walking the DOM once
+    private static final class Builder {
+        private String packageName = "";
+        private final List<Element> applications = new ArrayList<>();
+        private final List<Attr> applicationTaskAffinities = new ArrayList<>();
+        private final List<Element> components = new ArrayList<>();
+        private final List<String> componentTags = new ArrayList<>();
+        private final List<String> componentNames = new ArrayList<>();
+        private boolean[] exported = new boolean[16];
+        private boolean[] permissionProtected = new boolean[16];
+        private final List<Attr> taskAffinities = new ArrayList<>();
+        private final List<Element> pathPermissions = new ArrayList<>();
+        private final List<String[]> pathPermissionPaths = new ArrayList<>();
+        private final List<Integer> pathPermissionComponents = new ArrayList<>();
+        private final List<Element> intentFilters = new ArrayList<>();
+        private final List<Integer> intentFilterComponents = new ArrayList<>();
+        private final List<Attr> schemes = new ArrayList<>();
+        private final List<Integer> schemeIntentFilters = new ArrayList<>();
+        private final List<Element> permissions = new ArrayList<>();
+        private final List<Attr> protectionLevels = new ArrayList<>();
+        private final List<Element> usesPermissions = new ArrayList<>();
+        private final List<Attr> usesPermissionNames = new ArrayList<>();
+
+        private void add(@NonNull Element element, int component, int intentFilter) {
+            String tag = element.getTagName();
+            if (TAG_APPLICATION.equals(tag)) {
+                applications.add(element);
+                applicationTaskAffinities.add(element.getAttributeNodeNS(ANDROID_URI, ATTR_TASK_AFFINITY));
+            } else if (isComponent(tag)) {
+                component = addComponent(element, tag);
+            } else if (TAG_PATH_PERMISSION.equals(tag) && component >= 0
+                    && element.getParentNode() == components.get(component)) {
+                // only direct children of the component take effect
+                pathPermissions.add(element);
+                pathPermissionPaths.add(new String[]{value(element, ATTR_PATH),
+                        value(element, ATTR_PATH_PATTERN),
+                        value(element, ATTR_PATH_PREFIX)});
+                pathPermissionComponents.add(component);
+            } else if (TAG_INTENT_FILTER.equals(tag)) {
+                intentFilter = intentFilters.size();
+                intentFilters.add(element);
+                intentFilterComponents.add(component);
+            } else if (TAG_DATA.equals(tag) && intentFilter >= 0) {
+                Attr scheme = element.getAttributeNodeNS(ANDROID_URI, ATTR_SCHEME);
+                if (scheme != null) {
+                    schemes.add(scheme);
+                    schemeIntentFilters.add(intentFilter);
+                }
+            } else if (TAG_PERMISSION.equals(tag)) {
+                permissions.add(element);
+                protectionLevels.add(element.getAttributeNodeNS(ANDROID_URI, ATTR_PROTECTION_LEVEL));
+            } else if (TAG_USES_PERMISSION.equals(tag)) {
+                usesPermissions.add(element);
+                usesPermissionNames.add(element.getAttributeNodeNS(ANDROID_URI, ATTR_NAME));
+            }
+
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE)
+                    add((Element) child, component, intentFilter);
+            }
+        }
+
+        private int addComponent(@NonNull Element element, @NonNull String tag) {
+            int component = components.size();
+            if (component == exported.length) {
+                exported = Arrays.copyOf(exported, component * 2);
+                permissionProtected = Arrays.copyOf(permissionProtected, component * 2);
+            }
+            components.add(element);
+            componentTags.add(tag);
+            componentNames.add(value(element, ATTR_NAME));
+            exported[component] = SecurityDetector.getExported(element);
+            permissionProtected[component] = !value(element, ATTR_PERMISSION).isEmpty()
+                    || !value(element, ATTR_READ_PERMISSION).isEmpty()
+                    || !value(element, ATTR_WRITE_PERMISSION).isEmpty();
+            taskAffinities.add(element.getAttributeNodeNS(ANDROID_URI, ATTR_TASK_AFFINITY));
+            return component;
+        }
+    }
+}
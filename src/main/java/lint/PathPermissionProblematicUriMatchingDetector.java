@@ -8,13 +8,13 @@ package lint;
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.checks.SecurityDetector;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
 import com.android.tools.lint.detector.api.JavaContext;
-import com.android.tools.lint.detector.api.LintUtils;
+import com.android.tools.lint.detector.api.Location;
 import com.android.tools.lint.detector.api.Scope;
 import com.android.tools.lint.detector.api.Severity;
 import com.android.tools.lint.detector.api.XmlContext;
@@ -23,18 +23,16 @@ import com.intellij.psi.PsiMethod;
 
 import org.jetbrains.uast.UCallExpression;
 import org.jetbrains.uast.UastUtils;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static com.android.SdkConstants.ANDROID_URI;
-import static com.android.SdkConstants.ATTR_NAME;
-import static com.android.SdkConstants.TAG_PATH_PERMISSION;
 import static com.android.SdkConstants.TAG_PROVIDER;
 
 /**
@@ -51,11 +49,9 @@ public class PathPermissionProblematicUriMatchingDetector extends Detector imple
     @VisibleForTesting
     public static final String MESSAGE = "SM08: Insecure Path Permission | Avoid using path permission together with UriMatcher in a content provider";
 
-    private XmlContext manifestContext= null;
-
-    // keeps track of all provider classes mentioned in the manifest that contain a path-permission
-    // element
-    private Map<String, Element> providerClassNameToXmlElement = new HashMap<>();
+    // providers of the project, see ProjectState
+    private static final ProjectState.Key<ProviderMatches> PROVIDER_MATCHES =
+            new ProjectState.Key<>("PathPermissionProblematicUriMatching", ProviderMatches::new);
 
     public static final Issue ISSUE = Issue.create(
             "InsecurePathPermission",
@@ -79,12 +75,6 @@ public class PathPermissionProblematicUriMatchingDetector extends Detector imple
                     PathPermissionProblematicUriMatchingDetector.class,
                     EnumSet.of(Scope.MANIFEST, Scope.JAVA_FILE)));
 
-    @Override
-    public Collection<String> getApplicableElements() {
-        return Collections.singleton(TAG_PROVIDER);
-    }
-
-
     @Override
     @Nullable
     public List<String> getApplicableConstructorTypes() {
@@ -97,31 +87,52 @@ public class PathPermissionProblematicUriMatchingDetector extends Detector imple
         PsiClass containingClass = UastUtils.getContainingClass(node);
         if(containingClass == null)
             return;
-        String unqualifiedProviderName = containingClass.getName();
-        Element providerXmlElement = providerClassNameToXmlElement.get(unqualifiedProviderName);
-        if(providerXmlElement == null)
+        String providerName = containingClass.getQualifiedName();
+        if(providerName == null)
+            return;
+        ProviderMatches matches = ProjectState.get(context, PROVIDER_MATCHES);
+        Location providerLocation = matches.providerClassNameToLocation.get(providerName);
+        if(providerLocation == null)
             return;
-        if(manifestContext != null)
-            manifestContext.report(ISSUE, providerXmlElement, manifestContext.getLocation(providerXmlElement), MESSAGE);
+        if(ProjectState.reserve(context, PROVIDER_MATCHES, 1))
+            matches.reportedLocations.add(providerLocation);
     }
 
     @Override
-    public void visitElement(@NonNull XmlContext context, @NonNull Element element) {
+    public void visitDocument(@NonNull XmlContext context, @NonNull Document document) {
+
+        ManifestModel manifest = ManifestModel.get(document);
+        ProviderMatches matches = ProjectState.get(context, PROVIDER_MATCHES);
+        for (int provider = 0; provider < manifest.getComponentCount(); provider++) {
+            if (!TAG_PROVIDER.equals(manifest.getComponentTag(provider)) || !manifest.isExported(provider)
+                    || manifest.getFirstPathPermission(provider) == manifest.getEndPathPermission(provider))
+                continue;
+            // only the location is kept, the DOM is not used after the manifest was checked
+            Element providerXmlElement = manifest.getComponent(provider);
+            if(context.getDriver().isSuppressed(context, ISSUE, providerXmlElement) || !ProjectState.reserve(context, PROVIDER_MATCHES, 1))
+                continue;
+            matches.providerClassNameToLocation.putIfAbsent(manifest.getQualifiedComponentName(provider),
+                    Fingerprint.attach(ISSUE, providerXmlElement, context.getLocation(providerXmlElement)));
+        }
 
-        if (!SecurityDetector.getExported(element))
-            return;
-        String providerName = element.getAttributeNS(ANDROID_URI, ATTR_NAME);
-        manifestContext = context;
-        for (Element child : LintUtils.getChildren(element)) {
-            if (TAG_PATH_PERMISSION.equals(child.getNodeName())) {
-                String providerClassNameParts[] = providerName.split("\\.");
-                String unqualifiedProviderClassName = providerClassNameParts[providerClassNameParts.length - 1];
-                providerClassNameToXmlElement.put(unqualifiedProviderClassName, element);
-                return;
-            }
+    }
 
-        }
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        ManifestModel.release();
+        ProviderMatches matches = ProjectState.release(context, PROVIDER_MATCHES);
+        if(matches == null)
+            return;
+        for(Location providerLocation : matches.reportedLocations)
+            context.report(ISSUE, providerLocation, MESSAGE);
+    }
 
+    private static final class ProviderMatches {
+        // keeps track of all provider classes mentioned in the manifest that contain a path-permission
+        // element, by their fully qualified class name
+        private final Map<String, Location> providerClassNameToLocation = new ConcurrentHashMap<>();
+        // providers constructing a UriMatcher, once per constructor call
+        private final List<Location> reportedLocations = Collections.synchronizedList(new ArrayList<>());
     }
 
 }
@@ -7,31 +7,42 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
 import com.android.tools.lint.detector.api.JavaContext;
+import com.android.tools.lint.detector.api.Location;
 import com.android.tools.lint.detector.api.Scope;
 import com.android.tools.lint.detector.api.Severity;
 import com.intellij.psi.PsiMethod;
 
 import org.jetbrains.uast.UCallExpression;
 import org.jetbrains.uast.UExpression;
+import org.jetbrains.uast.UMethod;
 import org.jetbrains.uast.UQualifiedReferenceExpression;
+import org.jetbrains.uast.UastUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static lint.UastHelper.methodHasName;
 import static lint.UastHelper.getLastAssignedExpression;
+import static lint.UastHelper.isMemberInSubClassOf;
 
 /**
  * Checks the use of Context.checkPermission or Context.enforcePermission where PID and UID
  * are retrieved via Binder.getCallingPid and Binder.getCallingUid. 
  * Example:
  * checkPermission("some.permission",Binder.getCallingPid(),Binder.getCallingUid())
+ * PID and UID passed in as parameters are followed to the callers of the surrounding method
+ * through the project's CallGraph. The graph is only built if there are such checks: the
+ * detector then requests a second pass over the Java files, which indexes them.
  * 
  * @author Patrick Frischknecht
  * 
@@ -72,30 +83,84 @@ public class PermissionCheckMisuseDetector extends Detector implements Detector.
             .addMoreInfo("https://bitbucket.org/secure-it-i/android-app-vulnerability-benchmarks/src/978fbc17a087d77b38474bfbe01a00b5e2217ce6/System/CheckPermission-PrivilegeEscalation-Lean/?at=master");
     private static final String GET_CALLING_PID = "getCallingPid";
     private static final String GET_CALLING_UID = "getCallingUid";
+    // value of a PID or UID retrieved from the Binder, see getCallingIdValue
+    private static final int BINDER_VALUE = Integer.MAX_VALUE;
 
+    // A permission check whose PID and UID are parameters of the surrounding method, or
+    // partially retrieved from the Binder. Values are BINDER_VALUE or parameter descriptors
+    // of the CallGraph.
+    private static final class DeferredCheck {
+        private final String method;
+        private final int pid;
+        private final int uid;
+        private final Location location;
+
+        private DeferredCheck(@NonNull String method, int pid, int uid, @NonNull Location location) {
+            this.method = method;
+            this.pid = pid;
+            this.uid = uid;
+            this.location = location;
+        }
+    }
+
+    // deferred checks of the project, see ProjectState
+    private static final ProjectState.Key<List<DeferredCheck>> DEFERRED_CHECKS =
+            new ProjectState.Key<>("PermissionCheckMisuse", () -> Collections.synchronizedList(new ArrayList<>()));
 
     @Override
     public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call,
                             @NonNull PsiMethod method) {
-        JavaEvaluator evaluator = context.getEvaluator();
-        if(!evaluator.isMemberInSubClassOf(method, CONTEXT_CLASS, false))
+        // the second pass only builds the call graph
+        if(context.getDriver().getPhase() > 1 || !isMemberInSubClassOf(context, method, CONTEXT_CLASS))
             return;
         String methodName = method.getName();
         List<UExpression> argumentList = call.getValueArguments();
         if ("checkPermission".equals(methodName) || "enforcePermission".equals(methodName) ||
                 ("checkUriPermission".equals(methodName) && argumentList.size() == 4) ||
                 ("enforceUriPermission".equals(methodName) && argumentList.size() == 5)) {
-            if(isBinderGetCallingPid(argumentList.get(1), call, context) && isBinderGetCallingUid(argumentList.get(2), call, context))
-                context.report(ISSUE, call, context.getLocation(call), MESSAGE);
+            checkCallingIds(argumentList.get(1), argumentList.get(2), call, context);
         }
         if (("enforceUriPermission".equals(methodName) && argumentList.size() == 7) ||
                 ("checkUriPermission".equals(methodName) && argumentList.size() == 6)) {
-            if(isBinderGetCallingPid(argumentList.get(3), call, context) && isBinderGetCallingUid(argumentList.get(4), call, context))
-                context.report(ISSUE, call, context.getLocation(call), MESSAGE);
+            checkCallingIds(argumentList.get(3), argumentList.get(4), call, context);
         }
 
     }
 
+    // reports the permission check if the PID and UID are retrieved from the Binder. If they are
+    // parameters of the surrounding method, the check is deferred until the callers are known
+    private void checkCallingIds(@NonNull UExpression pid, @NonNull UExpression uid,
+                                 @NonNull UCallExpression permissionCheckCall, @NonNull JavaContext context) {
+        int pidValue = getCallingIdValue(pid, permissionCheckCall, GET_CALLING_PID, context);
+        int uidValue = getCallingIdValue(uid, permissionCheckCall, GET_CALLING_UID, context);
+        if (pidValue == BINDER_VALUE && uidValue == BINDER_VALUE) {
+            context.report(ISSUE, permissionCheckCall, Fingerprint.attach(context, ISSUE, permissionCheckCall, context.getLocation(permissionCheckCall)), MESSAGE);
+            return;
+        }
+        if (pidValue == CallGraph.OTHER_ARGUMENT || uidValue == CallGraph.OTHER_ARGUMENT)
+            return;
+        UMethod containingMethod = UastUtils.getContainingUMethod(permissionCheckCall);
+        String signature = containingMethod != null ? CallGraph.signature(containingMethod) : null;
+        // the check is reported after the project, where lint no longer sees its annotations
+        if (signature == null || context.getDriver().isSuppressed(context, ISSUE, permissionCheckCall)
+                || !ProjectState.reserve(context, DEFERRED_CHECKS, 1))
+            return;
+        ProjectState.get(context, DEFERRED_CHECKS).add(new DeferredCheck(signature, pidValue, uidValue,
+                Fingerprint.attach(context, ISSUE, permissionCheckCall, context.getLocation(permissionCheckCall))));
+    }
+
+    // returns BINDER_VALUE if the argument is retrieved by the given Binder method, the
+    // parameter of the surrounding method it refers to or OTHER_ARGUMENT
+    private int getCallingIdValue(@NonNull UExpression argument, @NonNull UCallExpression permissionCheckCall,
+                                  @NonNull String methodName, @NonNull JavaContext context) {
+        if (isBinderMethod(argument, permissionCheckCall, methodName, context))
+            return BINDER_VALUE;
+        UMethod containingMethod = UastUtils.getContainingUMethod(permissionCheckCall);
+        if (containingMethod == null || getLastAssignedExpression(argument, permissionCheckCall) != null)
+            return CallGraph.OTHER_ARGUMENT;
+        int parameter = UastHelper.parameterIndex(containingMethod, argument);
+        return parameter >= 0 ? CallGraph.parameter(parameter) : CallGraph.OTHER_ARGUMENT;
+    }
 
     private boolean isBinderMethod(@NonNull UExpression argument, @NonNull UCallExpression permissionCheckCall,
                                    @NonNull String methodName, @NonNull JavaContext context){
@@ -112,25 +177,78 @@ public class PermissionCheckMisuseDetector extends Detector implements Detector.
             UExpression selectorExpression = referenceExpression.getSelector();
             if(selectorExpression instanceof UCallExpression) {
                 UCallExpression binderCall = (UCallExpression) selectorExpression;
-                JavaEvaluator evaluator = context.getEvaluator();
-                PsiMethod resolvedBinderCall = binderCall.resolve();
+                PsiMethod resolvedBinderCall = UastHelper.resolve(context, binderCall);
                 if (resolvedBinderCall != null &&
-                    evaluator.isMemberInSubClassOf(resolvedBinderCall, BINDER_CLASS, false) && methodHasName(binderCall, methodName))
+                    isMemberInSubClassOf(context, resolvedBinderCall, BINDER_CLASS) && methodHasName(binderCall, methodName))
                     return true;
             }
         }
         return false;
     }
 
-    private boolean isBinderGetCallingUid(@NonNull UExpression argument, @NonNull UCallExpression permissionCheckCall,
-                                          @NonNull JavaContext context){
-        return isBinderMethod(argument, permissionCheckCall, GET_CALLING_UID, context);
+    // checks if any caller of the given method passes the results of Binder.getCallingPid and
+    // Binder.getCallingUid as the given PID and UID, either directly or through its own parameters
+    private boolean receivesBinderValues(@NonNull CallGraph callGraph, int method, int pid, int uid,
+                                         int getCallingPid, int getCallingUid, @NonNull Set<Integer> visited) {
+        if (!visited.add(method))
+            return false;
+        for (int callSite : callGraph.callSitesTo(method)) {
+            int callerPid = getPassedValue(callGraph, callSite, pid, getCallingPid);
+            int callerUid = getPassedValue(callGraph, callSite, uid, getCallingUid);
+            if (callerPid == CallGraph.OTHER_ARGUMENT || callerUid == CallGraph.OTHER_ARGUMENT)
+                continue;
+            if (callerPid == BINDER_VALUE && callerUid == BINDER_VALUE)
+                return true;
+            if (receivesBinderValues(callGraph, callGraph.getCaller(callSite), callerPid, callerUid,
+                    getCallingPid, getCallingUid, visited))
+                return true;
+        }
+        return false;
+    }
+
+    // returns what the call site passes for the given value of the called method
+    private static int getPassedValue(@NonNull CallGraph callGraph, int callSite, int value, int binderMethod) {
+        if (value == BINDER_VALUE)
+            return BINDER_VALUE;
+        int argument = callGraph.getArgument(callSite, CallGraph.parameterIndex(value));
+        if (binderMethod >= 0 && argument == binderMethod)
+            return BINDER_VALUE;
+        return CallGraph.isParameter(argument) ? argument : CallGraph.OTHER_ARGUMENT;
     }
 
+    @Override
+    public void afterCheckFile(@NonNull Context context) {
+        // the callers of a deferred check may be in any file
+        if (context instanceof JavaContext && context.getDriver().getPhase() > 1)
+            CallGraph.get(context).index((JavaContext) context);
+    }
 
-    private boolean isBinderGetCallingPid(@NonNull UExpression argument, @NonNull UCallExpression permissionCheckCall,
-                                          @NonNull JavaContext context){
-        return isBinderMethod(argument, permissionCheckCall, GET_CALLING_PID, context);
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
+        if (context.getDriver().getPhase() == 1) {
+            List<DeferredCheck> deferredChecks = ProjectState.get(context, DEFERRED_CHECKS);
+            if (!deferredChecks.isEmpty())
+                context.getDriver().requestRepeat(this, Scope.JAVA_FILE_SCOPE);
+            else
+                ProjectState.release(context, DEFERRED_CHECKS);
+            return;
+        }
+        List<DeferredCheck> deferredChecks = ProjectState.release(context, DEFERRED_CHECKS);
+        if (deferredChecks == null)
+            return;
+        CallGraph callGraph = CallGraph.get(context);
+        int getCallingPid = callGraph.methodId(BINDER_CLASS + '#' + GET_CALLING_PID + "()");
+        int getCallingUid = callGraph.methodId(BINDER_CLASS + '#' + GET_CALLING_UID + "()");
+        synchronized (deferredChecks) {
+            for (DeferredCheck check : deferredChecks) {
+                int method = callGraph.methodId(check.method);
+                if (method >= 0 && receivesBinderValues(callGraph, method, check.pid, check.uid,
+                        getCallingPid, getCallingUid, new HashSet<>()))
+                    context.report(ISSUE, check.location, MESSAGE);
+            }
+        }
+        CallGraph.release(context);
     }
 
     @Override
@@ -0,0 +1,154 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+import com.android.tools.lint.client.api.LintClient;
+import com.android.tools.lint.detector.api.Context;
+import com.android.tools.lint.detector.api.Severity;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * State that detectors collect while checking the files of a project and evaluate in
+ * afterCheckProject, kept apart per project.
+ *
+ * Each kind of state is a Key with a factory, and a detector keeps its state in the slot of its
+ * key instead of in instance fields, so projects checked concurrently or one after another in
+ * the same process never see each other's state. The state belongs to the main project of the
+ * context: lint only calls afterCheckProject for the main project, and the files of its library
+ * modules are checked on its behalf, so a UriMatcher of a library module sees the providers of
+ * the manifest of the main project. The detector releases its slot at the end of
+ * afterCheckProject, and the container of a project is dropped once all its slots are released.
+ *
+ * As a memory ceiling, every slot has a budget of LIMIT entries, configurable through the
+ * system property LIMIT_PROPERTY. Detectors reserve an entry of their key before they record
+ * something and stop recording once the budget is used up, without affecting the other keys.
+ * The number of dropped entries is logged when the slot is released. Values must be safe to use
+ * from several threads.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class ProjectState {
+
+    static final String LIMIT_PROPERTY = "lint.projectStateLimit";
+    static final int LIMIT = Integer.getInteger(LIMIT_PROPERTY, 100000);
+
+    // projects are weak keys, so state which is never released does not outlive its project
+    private static final Map<Object, ProjectState> STATES = new WeakHashMap<>();
+
+    private final Map<Key<?>, Slot> slots = new HashMap<>();
+
+    static final class Key<T> {
+        private final String name;
+        private final Supplier<T> factory;
+
+        Key(@NonNull String name, @NonNull Supplier<T> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // the value of a key and the entries reserved and dropped for it
+    private static final class Slot {
+        private Object value;
+        private int entries;
+        private int dropped;
+    }
+
+    private ProjectState() {
+    }
+
+    /**
+     * Returns the value of the given key for the main project of the given context, creating it
+     * on first use.
+     */
+    @NonNull
+    static <T> T get(@NonNull Context context, @NonNull Key<T> key) {
+        return get(context.getMainProject(), key);
+    }
+
+    /**
+     * Reserves the given number of entries of the budget of the given key for the main project
+     * of the given context. Returns false, without reserving anything, if the budget does not
+     * suffice.
+     */
+    static boolean reserve(@NonNull Context context, @NonNull Key<?> key, int count) {
+        return reserve(context.getMainProject(), key, count);
+    }
+
+    /**
+     * Removes the value of the given key for the main project of the given context and returns
+     * it, or null if there is none, and logs the entries dropped because the budget of the key
+     * was used up.
+     */
+    @Nullable
+    static <T> T release(@NonNull Context context, @NonNull Key<T> key) {
+        return release(context.getMainProject(), key, context.getClient());
+    }
+
+    @NonNull
+    static <T> T get(@NonNull Object project, @NonNull Key<T> key) {
+        synchronized (STATES) {
+            Slot slot = slot(project, key);
+            if (slot.value == null)
+                slot.value = key.factory.get();
+            @SuppressWarnings("unchecked")
+            T value = (T) slot.value;
+            return value;
+        }
+    }
+
+    static boolean reserve(@NonNull Object project, @NonNull Key<?> key, int count) {
+        synchronized (STATES) {
+            Slot slot = slot(project, key);
+            if (slot.entries + count > LIMIT) {
+                slot.dropped += count;
+                return false;
+            }
+            slot.entries += count;
+            return true;
+        }
+    }
+
+    @Nullable
+    static <T> T release(@NonNull Object project, @NonNull Key<T> key, @Nullable LintClient client) {
+        Slot slot;
+        synchronized (STATES) {
+            ProjectState state = STATES.get(project);
+            if (state == null)
+                return null;
+            slot = state.slots.remove(key);
+            if (state.slots.isEmpty())
+                STATES.remove(project);
+        }
+        if (slot == null)
+            return null;
+        if (slot.dropped > 0 && client != null)
+            client.log(Severity.WARNING, null, "%1$s dropped %2$d entries beyond its limit of %3$d, see %4$s",
+                    key, slot.dropped, LIMIT, LIMIT_PROPERTY);
+        @SuppressWarnings("unchecked")
+        T value = (T) slot.value;
+        return value;
+    }
+
+    @NonNull
+    private static Slot slot(@NonNull Object project, @NonNull Key<?> key) {
+        ProjectState state = STATES.computeIfAbsent(project, p -> new ProjectState());
+        return state.slots.computeIfAbsent(key, k -> new Slot());
+    }
+}
@@ -0,0 +1,226 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive matcher for a fixed set of URI schemes, e.g. the schemes registered at IANA.
+ *
+ * The schemes are compiled into a minimal deterministic automaton: a trie whose equivalent
+ * states (same acceptance and same successors) are merged, stored as one int transition table
+ * over the 39 characters allowed in schemes. Matching walks the table once per character and
+ * does not allocate. The registered schemes are read from the bundled, versioned resource
+ * RESOURCE, or from the file given by the system property FILE_PROPERTY, so they can be
+ * updated without recompiling.
+ *
+ * University of Bern
+ * Software Composition Group
+ *
+ */
+final class SchemeMatcher {
+
+    static final String RESOURCE = "/lint/iana-uri-schemes.txt";
+    static final String FILE_PROPERTY = "lint.uriSchemes";
+
+    private static final String VERSION_PREFIX = "# version:";
+    // a-z, 0-9, '+', '-' and '.'
+    private static final int ALPHABET = 39;
+    private static final int NONE = -1;
+
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final int start;
+    private final int size;
+    private final String version;
+
+    private SchemeMatcher(@NonNull int[] transitions, @NonNull boolean[] accepting, int start, int size,
+                          @NonNull String version) {
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.start = start;
+        this.size = size;
+        this.version = version;
+    }
+
+    /**
+     * Loads the registered schemes from the file given by FILE_PROPERTY, or from the bundled
+     * resource if the property is not set.
+     */
+    @NonNull
+    static SchemeMatcher load() {
+        String file = System.getProperty(FILE_PROPERTY);
+        try {
+            if (file != null) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                    return read(reader);
+                }
+            }
+            InputStream stream = SchemeMatcher.class.getResourceAsStream(RESOURCE);
+            if (stream == null)
+                throw new IllegalStateException("Missing resource " + RESOURCE);
+            try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+                return read(reader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the URI schemes from " + (file != null ? file : RESOURCE), e);
+        }
+    }
+
+    /**
+     * Reads one scheme per line. Empty lines and lines starting with # are skipped, except for
+     * the line "# version: <version>" naming the version of the list.
+     */
+    @NonNull
+    static SchemeMatcher read(@NonNull Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        List<String> schemes = new ArrayList<>();
+        String version = "";
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith(VERSION_PREFIX))
+                version = line.substring(VERSION_PREFIX.length()).trim();
+            else if (!line.isEmpty() && !line.startsWith("#"))
+                schemes.add(line);
+        }
+        return compile(schemes, version);
+    }
+
+    @NonNull
+    static SchemeMatcher compile(@NonNull Collection<String> schemes, @NonNull String version) {
+        // trie of the schemes, state 0 is the root
+        List<int[]> children = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        children.add(newState());
+        ends.add(false);
+        for (String scheme : schemes) {
+            int state = 0;
+            for (int i = 0; i < scheme.length(); i++) {
+                int symbol = symbol(scheme.charAt(i));
+                if (symbol == NONE)
+                    throw new IllegalArgumentException("Invalid URI scheme " + scheme);
+                if (children.get(state)[symbol] == NONE) {
+                    children.get(state)[symbol] = children.size();
+                    children.add(newState());
+                    ends.add(false);
+                }
+                state = children.get(state)[symbol];
+            }
+            ends.set(state, true);
+        }
+        Minimizer minimizer = new Minimizer(children, ends);
+        int start = minimizer.merge(0);
+        return new SchemeMatcher(Arrays.copyOf(minimizer.transitions, minimizer.states * ALPHABET),
+                Arrays.copyOf(minimizer.accepting, minimizer.states), start, schemes.size(), version);
+    }
+
+    /**
+     * Checks if the given scheme is one of the schemes of this matcher, ignoring case.
+     */
+    boolean matches(@Nullable CharSequence scheme) {
+        if (scheme == null)
+            return false;
+        int state = start;
+        for (int i = 0; i < scheme.length(); i++) {
+            int symbol = symbol(scheme.charAt(i));
+            if (symbol == NONE)
+                return false;
+            state = transitions[state * ALPHABET + symbol];
+            if (state == NONE)
+                return false;
+        }
+        return accepting[state];
+    }
+
+    @NonNull
+    String getVersion() {
+        return version;
+    }
+
+    int getSchemeCount() {
+        return size;
+    }
+
+    int getStateCount() {
+        return accepting.length;
+    }
+
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z')
+            return c - 'a';
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A';
+        if (c >= '0' && c <= '9')
+            return 26 + c - '0';
+        switch (c) {
+            case '+': return 36;
+            case '-': return 37;
+            case '.': return 38;
+            default: return NONE;
+        }
+    }
+
+    @NonNull
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, NONE);
+        return state;
+    }
+
+    // Merges the equivalent states of the trie bottom-up. A state is registered after all its
+    // successors, so two states are equivalent if their acceptance and merged successors are.
+    private static final class Minimizer {
+        private final List<int[]> children;
+        private final List<Boolean> ends;
+        private final Map<String, Integer> registry = new HashMap<>();
+        private int[] transitions = new int[64 * ALPHABET];
+        private boolean[] accepting = new boolean[64];
+        private int states;
+
+        private Minimizer(@NonNull List<int[]> children, @NonNull List<Boolean> ends) {
+            this.children = children;
+            this.ends = ends;
+        }
+
+        private int merge(int state) {
+            int[] successors = new int[ALPHABET];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = children.get(state)[symbol];
+                successors[symbol] = child == NONE ? NONE : merge(child);
+            }
+            String signature = ends.get(state) + Arrays.toString(successors);
+            Integer merged = registry.get(signature);
+            if (merged != null)
+                return merged;
+            if (states == accepting.length) {
+                transitions = Arrays.copyOf(transitions, transitions.length * 2);
+                accepting = Arrays.copyOf(accepting, accepting.length * 2);
+            }
+            System.arraycopy(successors, 0, transitions, states * ALPHABET, ALPHABET);
+            accepting[states] = ends.get(state);
+            registry.put(signature, states);
+            return states++;
+        }
+    }
+}
@@ -7,8 +7,8 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -22,6 +22,8 @@ import org.jetbrains.uast.UCallExpression;
 import java.util.Arrays;
 import java.util.List;
 
+import static lint.UastHelper.isMemberInSubClassOf;
+
 /**
  * Detector for sticky broadcasts. Searches for sticky broadcasts with the Context class:
  * - removeStickyBroadcast (Intent intent)
@@ -69,13 +71,17 @@ public class StickyBroadcastDetector extends Detector implements Detector.UastSc
     @Override
     public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call,
                             @NonNull PsiMethod method) {
-        JavaEvaluator evaluator = context.getEvaluator();
-        if(!evaluator.isMemberInSubClassOf(method, CONTEXT_CLASS, false))
+        if(!isMemberInSubClassOf(context, method, CONTEXT_CLASS))
             return;
 
         // Because we set getApplicableMethodNames to all sticky broadcast methods we know
         // by now that one of them was used
-        context.report(ISSUE, call, context.getLocation(call), STICKY_BROADCAST_USED);
+        context.report(ISSUE, call, Fingerprint.attach(context, ISSUE, call, context.getLocation(call)), STICKY_BROADCAST_USED);
+    }
+
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
     }
 
     @Override
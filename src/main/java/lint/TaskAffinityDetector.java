@@ -8,6 +8,7 @@ package lint;
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -16,16 +17,10 @@ import com.android.tools.lint.detector.api.Severity;
 import com.android.tools.lint.detector.api.XmlContext;
 
 import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import java.util.Arrays;
-import java.util.Collection;
-
-import javax.annotation.Nullable;
-
-import static com.android.SdkConstants.NS_RESOURCES;
 import static com.android.SdkConstants.TAG_ACTIVITY;
-import static com.android.SdkConstants.TAG_APPLICATION;
 
 /**
  * This detector covers taskAffinity issues:
@@ -42,7 +37,6 @@ import static com.android.SdkConstants.TAG_APPLICATION;
  */
 public class TaskAffinityDetector extends Detector implements Detector.XmlScanner {
 
-    private static final String ATTR_TASK_AFFINITY = "taskAffinity";
     @VisibleForTesting
     public static final String ACTIVITY_TASK_AFFINITY_SET_MESSAGE = "SM12: Common Task Affinity | Do not set taskAffinity";
 
@@ -91,38 +85,25 @@ public class TaskAffinityDetector extends Detector implements Detector.XmlScanne
             .addMoreInfo("https://bitbucket.org/secure-it-i/android-app-vulnerability-benchmarks/wiki/Using%20Task%20Affinity%20to%20launch%20Denial-of-service%20or%20Phishing%20attacks%20in%20Android");
 
     @Override
-    public Collection<String> getApplicableElements() {
-        return Arrays.asList(TAG_ACTIVITY, TAG_APPLICATION);
-    }
-
-    @Override
-    public void visitElement(@NonNull XmlContext context, @NonNull Element element) {
-        Attr taskAffinityAttr = findTaskAffinityAttr(element);
-        if(isApplicationNode(element)){
+    public void visitDocument(@NonNull XmlContext context, @NonNull Document document) {
+        ManifestModel manifest = ManifestModel.get(document);
+        for (int i = 0; i < manifest.getApplicationCount(); i++) {
+            Attr taskAffinityAttr = manifest.getApplicationTaskAffinity(i);
             if(taskAffinityAttr == null || !taskAffinityAttr.getValue().equals("")) {
-                context.report(APPLICATION_TASK_AFFINITY_NOT_EMPTY, element, context.getLocation(element), APPLICATION_TASK_AFFINITY_NOT_EMPTY_MESSAGE);
+                Element application = manifest.getApplication(i);
+                context.report(APPLICATION_TASK_AFFINITY_NOT_EMPTY, application, Fingerprint.attach(APPLICATION_TASK_AFFINITY_NOT_EMPTY, application, context.getLocation(application)), APPLICATION_TASK_AFFINITY_NOT_EMPTY_MESSAGE);
             }
         }
-        else {
-            if (taskAffinityAttr != null) {
-                context.report(ACTIVITY_TASK_AFFINITY_SET, taskAffinityAttr, context.getLocation(taskAffinityAttr), ACTIVITY_TASK_AFFINITY_SET_MESSAGE);
+        for (int i = 0; i < manifest.getComponentCount(); i++) {
+            Attr taskAffinityAttr = manifest.getTaskAffinity(i);
+            if (taskAffinityAttr != null && TAG_ACTIVITY.equals(manifest.getComponentTag(i))) {
+                context.report(ACTIVITY_TASK_AFFINITY_SET, taskAffinityAttr, Fingerprint.attach(ACTIVITY_TASK_AFFINITY_SET, taskAffinityAttr, context.getLocation(taskAffinityAttr)), ACTIVITY_TASK_AFFINITY_SET_MESSAGE);
             }
         }
     }
 
-    private boolean isApplicationNode(@NonNull Element element){
-        return element.getTagName().equals(TAG_APPLICATION);
-    }
-
-    @Nullable
-    private Attr findTaskAffinityAttr(@NonNull Element activityElement) {
-
-        Attr taskAffinityAttribute = activityElement.getAttributeNodeNS(NS_RESOURCES, ATTR_TASK_AFFINITY);
-        if (taskAffinityAttribute != null) {
-            return taskAffinityAttribute;
-        }
-        return null;
-
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        ManifestModel.release();
     }
-
 }
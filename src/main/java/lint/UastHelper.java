@@ -7,13 +7,20 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.android.tools.lint.detector.api.JavaContext;
 import com.android.tools.lint.detector.api.UastLintUtils;
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
 import com.intellij.psi.PsiType;
 import com.intellij.psi.PsiVariable;
 
 import org.jetbrains.uast.UCallExpression;
+import org.jetbrains.uast.UElement;
 import org.jetbrains.uast.UExpression;
+import org.jetbrains.uast.UReferenceExpression;
 import org.jetbrains.uast.USimpleNameReferenceExpression;
 import org.jetbrains.uast.UastUtils;
 
@@ -33,21 +40,85 @@ class UastHelper {
         return methodName != null && methodName.equals(expectedMethodName);
     }
 
-    static boolean hasClassOrSuperClass(PsiType type, String qualifiedClassName)
+    /**
+     * Resolves the method called by the given call. The result is cached for the file of the
+     * given context and shared by all detectors, so every call site is resolved at most once
+     * per file. Detectors using this method have to call releaseFileCache in afterCheckProject.
+     */
+    @Nullable
+    static PsiMethod resolve(@NonNull JavaContext context, @NonNull UCallExpression call) {
+        return FileCache.get(context).resolve(call);
+    }
+
+    /**
+     * Resolves the element referenced by the given reference, cached like the calls of resolve.
+     */
+    @Nullable
+    static PsiElement resolve(@NonNull JavaContext context, @NonNull UReferenceExpression reference) {
+        return FileCache.get(context).resolve(reference);
+    }
+
+    /**
+     * Returns the calls of the file of the given context, shared by all detectors like the
+     * results of resolve.
+     */
+    @NonNull
+    static FileCallIndex getCallIndex(@NonNull JavaContext context) {
+        return FileCache.get(context).getCallIndex();
+    }
+
+    /**
+     * Drops the cache of the last file analyzed on the current thread. The cache of a file is
+     * replaced when the next file asks for its cache, so this is only needed once no file is
+     * analyzed any more, i.e. in afterCheckProject.
+     */
+    static void releaseFileCache() {
+        FileCache.release();
+    }
+
+    /**
+     * Checks if the given member belongs to the given class or one of its subclasses, like
+     * JavaEvaluator.isMemberInSubClassOf(member, qualifiedClassName, false). The answer is
+     * cached per containing class for the whole project.
+     */
+    static boolean isMemberInSubClassOf(@NonNull JavaContext context, @NonNull PsiMember member,
+                                        @NonNull String qualifiedClassName) {
+        PsiClass containingClass = member.getContainingClass();
+        if (containingClass == null)
+            return false;
+        String containingClassName = containingClass.getQualifiedName();
+        // anonymous and local classes have no name to cache them by
+        if (containingClassName == null)
+            return context.getEvaluator().isMemberInSubClassOf(member, qualifiedClassName, false);
+        return ClassMembershipOracle.get(context).isRelated(ClassMembershipOracle.SUBCLASS,
+                containingClassName, qualifiedClassName,
+                () -> context.getEvaluator().isMemberInSubClassOf(member, qualifiedClassName, false));
+    }
+
+    /**
+     * Checks if the given type or one of its direct super types is the given class. The answer
+     * is cached per type for the whole project.
+     */
+    static boolean hasClassOrSuperClass(@NonNull JavaContext context, @Nullable PsiType type,
+                                        @NonNull String qualifiedClassName)
     {
         if(type == null)
             return false;
-        if(type.getCanonicalText().equals(qualifiedClassName))
+        String typeName = type.getCanonicalText();
+        if(typeName.equals(qualifiedClassName))
             return true;
-        PsiType[] superTypes = type.getSuperTypes();
-        for(PsiType superType : superTypes){
-            if(superType.getCanonicalText().equals(qualifiedClassName))
-                return true;
-        }
-        return false;
+        return ClassMembershipOracle.get(context).isRelated(ClassMembershipOracle.TYPE_OR_DIRECT_SUPER_TYPE,
+                typeName, qualifiedClassName, () -> {
+                    PsiType[] superTypes = type.getSuperTypes();
+                    for(PsiType superType : superTypes){
+                        if(superType.getCanonicalText().equals(qualifiedClassName))
+                            return true;
+                    }
+                    return false;
+                });
     }
 
-    static UExpression getLastAssignedExpression(@Nullable UExpression variable, @Nullable UCallExpression call) {
+    static UExpression getLastAssignedExpression(@Nullable UExpression variable, @Nullable UElement call) {
         if (variable instanceof USimpleNameReferenceExpression) {
             PsiElement e = UastUtils.tryResolve(variable);
             if (e instanceof PsiVariable) {
@@ -58,4 +129,23 @@ class UastHelper {
         }
         return null;
     }
+
+    /**
+     * Returns the index of the parameter of the given method the expression refers to, or -1 if
+     * it refers to something else.
+     */
+    static int parameterIndex(@NonNull PsiMethod method, @Nullable UExpression expression) {
+        if (!(expression instanceof USimpleNameReferenceExpression))
+            return -1;
+        PsiElement resolved = UastUtils.tryResolve(expression);
+        if (!(resolved instanceof PsiParameter))
+            return -1;
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            String name = parameters[i].getName();
+            if (parameters[i].equals(resolved) || (name != null && name.equals(((PsiParameter) resolved).getName())))
+                return i;
+        }
+        return -1;
+    }
 }
@@ -8,6 +8,7 @@ package lint;
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -15,17 +16,9 @@ import com.android.tools.lint.detector.api.Scope;
 import com.android.tools.lint.detector.api.Severity;
 import com.android.tools.lint.detector.api.XmlContext;
 
-import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import java.util.Collection;
-import java.util.Collections;
-
-import javax.annotation.Nullable;
-
-import static com.android.SdkConstants.NS_RESOURCES;
-import static com.android.SdkConstants.TAG_PERMISSION;
-
 /**
  * Checks that all permissions declared in the manifest have their protectionLevel set explicitly
  * 
@@ -40,8 +33,6 @@ public class UnprotectedPermissionDetector extends Detector implements Detector.
     @VisibleForTesting
     public static final String REPORT_MESSAGE = "No explicit \"android:protectionLevel\" set for this permission. The default is normal which is only for low risk features.";
 
-    private static final String ATTR_PROTECTION_LEVEL = "protectionLevel";
-
     public static final Issue ISSUE = Issue.create("UnprotectedPermission", //$NON-NLS-1$
             "SM03: Incorrect Protection Level | The \"android:protectionLevel\" attribute is missing for a custom permission", 
             
@@ -65,25 +56,18 @@ public class UnprotectedPermissionDetector extends Detector implements Detector.
             .addMoreInfo("https://developer.android.com/guide/topics/manifest/permission-element.html");
 
     @Override
-    public Collection<String> getApplicableElements() {
-        return Collections.singleton(TAG_PERMISSION);
-    }
-
-    @Override
-    public void visitElement(@NonNull XmlContext context, @NonNull Element permissionElement) {
-        Attr protectionLevelAttribute = findProtectionLevelAttr(permissionElement);
-        if(protectionLevelAttribute == null) {
-            context.report(ISSUE, permissionElement, context.getLocation(permissionElement), REPORT_MESSAGE);
+    public void visitDocument(@NonNull XmlContext context, @NonNull Document document) {
+        ManifestModel manifest = ManifestModel.get(document);
+        for (int i = 0; i < manifest.getPermissionCount(); i++) {
+            if(manifest.getProtectionLevel(i) == null) {
+                Element permissionElement = manifest.getPermission(i);
+                context.report(ISSUE, permissionElement, Fingerprint.attach(ISSUE, permissionElement, context.getLocation(permissionElement)), REPORT_MESSAGE);
+            }
         }
     }
 
-    @Nullable
-    private Attr findProtectionLevelAttr(@NonNull Element permissionElement) {
-        Attr protectionLevelAttribute = permissionElement.getAttributeNodeNS(NS_RESOURCES, ATTR_PROTECTION_LEVEL);
-        if (protectionLevelAttribute != null) {
-            return protectionLevelAttribute;
-        }
-        return null;
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        ManifestModel.release();
     }
-
 }
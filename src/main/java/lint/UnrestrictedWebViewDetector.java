@@ -8,8 +8,8 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -28,6 +28,8 @@ import org.jetbrains.uast.UExpression;
 import java.util.Collections;
 import java.util.List;
 
+import static lint.UastHelper.isMemberInSubClassOf;
+
 /**
  * Searches for WebViews that can access any url
  * By default, a WebView does open clicked links in the browser
@@ -77,15 +79,14 @@ public class UnrestrictedWebViewDetector extends Detector implements Detector.Ua
     @Override
     public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call,
                             @NonNull PsiMethod method) {
-        JavaEvaluator evaluator = context.getEvaluator();
-        if (!evaluator.isMemberInSubClassOf(method, CLASS_WEB_VIEW, false))
+        if (!isMemberInSubClassOf(context, method, CLASS_WEB_VIEW))
             return;
         List<UExpression> argumentValueList = call.getValueArguments();
         if (argumentValueList.size() != 1)
             return;
 
         if (isUnrestrictedWebViewClient(argumentValueList.get(0)))
-            context.report(ISSUE, call, context.getLocation(call), MESSAGE);
+            context.report(ISSUE, call, Fingerprint.attach(context, ISSUE, call, context.getLocation(call)), MESSAGE);
     }
 
     private boolean isUnrestrictedWebViewClient(UExpression webViewClientArgument) {
@@ -111,6 +112,11 @@ public class UnrestrictedWebViewDetector extends Detector implements Detector.Ua
         return false;
     }
 
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
+    }
+
     @Override
     public List<String> getApplicableMethodNames() {
         return Collections.singletonList("setWebViewClient");
@@ -8,7 +8,6 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.detector.api.Category;
 import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
@@ -24,8 +23,11 @@ import org.jetbrains.uast.UCallExpression;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import static lint.UastHelper.isMemberInSubClassOf;
+
 /**
  * Detector for unrevoked URI permissions that searches for granted URI permissions that miss the corresponding revokings.
  * 
@@ -46,8 +48,9 @@ public class UnrevokedUriPermissionDetector extends Detector implements Detector
     @VisibleForTesting
     public static final String MESSAGE = "SM01: Persisted Dynamic Permission | URI permissions granted through the context class have to be revoked explicitly";
 
-    private List<Location> grantsUriPermissionCallLocations = new ArrayList<>();
-    private boolean revokesUriPermission = false;
+    // grants and revokes of URI permissions in the project, see ProjectState
+    private static final ProjectState.Key<UriPermissionCalls> URI_PERMISSION_CALLS =
+            new ProjectState.Key<>("UnrevokedUriPermission", UriPermissionCalls::new);
     private static final String GRANT_URI_PERMISSION = "grantUriPermission";
     private static final String REVOKE_URI_PERMISSION = "revokeUriPermission";
 
@@ -71,24 +74,27 @@ public class UnrevokedUriPermissionDetector extends Detector implements Detector
     @Override
     public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call,
                             @NonNull PsiMethod method) {
-        JavaEvaluator evaluator = context.getEvaluator();
-        if(!evaluator.isMemberInSubClassOf(method, CONTEXT_CLASS, false))
+        if(!isMemberInSubClassOf(context, method, CONTEXT_CLASS))
             return;
+        UriPermissionCalls calls = ProjectState.get(context, URI_PERMISSION_CALLS);
         if(call.getMethodName() != null && call.getMethodName().equals(GRANT_URI_PERMISSION)) {
-            grantsUriPermissionCallLocations.add(context.getLocation(call));
+            if(ProjectState.reserve(context, URI_PERMISSION_CALLS, 1))
+                calls.grantsUriPermissionCallLocations.add(Fingerprint.attach(context, ISSUE, call, context.getLocation(call)));
             return;
         }
         if(call.getMethodName() != null && call.getMethodName().equals(REVOKE_URI_PERMISSION))
-            revokesUriPermission = true;
+            calls.revokesUriPermission = true;
 
 
     }
 
     @Override
     public void afterCheckProject(Context context) {
-        if(revokesUriPermission || grantsUriPermissionCallLocations.isEmpty())
+        UastHelper.releaseFileCache();
+        UriPermissionCalls calls = ProjectState.release(context, URI_PERMISSION_CALLS);
+        if(calls == null || calls.revokesUriPermission || calls.grantsUriPermissionCallLocations.isEmpty())
             return;
-        for(Location grantUriPermissionCallLocations : grantsUriPermissionCallLocations) {
+        for(Location grantUriPermissionCallLocations : calls.grantsUriPermissionCallLocations) {
             context.report(ISSUE, grantUriPermissionCallLocations, MESSAGE);
         }
     }
@@ -97,4 +103,9 @@ public class UnrevokedUriPermissionDetector extends Detector implements Detector
     public List<String> getApplicableMethodNames() {
         return Arrays.asList(REVOKE_URI_PERMISSION, GRANT_URI_PERMISSION);
     }
+
+    private static final class UriPermissionCalls {
+        private final List<Location> grantsUriPermissionCallLocations = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean revokesUriPermission = false;
+    }
 }
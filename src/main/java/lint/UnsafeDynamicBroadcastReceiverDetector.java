@@ -8,8 +8,8 @@ package lint;
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -25,6 +25,8 @@ import org.jetbrains.uast.UastLiteralUtils;
 import java.util.Collections;
 import java.util.List;
 
+import static lint.UastHelper.isMemberInSubClassOf;
+
 /**
  * This detector searches for run time registrations of receivers that do not consider any permissions.
  * 
@@ -67,8 +69,7 @@ public class UnsafeDynamicBroadcastReceiverDetector extends Detector implements
     @Override
     public void visitMethod(@NonNull JavaContext context, @NonNull UCallExpression call,
                             @NonNull PsiMethod method) {
-        JavaEvaluator evaluator = context.getEvaluator();
-        if(!evaluator.isMemberInSubClassOf(method, CONTEXT_CLASS, false))
+        if(!isMemberInSubClassOf(context, method, CONTEXT_CLASS))
             return;
         Integer argumentCount = call.getValueArgumentCount();
         List<UExpression> argumentValueList = call.getValueArguments();
@@ -77,12 +78,12 @@ public class UnsafeDynamicBroadcastReceiverDetector extends Detector implements
             return;
 
         if (!isCallWithPermissionArgument(argumentCount)) {
-            context.report(ISSUE, call, context.getLocation(call), NO_PERMISSION_ARGUMENT_MESSAGE);
+            context.report(ISSUE, call, Fingerprint.attach(context, ISSUE, call, context.getLocation(call)), NO_PERMISSION_ARGUMENT_MESSAGE);
             return;
         }
 
         if (!nonEmtpyPermissionArgument(argumentValueList)) {
-            context.report(ISSUE, call, context.getLocation(call), EMPTY_PERMISSION_ARGUMENT_MESSAGE);
+            context.report(ISSUE, call, Fingerprint.attach(context, ISSUE, call, context.getLocation(call)), EMPTY_PERMISSION_ARGUMENT_MESSAGE);
         }
     }
 
@@ -127,6 +128,11 @@ public class UnsafeDynamicBroadcastReceiverDetector extends Detector implements
         return !UastLiteralUtils.isNullLiteral(permissionArgument);
     }
 
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
+    }
+
     @Override
     public List<String> getApplicableMethodNames() {
         return Collections.singletonList("registerReceiver");
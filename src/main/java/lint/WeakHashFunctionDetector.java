@@ -9,6 +9,7 @@ import com.android.annotations.NonNull;
 import com.android.tools.lint.client.api.JavaEvaluator;
 import com.android.tools.lint.client.api.UElementHandler;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Detector.UastScanner;
 import com.android.tools.lint.detector.api.Implementation;
@@ -73,6 +74,11 @@ public class WeakHashFunctionDetector extends Detector implements UastScanner {
         return Collections.singletonList(UCallExpression.class);
     }
     
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
+    }
+
     @Override
     public UElementHandler createUastHandler(@NonNull JavaContext context) {
         return new UElementHandler() {
@@ -84,7 +90,7 @@ public class WeakHashFunctionDetector extends Detector implements UastScanner {
         			return;
         		}
         		
-        		PsiMethod calledMethod = uCallExpression.resolve();
+        		PsiMethod calledMethod = UastHelper.resolve(context, uCallExpression);
         		if(calledMethod == null)
         			return;
 				PsiClass containingClass= calledMethod.getContainingClass();
@@ -100,7 +106,7 @@ public class WeakHashFunctionDetector extends Detector implements UastScanner {
         			// check for inline parameter 
         			String parameterValue = UastLiteralUtils.getValueIfStringLiteral(ue);
 	                if (parameterValue != null && parameterValue.toUpperCase().equals(L_WEAKHASHALGO)) {
-	                	context.report(ISSUE, ue, context.getLocation(ue), LINT_MSG);
+	                	context.report(ISSUE, ue, Fingerprint.attach(context, ISSUE, ue, context.getLocation(ue)), LINT_MSG);
 	                	return;
 	                }
 	                
@@ -111,7 +117,8 @@ public class WeakHashFunctionDetector extends Detector implements UastScanner {
                 		for (PsiElement parameter : resolvedParameters) {
                 			IElementType type = parameter.getNode().getElementType();
                 			if (type.toString().equals("LITERAL_EXPRESSION") && parameter.getText().toUpperCase().equals("\"" + L_WEAKHASHALGO + "\"")) {
-                				context.report(ISSUE, parameter, context.getLocation(parameter), LINT_MSG);
+                				// the constant may be declared anywhere, so the argument identifies the finding
+                				context.report(ISSUE, parameter, Fingerprint.attach(context, ISSUE, ue, context.getLocation(parameter)), LINT_MSG);
                 				return;
 		        			}
                 		}
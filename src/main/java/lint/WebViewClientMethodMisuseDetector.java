@@ -9,6 +9,7 @@ package lint;
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
@@ -29,12 +30,19 @@ import org.jetbrains.uast.UastLiteralUtils;
 import org.jetbrains.uast.visitor.AbstractUastVisitor;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static lint.UastHelper.isMemberInSubClassOf;
 
 /**
  * Checks overridden URL handling methods in subclasses of WebViewClient.
  *
  * The current checks extend the inner class WebViewClientMethodVisitor.
+ * Each check is registered for the name of the method it verifies, so every method of a
+ * WebViewClient subclass is looked up once and only visited by the check it needs.
  * 
  * @author Patrick Frischknecht
  * 
@@ -44,6 +52,21 @@ import java.util.List;
  */
 public class WebViewClientMethodMisuseDetector extends Detector implements Detector.UastScanner {
     private static final String CLASS_WEB_VIEW_CLIENT = "android.webkit.WebViewClient";
+    private static final String SHOULD_INTERCEPT_REQUEST = "shouldInterceptRequest";
+    private static final String SHOULD_OVERRIDE_URL_LOADING = "shouldOverrideUrlLoading";
+    private static final String ON_RECEIVED_SSL_ERROR = "onReceivedSslError";
+
+    // dispatch table from the name of a verified method to the visitor verifying it
+    private final Map<String, Function<JavaContext, WebViewClientMethodVisitor>> visitorFactories = createVisitorFactories();
+
+    @NonNull
+    private Map<String, Function<JavaContext, WebViewClientMethodVisitor>> createVisitorFactories() {
+        Map<String, Function<JavaContext, WebViewClientMethodVisitor>> factories = new HashMap<>();
+        factories.put(SHOULD_INTERCEPT_REQUEST, ShouldInterceptRequestVisitor::new);
+        factories.put(SHOULD_OVERRIDE_URL_LOADING, ShouldOverrideUrlLoadingVisitor::new);
+        factories.put(ON_RECEIVED_SSL_ERROR, OnReceivedSslErrorVisitor::new);
+        return factories;
+    }
 
     @Override
     public List<String> applicableSuperClasses() {
@@ -53,12 +76,18 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
     @Override
     public void visitClass(@NonNull JavaContext context, @NonNull UClass declaration) {
         for (UMethod method : declaration.getMethods()) {
-            new ShouldInterceptRequestVisitor(context).acceptIfMethodMatches(method);
-            new ShouldOverrideUrlLoadingVisitor(context).acceptIfMethodMatches(method);
-            new OnReceivedSslErrorVisitor(context).acceptIfMethodMatches(method);
+            // methods without a check are skipped without allocating any visitor
+            Function<JavaContext, WebViewClientMethodVisitor> visitorFactory = visitorFactories.get(method.getName());
+            if (visitorFactory != null)
+                method.accept(visitorFactory.apply(context));
         }
     }
 
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        UastHelper.releaseFileCache();
+    }
+
     public abstract class WebViewClientMethodVisitor extends AbstractUastVisitor {
         protected JavaContext context;
 
@@ -67,12 +96,6 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
             this.context = context;
         }
 
-        public void acceptIfMethodMatches(@NonNull UMethod method) {
-            if (!method.getName().equals(getMethod())) return;
-
-            method.accept(this);
-        }
-
         protected abstract String getMethod();
 
         protected abstract String getMessage();
@@ -82,7 +105,7 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
         protected abstract boolean isMethodAcceptable();
 
         private void report(@NonNull UMethod method) {
-            context.report(getIssue(), method, context.getLocation(method), getMessage());
+            context.report(getIssue(), method, Fingerprint.attach(context, getIssue(), method, context.getLocation(method)), getMessage());
         }
 
         @Override
@@ -121,7 +144,7 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
         @Override
         protected String getMessage() { return MESSAGE; }
         @Override
-        protected String getMethod() {return "shouldInterceptRequest"; }
+        protected String getMethod() {return SHOULD_INTERCEPT_REQUEST; }
 
         public ShouldInterceptRequestVisitor(@NonNull JavaContext context){
             super(context);
@@ -175,7 +198,7 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
         @Override
         protected String getMessage() { return MESSAGE; }
         @Override
-        protected String getMethod() {return "shouldOverrideUrlLoading"; }
+        protected String getMethod() {return SHOULD_OVERRIDE_URL_LOADING; }
 
         private static final String WEB_VIEW = "android.webkit.WebView";
         private static final String WEB_VIEW_LOAD_URL = "loadUrl";
@@ -204,9 +227,9 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
 
         @Override
         public boolean visitCallExpression(@NonNull UCallExpression methodInvocation){
-            PsiMethod psiMethod = methodInvocation.resolve();
+            PsiMethod psiMethod = UastHelper.resolve(context, methodInvocation);
             if (psiMethod != null &&
-                    context.getEvaluator().isMemberInSubClassOf(psiMethod, WEB_VIEW, false) &&
+                    isMemberInSubClassOf(context, psiMethod, WEB_VIEW) &&
                     methodInvocation.getMethodName() != null &&
                     methodInvocation.getMethodName().equals(WEB_VIEW_LOAD_URL) &&
                     isUnconditionalMethodCall(methodInvocation))
@@ -284,7 +307,7 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
         @Override
         protected String getMessage() { return MESSAGE; }
         @Override
-        protected String getMethod() {return "onReceivedSslError"; }
+        protected String getMethod() {return ON_RECEIVED_SSL_ERROR; }
 
         public OnReceivedSslErrorVisitor(@NonNull JavaContext context){
             super(context);
@@ -325,17 +348,17 @@ public class WebViewClientMethodMisuseDetector extends Detector implements Detec
 
 
         private boolean isHandlerCancel(@NonNull UCallExpression methodInvocation){
-            PsiMethod method = methodInvocation.resolve();
+            PsiMethod method = UastHelper.resolve(context, methodInvocation);
             return method != null &&
-                    context.getEvaluator().isMemberInSubClassOf(method, SSL_ERROR_HANDLER, false) &&
+                    isMemberInSubClassOf(context, method, SSL_ERROR_HANDLER) &&
                     methodInvocation.getMethodName() != null &&
                     methodInvocation.getMethodName().equals(HANDLER_CANCEL);
         }
 
         private boolean isHandlerProceed(@NonNull UCallExpression methodInvocation){
-            PsiMethod method = methodInvocation.resolve();
+            PsiMethod method = UastHelper.resolve(context, methodInvocation);
             return method != null &&
-                    context.getEvaluator().isMemberInSubClassOf(method, SSL_ERROR_HANDLER, false) &&
+                    isMemberInSubClassOf(context, method, SSL_ERROR_HANDLER) &&
                     methodInvocation.getMethodName() != null &&
                     methodInvocation.getMethodName().equals(HANDLER_PROCEED);
         }
@@ -7,29 +7,18 @@ package lint;
 
 import com.android.annotations.NonNull;
 import com.android.annotations.VisibleForTesting;
-import com.android.tools.lint.checks.SecurityDetector;
 import com.android.tools.lint.detector.api.Category;
+import com.android.tools.lint.detector.api.Context;
 import com.android.tools.lint.detector.api.Detector;
 import com.android.tools.lint.detector.api.Implementation;
 import com.android.tools.lint.detector.api.Issue;
-import com.android.tools.lint.detector.api.LintUtils;
 import com.android.tools.lint.detector.api.Scope;
 import com.android.tools.lint.detector.api.Severity;
 import com.android.tools.lint.detector.api.XmlContext;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import java.util.Collection;
-import java.util.Collections;
-
-import static com.android.SdkConstants.ANDROID_URI;
-import static com.android.SdkConstants.ATTR_PATH;
-import static com.android.SdkConstants.ATTR_PATH_PATTERN;
-import static com.android.SdkConstants.ATTR_PATH_PREFIX;
-import static com.android.SdkConstants.ATTR_PERMISSION;
-import static com.android.SdkConstants.ATTR_READ_PERMISSION;
-import static com.android.SdkConstants.ATTR_WRITE_PERMISSION;
-import static com.android.SdkConstants.TAG_PATH_PERMISSION;
 import static com.android.SdkConstants.TAG_PROVIDER;
 
 /** 
@@ -72,56 +61,29 @@ public class WrongPathPermissionPrecedenceDetector extends Detector implements D
     private static final String SEARCH_SUGGEST_QUERY = "search_suggest_query";
 
     @Override
-    public Collection<String> getApplicableElements() {
-        return Collections.singleton(TAG_PROVIDER);
-    }
-
-    @Override
-    public void visitElement(@NonNull XmlContext context, @NonNull Element element) {
-        if (!SecurityDetector.getExported(element) || !hasPermission(element))
-            return;
-
-        for (Element pathPermissionChild : LintUtils.getChildren(element)) {
-
-            if (TAG_PATH_PERMISSION.equals(pathPermissionChild.getNodeName())) {
+    public void visitDocument(@NonNull XmlContext context, @NonNull Document document) {
+        ManifestModel manifest = ManifestModel.get(document);
+        for (int provider = 0; provider < manifest.getComponentCount(); provider++) {
+            if (!TAG_PROVIDER.equals(manifest.getComponentTag(provider)) || !manifest.isExported(provider)
+                    || !manifest.hasPermission(provider))
+                continue;
+
+            for (int i = manifest.getFirstPathPermission(provider); i < manifest.getEndPathPermission(provider); i++) {
                 /**
                  * Ignore path permission for search suggest query paths.
                  * These path permissions are unproblematic, since they
                  * intentionally release non-sensitive data.
                  */
-                if(protectsASearchSuggestPath(pathPermissionChild))
-                    return;
-                context.report(ISSUE, pathPermissionChild, context.getLocation(pathPermissionChild), MESSAGE);
+                if (manifest.hasPathContaining(i, SEARCH_SUGGEST_QUERY))
+                    break;
+                Element pathPermission = manifest.getPathPermission(i);
+                context.report(ISSUE, pathPermission, Fingerprint.attach(ISSUE, pathPermission, context.getLocation(pathPermission)), MESSAGE);
             }
-
         }
-
     }
 
-    // Checks if the path, pathPattern or PathPrefix protects a path used for a search suggestion
-    // (i.e. contains the string "SEARCH_SUGGEST_QUERY")
-    private static boolean protectsASearchSuggestPath(Element element) {
-        String[] pathAttributeValues = {element.getAttributeNS(ANDROID_URI, ATTR_PATH),
-                element.getAttributeNS(ANDROID_URI, ATTR_PATH_PATTERN),
-                element.getAttributeNS(ANDROID_URI, ATTR_PATH_PREFIX)};
-        for(String pathAttribute : pathAttributeValues) {
-            if (pathAttribute != null && pathAttribute.matches(".*"+SEARCH_SUGGEST_QUERY+".*")) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static boolean hasPermission(Element element) {
-        // Used to check whether an activity, service or broadcast receiver is exported.
-        String[] permissionAttributeValues = {element.getAttributeNS(ANDROID_URI, ATTR_PERMISSION),
-                                              element.getAttributeNS(ANDROID_URI, ATTR_READ_PERMISSION),
-                                              element.getAttributeNS(ANDROID_URI, ATTR_WRITE_PERMISSION)};
-        for(String permission : permissionAttributeValues) {
-            if (permission != null && !permission.isEmpty()) {
-                return true;
-            }
-        }
-        return false;
+    @Override
+    public void afterCheckProject(@NonNull Context context) {
+        ManifestModel.release();
     }
 }
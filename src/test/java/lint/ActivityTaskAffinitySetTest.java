@@ -74,4 +74,42 @@ public class ActivityTaskAffinitySetTest extends LintDetectorTest {
                 .run()
                 .expectCount(1, Severity.WARNING).expectMatches(TaskAffinityDetector.APPLICATION_TASK_AFFINITY_NOT_EMPTY_MESSAGE);
     }
+
+    public void testActivityAliasTaskAffinityIsIgnored() {
+        lint().files(
+                xml(FN_ANDROID_MANIFEST_XML, "" +
+                        "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                        "<manifest package=\"com.example.test.myapplication\"\n" +
+                        "          xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                        "    <application>\n" +
+                        "        <activity android:name=\".MainActivity\">\n" +
+                        "        </activity>\n" +
+                        "\n" +
+                        "        <activity-alias android:name=\".AliasActivity\" android:targetActivity=\".MainActivity\"\n" +
+                        "                        android:taskAffinity=\"com.android.settings\">\n" +
+                        "        </activity-alias>\n" +
+                        "    </application>\n" +
+                        "</manifest>"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(TaskAffinityDetector.APPLICATION_TASK_AFFINITY_NOT_EMPTY_MESSAGE);
+    }
+
+    public void testActivityTaskAffinityNextToActivityAlias() {
+        lint().files(
+                xml(FN_ANDROID_MANIFEST_XML, "" +
+                        "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                        "<manifest package=\"com.example.test.myapplication\"\n" +
+                        "          xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                        "    <application>\n" +
+                        "        <activity android:name=\".MainActivity\" android:taskAffinity=\"com.android.settings\">\n" +
+                        "        </activity>\n" +
+                        "\n" +
+                        "        <activity-alias android:name=\".AliasActivity\" android:targetActivity=\".MainActivity\"\n" +
+                        "                        android:taskAffinity=\"com.android.settings\">\n" +
+                        "        </activity-alias>\n" +
+                        "    </application>\n" +
+                        "</manifest>"))
+                .run()
+                .expectCount(2, Severity.WARNING).expectMatches(TaskAffinityDetector.ACTIVITY_TASK_AFFINITY_SET_MESSAGE);
+    }
 }
@@ -0,0 +1,73 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ClassMembershipOracleTest extends TestCase {
+
+    private static final String CONTEXT = "android.content.Context";
+    private static final String ACTIVITY = "com.example.test.MainActivity";
+    private static final String HELPER = "com.example.test.Helper";
+
+    private final ClassMembershipOracle oracle = new ClassMembershipOracle();
+
+    public void testSubclassAnswerIsCached() {
+        AtomicInteger computations = new AtomicInteger();
+
+        assertTrue(oracle.isRelated(ClassMembershipOracle.SUBCLASS, ACTIVITY, CONTEXT,
+                () -> computations.incrementAndGet() > 0));
+        assertTrue(oracle.isRelated(ClassMembershipOracle.SUBCLASS, ACTIVITY, CONTEXT,
+                () -> computations.incrementAndGet() < 0));
+        assertEquals(1, computations.get());
+    }
+
+    public void testSuperclassIsNotAnsweredBySubclass() {
+        oracle.isRelated(ClassMembershipOracle.SUBCLASS, ACTIVITY, CONTEXT, () -> true);
+
+        // the reversed pair is another question
+        assertFalse(oracle.isRelated(ClassMembershipOracle.SUBCLASS, CONTEXT, ACTIVITY, () -> false));
+        assertTrue(oracle.isRelated(ClassMembershipOracle.SUBCLASS, ACTIVITY, CONTEXT, () -> false));
+    }
+
+    public void testUnrelatedAnswerIsCached() {
+        AtomicInteger computations = new AtomicInteger();
+
+        assertFalse(oracle.isRelated(ClassMembershipOracle.SUBCLASS, HELPER, CONTEXT,
+                () -> computations.incrementAndGet() < 0));
+        assertFalse(oracle.isRelated(ClassMembershipOracle.SUBCLASS, HELPER, CONTEXT,
+                () -> computations.incrementAndGet() > 0));
+        assertEquals(1, computations.get());
+    }
+
+    public void testRelationsAreCachedSeparately() {
+        oracle.isRelated(ClassMembershipOracle.SUBCLASS, ACTIVITY, CONTEXT, () -> true);
+
+        assertFalse(oracle.isRelated(ClassMembershipOracle.TYPE_OR_DIRECT_SUPER_TYPE, ACTIVITY, CONTEXT, () -> false));
+    }
+
+    public void testAnswersSurviveGrowingTheTable() {
+        AtomicInteger computations = new AtomicInteger();
+        int classes = 2000;
+        for (int i = 0; i < classes; i++) {
+            boolean related = i % 3 == 0;
+            oracle.isRelated(ClassMembershipOracle.SUBCLASS, "com.example.C" + i, CONTEXT, () -> {
+                computations.incrementAndGet();
+                return related;
+            });
+        }
+        for (int i = 0; i < classes; i++) {
+            assertEquals("com.example.C" + i, i % 3 == 0, oracle.isRelated(ClassMembershipOracle.SUBCLASS,
+                    "com.example.C" + i, CONTEXT, () -> {
+                        computations.incrementAndGet();
+                        return false;
+                    }));
+        }
+        assertEquals(classes, computations.get());
+    }
+}
@@ -190,6 +190,39 @@ public class CustomSchemaChannelDetectorTest extends LintDetectorTest {
                 .expectCount(0);
     }
 
+
+    public void testIntentFilterInCodeWithUpperCaseKnownScheme() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.content.BroadcastReceiver;\n"+
+                        "import android.content.Context;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.content.IntentFilter;\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        super.onCreate(savedInstanceState);\n"+
+                        "\n"+
+                        "        BroadcastReceiver br = new BroadcastReceiver() {\n"+
+                        "            @Override\n"+
+                        "            public void onReceive(Context context, Intent intent) {\n"+
+                        "                //do nothing\n"+
+                        "            }\n"+
+                        "        };\n"+
+                        "        IntentFilter filter = new IntentFilter();\n"+
+                        "        filter.addDataScheme(\"HTTPS\");\n"+
+                        "        registerReceiver(br, filter);\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
     public void testIntentFilterInCodeWithoutScheme() {
         lint().files(
                 java("package com.example.test;\n"+
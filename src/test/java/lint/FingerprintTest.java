@@ -0,0 +1,100 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import com.android.annotations.NonNull;
+import com.android.tools.lint.checks.infrastructure.LintDetectorTest;
+import com.android.tools.lint.detector.api.Context;
+import com.android.tools.lint.detector.api.Detector;
+import com.android.tools.lint.detector.api.Issue;
+import com.android.tools.lint.detector.api.Location;
+import com.android.tools.lint.detector.api.Severity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FingerprintTest extends LintDetectorTest {
+
+    private static final String DIGEST = "" +
+            "public class TestClass1 {\n" +
+                "byte[] hash(byte[] password) throws NoSuchAlgorithmException {\n" +
+                    "MessageDigest md5Digest = MessageDigest.getInstance(\"MD5\");\n" +
+                    "return md5Digest.digest(password);\n" +
+                "}\n" +
+            "}";
+
+    private final List<String> fingerprints = new ArrayList<>();
+
+    public void testInsertedLinesKeepFingerprint() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.MessageDigest;\n" +
+                        "import java.security.NoSuchAlgorithmException;\n" +
+                        DIGEST))
+                .run()
+                .expectCount(1, Severity.WARNING);
+        List<String> before = new ArrayList<>(fingerprints);
+        fingerprints.clear();
+
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "\n" +
+                        "import java.security.MessageDigest;\n" +
+                        "import java.security.NoSuchAlgorithmException;\n" +
+                        "\n" +
+                        "/**\n" +
+                        " * Hashes passwords.\n" +
+                        " */\n" +
+                        DIGEST.replace("{\n", "{\n" +
+                                "private static final int ROUNDS = 1;\n" +
+                                "\n")))
+                .run()
+                .expectCount(1, Severity.WARNING);
+
+        assertEquals(1, before.size());
+        assertNotNull(before.get(0));
+        assertEquals(before, fingerprints);
+    }
+
+    public void testEqualCallsInSameMethodHaveDistinctFingerprints() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.MessageDigest;\n" +
+                        "import java.security.NoSuchAlgorithmException;\n" +
+                        "public class TestClass1 {\n" +
+                            "byte[] hash(byte[] password, boolean twice) throws NoSuchAlgorithmException {\n" +
+                                "if (twice)\n" +
+                                    "return MessageDigest.getInstance(\"MD5\").digest(password);\n" +
+                                "return MessageDigest.getInstance(\"MD5\").digest(password);\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(2, Severity.WARNING);
+
+        assertEquals(2, fingerprints.size());
+        assertFalse(fingerprints.get(0).equals(fingerprints.get(1)));
+    }
+
+    @Override
+    protected void checkReportedError(@NonNull Context context, @NonNull Issue issue, @NonNull Severity severity,
+                                      @NonNull Location location, @NonNull String message) {
+        fingerprints.add(Fingerprint.of(location));
+    }
+
+    @Override
+    protected Detector getDetector() {
+        return new WeakHashFunctionDetector();
+    }
+
+    @Override
+    protected List<Issue> getIssues() {
+        return Collections.singletonList(WeakHashFunctionDetector.ISSUE);
+    }
+}
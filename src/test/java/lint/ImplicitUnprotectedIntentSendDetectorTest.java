@@ -512,6 +512,262 @@ public class ImplicitUnprotectedIntentSendDetectorTest extends LintDetectorTest
     }
 
 
+    public void testSendImplicitIntentFromFactoryMethod() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        sendBroadcast(createIntent());\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private Intent createIntent() {\n"+
+                        "        Intent i = new Intent(\"test.pkg.ACTION\");\n"+
+                        "        i.putExtra(\"Sensitive Data\", \"1234\");\n"+
+                        "        return i;\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(ImplicitUnprotectedIntentSendDetector.IMPLICIT_INTENT_MESSAGE);
+    }
+
+    public void testSendImplicitIntentFromBuilderChain() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        Intent i = createIntent().putExtra(\"Sensitive Data\", \"1234\");\n"+
+                        "        startActivity(i);\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private Intent createIntent() {\n"+
+                        "        return new Intent(\"test.pkg.ACTION\");\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(ImplicitUnprotectedIntentSendDetector.IMPLICIT_INTENT_MESSAGE);
+    }
+
+    public void testSendExplicitIntentFromFactoryMethod() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        Intent i = createIntent();\n"+
+                        "        startActivity(i);\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private Intent createIntent() {\n"+
+                        "        Intent i = new Intent(\"test.pkg.ACTION\");\n"+
+                        "        i.setClassName(\"test.pkg\", \"Receiver\");\n"+
+                        "        return i;\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testSendIntentMadeExplicitByHelperMethod() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        Intent i = new Intent(\"test.pkg.ACTION\");\n"+
+                        "        configure(i);\n"+
+                        "        sendBroadcast(i);\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private void configure(Intent intent) {\n"+
+                        "        target(intent);\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private void target(Intent intent) {\n"+
+                        "        intent.setClassName(\"test.pkg\", \"Receiver\");\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testSendIntentFromRecursiveFactoryMethod() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        sendBroadcast(createIntent(3));\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private Intent createIntent(int depth) {\n"+
+                        "        if (depth > 0)\n"+
+                        "            return createIntent(depth - 1);\n"+
+                        "        return new Intent(this, MainActivity.class);\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testSendIntentShadowedByExplicitIntentOfSameName() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        {\n"+
+                        "            Intent intent = new Intent(\"test.pkg.ACTION\");\n"+
+                        "            sendBroadcast(intent);\n"+
+                        "        }\n"+
+                        "        {\n"+
+                        "            Intent intent = new Intent(\"test.pkg.OTHER\");\n"+
+                        "            intent.setClassName(\"test.pkg\", \"Receiver\");\n"+
+                        "        }\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(ImplicitUnprotectedIntentSendDetector.IMPLICIT_INTENT_MESSAGE);
+    }
+
+    public void testSendIntentMadeExplicitByMutuallyRecursiveHelpers() {
+        // configure is summarized while target is computed, so its first summary misses target
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        Intent first = new Intent(\"test.pkg.ACTION\");\n"+
+                        "        target(first, 1);\n"+
+                        "        sendBroadcast(first);\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    protected void onResume() {\n"+
+                        "        Intent second = new Intent(\"test.pkg.ACTION\");\n"+
+                        "        configure(second, 1);\n"+
+                        "        sendBroadcast(second);\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private void configure(Intent intent, int depth) {\n"+
+                        "        target(intent, depth - 1);\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private void target(Intent intent, int depth) {\n"+
+                        "        intent.setClassName(\"test.pkg\", \"Receiver\");\n"+
+                        "        if (depth > 0)\n"+
+                        "            configure(intent, depth);\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testSendIntentMadeExplicitByHelperInOtherFile() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        Intent i = new Intent(\"test.pkg.ACTION\");\n"+
+                        "        Intents.target(i);\n"+
+                        "        sendBroadcast(i);\n"+
+                        "    }\n"+
+                        "}\n"),
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.content.Intent;\n"+
+                        "\n"+
+                        "public class Intents {\n"+
+                        "\n"+
+                        "    static void target(Intent intent) {\n"+
+                        "        intent.setClassName(\"test.pkg\", \"Receiver\");\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testSendIntentMadeExplicitByHelperInOtherFileOnTheFly() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.app.Activity;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Bundle;\n"+
+                        "\n"+
+                        "public class MainActivity extends Activity {\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onCreate(Bundle savedInstanceState) {\n"+
+                        "        Intent i = new Intent(\"test.pkg.ACTION\");\n"+
+                        "        Intents.target(i);\n"+
+                        "        sendBroadcast(i);\n"+
+                        "    }\n"+
+                        "}\n"),
+                java("package com.example.test;\n"+
+                        "\n"+
+                        "import android.content.Intent;\n"+
+                        "\n"+
+                        "public class Intents {\n"+
+                        "\n"+
+                        "    static void target(Intent intent) {\n"+
+                        "        intent.setClassName(\"test.pkg\", \"Receiver\");\n"+
+                        "    }\n"+
+                        "}\n"))
+                .incremental("src/com/example/test/MainActivity.java")
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(ImplicitUnprotectedIntentSendDetector.IMPLICIT_INTENT_MESSAGE);
+    }
+
     @Override
     protected Detector getDetector() {
         return new ImplicitUnprotectedIntentSendDetector();
@@ -72,6 +72,111 @@ public class InsufficientRSAKeySizeDetectorTest extends LintDetectorTest {
                 .expectCount(0);
     }
 
+    public void testInitializeWithoutGetInstanceInSameMethod() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "public class TestClass1 {\n" +
+                            "private final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                            "TestClass1() throws NoSuchAlgorithmException {\n" +
+                            "}\n" +
+                            "KeyPair generateKeyPair() {\n" +
+                                "keyPairGenerator.initialize(1024);\n" +
+                                "return keyPairGenerator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(InsufficientRSAKeySizeDetector.MESSAGE);
+    }
+
+    public void testRSAFieldInitializedInOtherMethod() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "public class TestClass1 {\n" +
+                            "private final KeyPairGenerator keyPairGenerator;\n" +
+                            "TestClass1() throws NoSuchAlgorithmException {\n" +
+                            "keyPairGenerator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                            "}\n" +
+                            "KeyPair generateKeyPair() {\n" +
+                            "keyPairGenerator.initialize(1024);\n" +
+                            "return keyPairGenerator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(InsufficientRSAKeySizeDetector.MESSAGE);
+    }
+
+    public void testRSAFromFactoryMethod() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "public class TestClass1 {\n" +
+                            "KeyPairGenerator createGenerator() throws NoSuchAlgorithmException {\n" +
+                            "KeyPairGenerator generator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                            "return generator;\n" +
+                            "}\n" +
+                            "KeyPair generateKeyPair() throws NoSuchAlgorithmException {\n" +
+                            "KeyPairGenerator keyPairGenerator = createGenerator();\n" +
+                            "keyPairGenerator.initialize(1024);\n" +
+                            "return keyPairGenerator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(InsufficientRSAKeySizeDetector.MESSAGE);
+    }
+
+    public void testOtherGeneratorInitializedNextToRSA() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "public class TestClass1 {\n" +
+                            "KeyPair generateKeyPair() throws NoSuchAlgorithmException {\n" +
+                            "KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                            "KeyPairGenerator dhGenerator = KeyPairGenerator.getInstance(\"DiffieHellman\");\n" +
+                            "rsaGenerator.initialize(2048);\n" +
+                            "dhGenerator.initialize(1024);\n" +
+                            "return dhGenerator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testFieldAssignedRSAAndECGenerators() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "public class TestClass1 {\n" +
+                            "private KeyPairGenerator generator;\n" +
+                            "void useRSA() throws NoSuchAlgorithmException {\n" +
+                            "generator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                            "}\n" +
+                            "KeyPair generateKeyPair() throws NoSuchAlgorithmException {\n" +
+                            "generator = KeyPairGenerator.getInstance(\"EC\");\n" +
+                            "generator.initialize(256);\n" +
+                            "return generator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(0);
+    }
+
     public void testRSAWithInsufficentBitsWithConstant() {
         lint().files(
                 java("" +
@@ -93,6 +198,69 @@ public class InsufficientRSAKeySizeDetectorTest extends LintDetectorTest {
                 .expectCount(1, Severity.WARNING).expectMatches(InsufficientRSAKeySizeDetector.MESSAGE);
     }
 
+    public void testRSAWithInsufficentBitsFromFieldInitializer() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "import java.security.NoSuchProviderException;\n"+
+                        "public class TestClass1 {\n" +
+                            "private final int keySize = 1024;\n"+
+                            "KeyPair generateKeyPair() throws NoSuchAlgorithmException, NoSuchProviderException {\n" +
+                                "KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                                "keyPairGenerator.initialize(keySize);\n" +
+                                "return keyPairGenerator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(InsufficientRSAKeySizeDetector.MESSAGE);
+    }
+
+    public void testRSAWithReassignedKeySizeField() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "import java.security.NoSuchProviderException;\n"+
+                        "public class TestClass1 {\n" +
+                            "private int keySize = 1024;\n"+
+                            "void useStrongKeys() {\n" +
+                                "keySize = 4096;\n" +
+                            "}\n" +
+                            "KeyPair generateKeyPair() throws NoSuchAlgorithmException, NoSuchProviderException {\n" +
+                                "KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                                "keyPairGenerator.initialize(keySize);\n" +
+                                "return keyPairGenerator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testRSAWithInsufficentBitsFromNonFinalField() {
+        lint().files(
+                java("" +
+                        "package test.pkg;\n" +
+                        "import java.security.KeyPair;"+
+                        "import java.security.KeyPairGenerator;\n"+
+                        "import java.security.NoSuchAlgorithmException;\n"+
+                        "import java.security.NoSuchProviderException;\n"+
+                        "public class TestClass1 {\n" +
+                            "private int keySize = 1024;\n"+
+                            "KeyPair generateKeyPair() throws NoSuchAlgorithmException, NoSuchProviderException {\n" +
+                                "KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(\"RSA\");\n" +
+                                "keyPairGenerator.initialize(keySize);\n" +
+                                "return keyPairGenerator.generateKeyPair();\n" +
+                            "}\n" +
+                        "}"))
+                .run()
+                .expectCount(0);
+    }
+
     @Override
     protected Detector getDetector() {
         return new InsufficientRSAKeySizeDetector();
@@ -132,6 +132,127 @@ public class PermissionCheckMisuseDetectorTest extends LintDetectorTest {
     }
 
 
+    public void testCheckPermissionWithBinderCallsPassedByCaller() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Binder;\n"+
+                        "import android.app.IntentService;\n"+
+                        "import android.content.pm.PackageManager;\n"+
+                        "\n"+
+                        "public class MyService extends IntentService {\n"+
+                        "    public MyService() {\n"+
+                        "        super(\"MyService\");\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onHandleIntent(Intent intent){\n"+
+                        "        int pid = Binder.getCallingPid();\n"+
+                        "        handle(pid, Binder.getCallingUid());\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private void handle(int pid, int uid){\n"+
+                        "        if(isGranted(pid, uid))\n"+
+                        "            stopSelf();\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private boolean isGranted(int pid, int uid){\n"+
+                        "        return checkPermission(\"santos.benign.permission\", pid, uid) == PackageManager.PERMISSION_GRANTED;\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(PermissionCheckMisuseDetector.MESSAGE);
+    }
+
+    public void testCheckPermissionWithCallerIdsPassedByCaller() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Binder;\n"+
+                        "import android.app.IntentService;\n"+
+                        "import android.content.pm.PackageManager;\n"+
+                        "\n"+
+                        "public class MyService extends IntentService {\n"+
+                        "    public MyService() {\n"+
+                        "        super(\"MyService\");\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onHandleIntent(Intent intent){\n"+
+                        "        isGranted(intent.getIntExtra(\"pid\", 0), intent.getIntExtra(\"uid\", 0));\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    private boolean isGranted(int pid, int uid){\n"+
+                        "        return checkPermission(\"santos.benign.permission\", pid, uid) == PackageManager.PERMISSION_GRANTED;\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
+    public void testCheckPermissionWithBinderCallsPassedFromOtherFile() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "import android.content.Context;\n"+
+                        "import android.content.pm.PackageManager;\n"+
+                        "\n"+
+                        "public class PermissionChecker {\n"+
+                        "    public static boolean isGranted(Context context, int pid, int uid){\n"+
+                        "        return context.checkPermission(\"santos.benign.permission\", pid, uid) == PackageManager.PERMISSION_GRANTED;\n"+
+                        "    }\n"+
+                        "}\n"),
+                java("package com.example.test;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Binder;\n"+
+                        "import android.app.IntentService;\n"+
+                        "import android.content.pm.PackageManager;\n"+
+                        "\n"+
+                        "public class MyService extends IntentService {\n"+
+                        "    public MyService() {\n"+
+                        "        super(\"MyService\");\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onHandleIntent(Intent intent){\n"+
+                        "        PermissionChecker.isGranted(this, Binder.getCallingPid(), Binder.getCallingUid());\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(PermissionCheckMisuseDetector.MESSAGE);
+    }
+
+    public void testSuppressedCheckWithBinderCallsPassedFromOtherFile() {
+        lint().files(
+                java("package com.example.test;\n"+
+                        "import android.annotation.SuppressLint;\n"+
+                        "import android.content.Context;\n"+
+                        "import android.content.pm.PackageManager;\n"+
+                        "\n"+
+                        "public class PermissionChecker {\n"+
+                        "    @SuppressLint(\"BrokenServicePermission\")\n"+
+                        "    public static boolean isGranted(Context context, int pid, int uid){\n"+
+                        "        return context.checkPermission(\"santos.benign.permission\", pid, uid) == PackageManager.PERMISSION_GRANTED;\n"+
+                        "    }\n"+
+                        "}\n"),
+                java("package com.example.test;\n"+
+                        "import android.content.Intent;\n"+
+                        "import android.os.Binder;\n"+
+                        "import android.app.IntentService;\n"+
+                        "\n"+
+                        "public class MyService extends IntentService {\n"+
+                        "    public MyService() {\n"+
+                        "        super(\"MyService\");\n"+
+                        "    }\n"+
+                        "\n"+
+                        "    @Override\n"+
+                        "    protected void onHandleIntent(Intent intent){\n"+
+                        "        PermissionChecker.isGranted(this, Binder.getCallingPid(), Binder.getCallingUid());\n"+
+                        "    }\n"+
+                        "}\n"))
+                .run()
+                .expectCount(0);
+    }
+
     @Override
     protected Detector getDetector() {
         return new PermissionCheckMisuseDetector();
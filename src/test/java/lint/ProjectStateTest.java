@@ -0,0 +1,98 @@
+/*---------------------------------------------------------------------------------------------
+ *  Copyright (c) Pascal Gadient et al. All rights reserved.
+ *  Licensed under the MIT License. See LICENSE.txt in the project root for the license information.
+ *--------------------------------------------------------------------------------------------*/
+
+package lint;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProjectStateTest extends TestCase {
+
+    private static final ProjectState.Key<List<String>> CALLS = new ProjectState.Key<>("Calls", ArrayList::new);
+    private static final ProjectState.Key<List<String>> PROVIDERS = new ProjectState.Key<>("Providers", ArrayList::new);
+
+    private final Object project = new Object();
+    private final Object otherProject = new Object();
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (Object p : new Object[]{project, otherProject}) {
+            ProjectState.release(p, CALLS, null);
+            ProjectState.release(p, PROVIDERS, null);
+        }
+        super.tearDown();
+    }
+
+    public void testValueIsCreatedOnce() {
+        ProjectState.get(project, CALLS).add("grantUriPermission");
+
+        assertSame(ProjectState.get(project, CALLS), ProjectState.get(project, CALLS));
+        assertEquals(1, ProjectState.get(project, CALLS).size());
+    }
+
+    public void testProjectsAreIsolated() {
+        ProjectState.get(project, CALLS).add("grantUriPermission");
+
+        assertTrue(ProjectState.get(otherProject, CALLS).isEmpty());
+        assertNotSame(ProjectState.get(project, CALLS), ProjectState.get(otherProject, CALLS));
+    }
+
+    public void testKeysAreIsolated() {
+        ProjectState.get(project, CALLS).add("grantUriPermission");
+
+        assertTrue(ProjectState.get(project, PROVIDERS).isEmpty());
+    }
+
+    public void testReleaseReturnsAndDropsValue() {
+        List<String> calls = ProjectState.get(project, CALLS);
+        calls.add("grantUriPermission");
+
+        assertSame(calls, ProjectState.release(project, CALLS, null));
+        assertNull(ProjectState.release(project, CALLS, null));
+        assertTrue(ProjectState.get(project, CALLS).isEmpty());
+    }
+
+    public void testReleaseKeepsOtherKeys() {
+        List<String> providers = ProjectState.get(project, PROVIDERS);
+        ProjectState.get(project, CALLS);
+
+        ProjectState.release(project, CALLS, null);
+
+        assertSame(providers, ProjectState.get(project, PROVIDERS));
+    }
+
+    public void testReserveStopsAtLimit() {
+        assertTrue(ProjectState.reserve(project, CALLS, ProjectState.LIMIT - 1));
+        assertTrue(ProjectState.reserve(project, CALLS, 1));
+
+        assertFalse(ProjectState.reserve(project, CALLS, 1));
+        assertFalse(ProjectState.reserve(project, CALLS, 1));
+    }
+
+    public void testReserveDoesNotReservePartially() {
+        assertTrue(ProjectState.reserve(project, CALLS, ProjectState.LIMIT - 1));
+
+        assertFalse(ProjectState.reserve(project, CALLS, 2));
+        assertTrue(ProjectState.reserve(project, CALLS, 1));
+    }
+
+    public void testKeysHaveTheirOwnBudget() {
+        assertTrue(ProjectState.reserve(project, CALLS, ProjectState.LIMIT));
+        assertFalse(ProjectState.reserve(project, CALLS, 1));
+
+        assertTrue(ProjectState.reserve(project, PROVIDERS, ProjectState.LIMIT));
+        assertTrue(ProjectState.reserve(otherProject, CALLS, ProjectState.LIMIT));
+    }
+
+    public void testReleaseResetsBudget() {
+        assertTrue(ProjectState.reserve(project, CALLS, ProjectState.LIMIT));
+
+        ProjectState.release(project, CALLS, null);
+
+        assertTrue(ProjectState.reserve(project, CALLS, ProjectState.LIMIT));
+    }
+}
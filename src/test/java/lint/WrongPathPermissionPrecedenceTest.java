@@ -202,4 +202,62 @@ public class WrongPathPermissionPrecedenceTest extends LintDetectorTest {
                 .run()
                 .expectClean();
     }
+
+    public void testPathPermissionsAfterSearchSuggestionAreIgnored() {
+        lint().files(
+                xml(FN_ANDROID_MANIFEST_XML, "" +
+                        "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"+
+                        "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"+
+                        "    package=\"test.pkg\">\n"+
+                        "\n"+
+                        "    <permission android:name=\"test.pkg.permission.normalRead\" android:protectionLevel=\"normal\"/>\n"+
+                        "    <permission android:name=\"test.pkg.permission.internalRead\" android:protectionLevel=\"signature\"/>\n"+
+                        "\n"+
+                        "    <application>\n"+
+                        "        <provider\n"+
+                        "            android:name=\".provider.UserDetailsContentProvider\"\n"+
+                        "            android:authorities=\"test.pkg.userdetails\"\n"+
+                        "            android:exported=\"true\"\n"+
+                        "            android:permission=\"test.pkg.permission.normalRead\">\n"+
+                        "            <path-permission android:pathPrefix=\"/user/secret\"\n"+
+                        "                   android:readPermission=\"test.pkg.permission.internalRead\"/>\n"+
+                        "            <path-permission android:pathPrefix=\"/user/search_suggest_query\"\n"+
+                        "                   android:readPermission=\"android.permission.GLOBAL_SEARCH\"/>\n"+
+                        "            <path-permission android:pathPrefix=\"/user/private\"\n"+
+                        "                   android:readPermission=\"test.pkg.permission.internalRead\"/>\n"+
+                        "        </provider>\n"+
+                        "    </application>\n"+
+                        "\n"+
+                        "</manifest>\n"))
+                .run()
+                .expectCount(1, Severity.WARNING).expectMatches(WrongPathPermissionPrecedenceDetector.MESSAGE);
+    }
+
+    public void testNestedPathPermissionIsIgnored() {
+        lint().files(
+                xml(FN_ANDROID_MANIFEST_XML, "" +
+                        "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"+
+                        "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"+
+                        "    package=\"test.pkg\">\n"+
+                        "\n"+
+                        "    <permission android:name=\"test.pkg.permission.normalRead\" android:protectionLevel=\"normal\"/>\n"+
+                        "    <permission android:name=\"test.pkg.permission.internalRead\" android:protectionLevel=\"signature\"/>\n"+
+                        "\n"+
+                        "    <application>\n"+
+                        "        <provider\n"+
+                        "            android:name=\".provider.UserDetailsContentProvider\"\n"+
+                        "            android:authorities=\"test.pkg.userdetails\"\n"+
+                        "            android:exported=\"true\"\n"+
+                        "            android:permission=\"test.pkg.permission.normalRead\">\n"+
+                        "            <meta-data android:name=\"test.pkg.paths\" android:value=\"user\">\n"+
+                        "                <path-permission android:pathPrefix=\"/user/secret\"\n"+
+                        "                       android:readPermission=\"test.pkg.permission.internalRead\"/>\n"+
+                        "            </meta-data>\n"+
+                        "        </provider>\n"+
+                        "    </application>\n"+
+                        "\n"+
+                        "</manifest>\n"))
+                .run()
+                .expectClean();
+    }
 }